@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.processor;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * An annotation processor that writes the class discovery index of the compiled classes to {@value #INDEX_RESOURCE}.<br>
+ * The index lets {@code ClassPathUtil} answer its queries without reading the class files it lists, see {@code ClassIndex} for the format.<br>
+ * The processor does not claim any annotation, it can be used along with any other processor.
+ * @author lord_rex
+ */
+@SupportedAnnotationTypes("*")
+public class ClassIndexProcessor extends AbstractProcessor
+{
+	/** The location of the index inside the class output. */
+	public static final String INDEX_RESOURCE = "META-INF/reflection-utils/classes.idx";
+	
+	private static final String OBJECT = Object.class.getName();
+	
+	/** The indexed classes, by package and by binary name relative to the package. */
+	private final Map<String, Map<String, String>> classesByPackage = new TreeMap<>();
+	
+	@Override
+	public SourceVersion getSupportedSourceVersion()
+	{
+		return SourceVersion.latestSupported();
+	}
+	
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+	{
+		if (roundEnv.processingOver())
+		{
+			writeIndex();
+			return false;
+		}
+		
+		for (Element element : roundEnv.getRootElements())
+		{
+			if (element instanceof TypeElement)
+			{
+				indexType((TypeElement) element);
+			}
+		}
+		return false;
+	}
+	
+	private void indexType(TypeElement typeElement)
+	{
+		final String packageName = processingEnv.getElementUtils().getPackageOf(typeElement).getQualifiedName().toString();
+		final String binaryName = processingEnv.getElementUtils().getBinaryName(typeElement).toString();
+		
+		final StringBuilder sb = new StringBuilder(packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1));
+		for (AnnotationMirror annotationMirror : typeElement.getAnnotationMirrors())
+		{
+			final TypeElement annotationElement = (TypeElement) annotationMirror.getAnnotationType().asElement();
+			final Retention retention = annotationElement.getAnnotation(Retention.class);
+			if ((retention != null) && (retention.value() == RetentionPolicy.RUNTIME))
+			{
+				sb.append(" @").append(processingEnv.getElementUtils().getBinaryName(annotationElement));
+			}
+		}
+		
+		final Set<String> supertypeNames = new LinkedHashSet<>();
+		collectSupertypes(typeElement.asType(), supertypeNames);
+		supertypeNames.remove(OBJECT);
+		for (String supertypeName : supertypeNames)
+		{
+			sb.append(" +").append(supertypeName);
+		}
+		
+		classesByPackage.computeIfAbsent(packageName, k -> new TreeMap<>()).put(binaryName, sb.toString());
+		
+		for (Element enclosedElement : typeElement.getEnclosedElements())
+		{
+			if (enclosedElement instanceof TypeElement)
+			{
+				indexType((TypeElement) enclosedElement);
+			}
+		}
+	}
+	
+	private void collectSupertypes(TypeMirror typeMirror, Set<String> supertypeNames)
+	{
+		for (TypeMirror supertype : processingEnv.getTypeUtils().directSupertypes(typeMirror))
+		{
+			if (supertype.getKind() != TypeKind.DECLARED)
+			{
+				continue;
+			}
+			
+			final TypeElement supertypeElement = (TypeElement) ((DeclaredType) supertype).asElement();
+			if (supertypeNames.add(processingEnv.getElementUtils().getBinaryName(supertypeElement).toString()))
+			{
+				collectSupertypes(supertype, supertypeNames);
+			}
+		}
+	}
+	
+	private void writeIndex()
+	{
+		if (classesByPackage.isEmpty())
+		{
+			return;
+		}
+		
+		try
+		{
+			final FileObject fileObject = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+			try (Writer writer = new OutputStreamWriter(fileObject.openOutputStream(), StandardCharsets.UTF_8))
+			{
+				writer.write("# commons-reflection-utils class index\n");
+				for (Map.Entry<String, Map<String, String>> packageEntry : classesByPackage.entrySet())
+				{
+					writer.write(packageEntry.getKey());
+					writer.write(":\n");
+					for (String line : packageEntry.getValue().values())
+					{
+						writer.write(' ');
+						writer.write(line);
+						writer.write('\n');
+					}
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write the class index: " + e.getMessage());
+		}
+	}
+}
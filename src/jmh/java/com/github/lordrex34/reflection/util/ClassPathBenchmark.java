@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util;
+
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the {@link ClassPathUtil} queries over a synthetic classpath.<br>
+ * The cold benchmarks start from a new class loader, so they pay for the scan and for defining the classes. The warm benchmarks reuse the cached scan and the loaded classes.
+ * @author lord_rex
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(
+{
+	Mode.Throughput,
+	Mode.SampleTime
+})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassPathBenchmark
+{
+	@Param(
+	{
+		"100",
+		"1000",
+		"10000"
+	})
+	public int classCount;
+	
+	@Param(
+	{
+		"DIRECTORY",
+		"JAR"
+	})
+	public SyntheticClassPath.Layout layout;
+	
+	private SyntheticClassPath classPath;
+	private URLClassLoader warmClassLoader;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException
+	{
+		classPath = SyntheticClassPath.create(classCount, layout);
+		warmClassLoader = classPath.newClassLoader();
+		ClassPathUtil.getAllClasses(warmClassLoader, SyntheticClassPath.PACKAGE).size();
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		ClassPathUtil.invalidate(warmClassLoader);
+		warmClassLoader.close();
+		classPath.close();
+	}
+	
+	@Benchmark
+	public int coldGetAllClasses() throws IOException
+	{
+		try (URLClassLoader classLoader = classPath.newClassLoader())
+		{
+			final int size = ClassPathUtil.getAllClasses(classLoader, SyntheticClassPath.PACKAGE).size();
+			ClassPathUtil.invalidate(classLoader);
+			return size;
+		}
+	}
+	
+	@Benchmark
+	public int coldScan() throws IOException
+	{
+		ClassPathUtil.invalidate(warmClassLoader);
+		return ClassPathUtil.getAllClassHandles(warmClassLoader, SyntheticClassPath.PACKAGE).size();
+	}
+	
+	@Benchmark
+	public int warmGetAllClasses() throws IOException
+	{
+		return ClassPathUtil.getAllClasses(warmClassLoader, SyntheticClassPath.PACKAGE).size();
+	}
+	
+	@Benchmark
+	public int warmGetAllClassesExtending() throws IOException
+	{
+		return ClassPathUtil.getAllClassesExtending(warmClassLoader, SyntheticClassPath.PACKAGE, Runnable.class).size();
+	}
+	
+	@Benchmark
+	public int warmGetAllClassesAnnotatedWith() throws IOException
+	{
+		return ClassPathUtil.getAllClassesAnnotatedWith(warmClassLoader, SyntheticClassPath.PACKAGE, FunctionalInterface.class).size();
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the generic type resolution of {@link GenericUtil}.
+ * @author lord_rex
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(
+{
+	Mode.Throughput,
+	Mode.SampleTime
+})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GenericUtilBenchmark
+{
+	private Field field;
+	
+	@Setup
+	public void setUp() throws NoSuchFieldException
+	{
+		field = FieldSubject.class.getField("map");
+	}
+	
+	@Benchmark
+	public Class<?> typeOf()
+	{
+		return GenericUtil.typeOf(field, 1);
+	}
+	
+	@Benchmark
+	public Class<?> parameterOfDirect()
+	{
+		return GenericUtil.parameterOf(ParentSubject.class, 1);
+	}
+	
+	@Benchmark
+	public Class<?> parameterOfInherited()
+	{
+		return GenericUtil.parameterOf(InheritedSubject.class, 1);
+	}
+	
+	public static class FieldSubject
+	{
+		public Map<Integer, String> map = new HashMap<>();
+	}
+	
+	public static class GenericSubject<K, V>
+	{
+	}
+	
+	public static class ParentSubject extends GenericSubject<Integer, String>
+	{
+	}
+	
+	public static class InheritedSubject extends ParentSubject
+	{
+	}
+}
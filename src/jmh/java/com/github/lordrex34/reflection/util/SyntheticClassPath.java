@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * A generated classpath root of configurable size for the benchmarks.<br>
+ * Every other class is an interface extending {@link Runnable} and annotated with {@link FunctionalInterface}, the rest are plain classes. None of them has any member, so they load fast and
+ * the benchmarks measure the discovery rather than the class initialization.
+ * @author lord_rex
+ */
+public final class SyntheticClassPath implements Closeable
+{
+	/** The package of the generated classes. */
+	static final String PACKAGE = "com.example.synthetic";
+	
+	/**
+	 * The layout of the generated classpath root.
+	 */
+	public enum Layout
+	{
+		DIRECTORY,
+		JAR
+	}
+	
+	private final Path directory;
+	private final File root;
+	
+	private SyntheticClassPath(Path directory, File root)
+	{
+		this.directory = directory;
+		this.root = root;
+	}
+	
+	/**
+	 * Generates a classpath root.
+	 * @param classCount the number of classes
+	 * @param layout the layout of the root
+	 * @return the generated classpath
+	 * @throws IOException if the classes cannot be written
+	 */
+	static SyntheticClassPath create(int classCount, Layout layout) throws IOException
+	{
+		final Path directory = Files.createTempDirectory("synthetic-classpath");
+		final String packagePath = PACKAGE.replace('.', '/') + '/';
+		if (layout == Layout.DIRECTORY)
+		{
+			final Path packageDirectory = Files.createDirectories(directory.resolve(packagePath));
+			for (int i = 0; i < classCount; i++)
+			{
+				Files.write(packageDirectory.resolve(simpleName(i) + ".class"), classFile(packagePath + simpleName(i), (i % 2) == 0));
+			}
+			return new SyntheticClassPath(directory, directory.toFile());
+		}
+		
+		final File jar = directory.resolve("synthetic.jar").toFile();
+		try (JarOutputStream jarOutputStream = new JarOutputStream(Files.newOutputStream(jar.toPath())))
+		{
+			for (int i = 0; i < classCount; i++)
+			{
+				jarOutputStream.putNextEntry(new JarEntry(packagePath + simpleName(i) + ".class"));
+				jarOutputStream.write(classFile(packagePath + simpleName(i), (i % 2) == 0));
+				jarOutputStream.closeEntry();
+			}
+		}
+		return new SyntheticClassPath(directory, jar);
+	}
+	
+	/**
+	 * Creates a class loader of the generated root, without a parent class loader, so the JDK is the only other classpath.
+	 * @return a new class loader
+	 */
+	URLClassLoader newClassLoader()
+	{
+		try
+		{
+			return new URLClassLoader(new URL[]
+			{
+				root.toURI().toURL()
+			}, null);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		try (Stream<Path> paths = Files.walk(directory))
+		{
+			paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+	
+	private static String simpleName(int index)
+	{
+		return "Synthetic" + index;
+	}
+	
+	/**
+	 * Writes a minimal Java 8 class file.
+	 * @param internalName the internal name of the class
+	 * @param handler whether the class is an annotated {@link Runnable} interface or a plain class
+	 * @return the class file
+	 */
+	private static byte[] classFile(String internalName, boolean handler)
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes))
+		{
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0); // minor_version
+			out.writeShort(52); // major_version
+			
+			out.writeShort(handler ? 9 : 5); // constant_pool_count
+			utf8(out, internalName); // #1
+			classRef(out, 1); // #2
+			utf8(out, "java/lang/Object"); // #3
+			classRef(out, 3); // #4
+			if (handler)
+			{
+				utf8(out, "java/lang/Runnable"); // #5
+				classRef(out, 5); // #6
+				utf8(out, "RuntimeVisibleAnnotations"); // #7
+				utf8(out, "Ljava/lang/FunctionalInterface;"); // #8
+			}
+			
+			out.writeShort(handler ? 0x0601 : 0x0021); // public interface abstract, or public super
+			out.writeShort(2); // this_class
+			out.writeShort(4); // super_class
+			if (handler)
+			{
+				out.writeShort(1);
+				out.writeShort(6);
+			}
+			else
+			{
+				out.writeShort(0);
+			}
+			out.writeShort(0); // fields_count
+			out.writeShort(0); // methods_count
+			if (handler)
+			{
+				out.writeShort(1); // attributes_count
+				out.writeShort(7);
+				out.writeInt(6);
+				out.writeShort(1); // num_annotations
+				out.writeShort(8);
+				out.writeShort(0); // num_element_value_pairs
+			}
+			else
+			{
+				out.writeShort(0);
+			}
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+	
+	private static void utf8(DataOutputStream out, String value) throws IOException
+	{
+		out.writeByte(1);
+		out.writeUTF(value);
+	}
+	
+	private static void classRef(OutputStream out, int nameIndex) throws IOException
+	{
+		out.write(7);
+		out.write(nameIndex >> 8);
+		out.write(nameIndex);
+	}
+}
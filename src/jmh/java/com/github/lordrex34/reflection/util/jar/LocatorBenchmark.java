@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.jar;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Benchmarks the URI decoding and the class source lookup of {@link Locator}.<br>
+ * The cold benchmarks clear the resolved code sources first, so they decode the location again. The warm benchmarks reuse the resolved code sources.
+ * @author lord_rex
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(
+{
+	Mode.Throughput,
+	Mode.SampleTime
+})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocatorBenchmark
+{
+	private static final String PLAIN_URI = "file:/opt/application/lib/commons-reflection-utils.jar";
+	private static final String ENCODED_URI = "file:/opt/my%20application/lib/caf%C3%A9%20utils.jar";
+	
+	@Benchmark
+	public String fromPlainURI()
+	{
+		return Locator.fromURI(PLAIN_URI);
+	}
+	
+	@Benchmark
+	public String fromEncodedURI()
+	{
+		return Locator.fromURI(ENCODED_URI);
+	}
+	
+	@Benchmark
+	public File coldGetClassSourceOfJar()
+	{
+		Locator.clearCache();
+		return Locator.getClassSource(ImmutableList.class);
+	}
+	
+	@Benchmark
+	public File coldGetClassSourceOfLibrary()
+	{
+		Locator.clearCache();
+		return Locator.getClassSource(Locator.class);
+	}
+	
+	@Benchmark
+	public File warmGetClassSourceOfJar()
+	{
+		return Locator.getClassSource(ImmutableList.class);
+	}
+	
+	@Benchmark
+	public File warmGetClassSourceOfLibrary()
+	{
+		return Locator.getClassSource(Locator.class);
+	}
+}
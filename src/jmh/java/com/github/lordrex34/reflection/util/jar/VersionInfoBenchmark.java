@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.jar;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Benchmarks the construction of {@link VersionInfo}, which reads the manifest of a JAR file.<br>
+ * The cold benchmarks clear the cached manifests and code sources first, so they open the JAR file again. The warm benchmarks only check that the JAR file is unchanged.
+ * @author lord_rex
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(
+{
+	Mode.Throughput,
+	Mode.SampleTime
+})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VersionInfoBenchmark
+{
+	private File jarFile;
+	
+	@Setup
+	public void setUp()
+	{
+		jarFile = Locator.getClassSource(ImmutableList.class);
+	}
+	
+	@Benchmark
+	public VersionInfo coldFromClass()
+	{
+		Locator.clearCache();
+		VersionInfo.clearCache();
+		return new VersionInfo(ImmutableList.class);
+	}
+	
+	@Benchmark
+	public VersionInfo coldFromFile()
+	{
+		VersionInfo.clearCache();
+		return new VersionInfo(jarFile);
+	}
+	
+	@Benchmark
+	public VersionInfo warmFromClass()
+	{
+		return new VersionInfo(ImmutableList.class);
+	}
+	
+	@Benchmark
+	public VersionInfo warmFromFile()
+	{
+		return new VersionInfo(jarFile);
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2017 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.ToIntFunction;
+
+import com.github.lordrex34.reflection.util.scan.ClassIndex;
+import com.github.lordrex34.reflection.util.scan.ClassPathChange;
+import com.github.lordrex34.reflection.util.scan.ClassPathScan;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * The per class loader cache of {@link ClassPathUtil}.<br>
+ * The class loaders are weakly referenced and the cached values never reference them strongly, so a discarded class loader is collected along with its cache entries.
+ * The cache can be bounded by the number of class loaders or by the number of cached classes.
+ * @author lord_rex
+ */
+final class ClassPathCache
+{
+	private volatile Cache<ClassLoader, ClassPathScan> scans;
+	private volatile Cache<ClassLoader, Optional<ClassIndex>> indexes;
+	
+	ClassPathCache()
+	{
+		setLimits(0, 0);
+	}
+	
+	/**
+	 * Replaces the cache with a new, empty one using the given limits.
+	 * @param maximumClassLoaders the maximum number of cached class loaders, {@code 0} for no limit
+	 * @param maximumClasses the maximum number of cached classes, {@code 0} for no limit
+	 */
+	void setLimits(long maximumClassLoaders, long maximumClasses)
+	{
+		if ((maximumClassLoaders < 0) || (maximumClasses < 0) || ((maximumClassLoaders > 0) && (maximumClasses > 0)))
+		{
+			throw new IllegalArgumentException("Only one non-negative limit can be set.");
+		}
+		
+		scans = build(maximumClassLoaders, maximumClasses, scan -> scan.getClasses().size());
+		indexes = build(maximumClassLoaders, maximumClasses, index -> index.map(i -> i.getEntries().size()).orElse(0));
+	}
+	
+	private static <V> Cache<ClassLoader, V> build(long maximumClassLoaders, long maximumClasses, ToIntFunction<V> weigher)
+	{
+		final CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().weakKeys().recordStats();
+		if (maximumClasses > 0)
+		{
+			return builder.maximumWeight(maximumClasses).weigher((ClassLoader classLoader, V value) -> weigher.applyAsInt(value)).build();
+		}
+		if (maximumClassLoaders > 0)
+		{
+			builder.maximumSize(maximumClassLoaders);
+		}
+		return builder.build();
+	}
+	
+	ClassPathScan getScan(ClassLoader classLoader, Callable<ClassPathScan> scanner) throws IOException
+	{
+		return get(scans, classLoader, scanner);
+	}
+	
+	ClassIndex getIndex(ClassLoader classLoader, Callable<ClassIndex> loader) throws IOException
+	{
+		return get(indexes, classLoader, () -> Optional.ofNullable(loader.call())).orElse(null);
+	}
+	
+	private static <V> V get(Cache<ClassLoader, V> cache, ClassLoader classLoader, Callable<V> loader) throws IOException
+	{
+		try
+		{
+			return cache.get(classLoader, loader);
+		}
+		catch (ExecutionException e)
+		{
+			Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+			throw new IllegalStateException(e.getCause());
+		}
+		catch (UncheckedExecutionException | ExecutionError e)
+		{
+			Throwables.throwIfUnchecked(e.getCause());
+			throw e;
+		}
+	}
+	
+	/**
+	 * Applies the change of a watched root on the cached scan of the class loader, if there is one.
+	 * @param classLoader the class loader
+	 * @param change the change
+	 */
+	void patch(ClassLoader classLoader, ClassPathChange change)
+	{
+		scans.asMap().computeIfPresent(classLoader, (k, scan) -> scan.patch(change));
+	}
+	
+	void invalidate(ClassLoader classLoader)
+	{
+		scans.invalidate(classLoader);
+		indexes.invalidate(classLoader);
+	}
+	
+	void invalidateAll()
+	{
+		scans.invalidateAll();
+		indexes.invalidateAll();
+	}
+	
+	CacheStats stats()
+	{
+		return scans.stats().plus(indexes.stats());
+	}
+	
+	long size()
+	{
+		scans.cleanUp();
+		return scans.size();
+	}
+}
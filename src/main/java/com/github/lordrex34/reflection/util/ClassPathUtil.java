@@ -21,53 +21,313 @@
  */
 package com.github.lordrex34.reflection.util;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.UncheckedIOException;
+import java.io.InputStream;
 import java.lang.annotation.Annotation;
+import java.lang.annotation.Inherited;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
-import java.util.Arrays;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentMap;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
+import com.github.lordrex34.reflection.util.classfile.ClassFileInfo;
+import com.github.lordrex34.reflection.util.classfile.ClassFileReader;
+import com.github.lordrex34.reflection.util.instrument.Instrumentation;
+import com.github.lordrex34.reflection.util.scan.ClassHandle;
+import com.github.lordrex34.reflection.util.scan.ClassIndex;
+import com.github.lordrex34.reflection.util.scan.ClassPathListener;
+import com.github.lordrex34.reflection.util.scan.ClassPathScan;
+import com.github.lordrex34.reflection.util.scan.ClassPathScanner;
+import com.github.lordrex34.reflection.util.scan.ClassPathWatcher;
+import com.github.lordrex34.reflection.util.scan.MethodAnnotationIndex;
+import com.github.lordrex34.reflection.util.scan.ModuleScanner;
+import com.github.lordrex34.reflection.util.scan.ScannedClass;
+import com.github.lordrex34.reflection.util.scan.ScannedModule;
+import com.github.lordrex34.reflection.util.scan.TypeHierarchy;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.FluentIterable;
-import com.google.common.collect.Maps;
-import com.google.common.reflect.ClassPath;
-import com.google.common.reflect.ClassPath.ClassInfo;
+import com.google.common.util.concurrent.MoreExecutors;
 
 /**
- * A simple utility class to handle getting classes/packages.
+ * A simple utility class to handle getting classes/packages.<br>
+ * When every classpath root carries a compile time {@link ClassIndex}, the indexes prune the scanned classes and only the class files they do not list are read, such as anonymous and local
+ * classes or the classes missed by a partial compilation.
  * @author UnAfraid
  */
 @SuppressWarnings("unchecked")
 public final class ClassPathUtil
 {
-	private static final ConcurrentMap<ClassLoader, ClassPath> CLASS_PATH_BY_CLASS_LOADER_MAP = Maps.newConcurrentMap();
+	private static final ClassPathCache CACHE = new ClassPathCache();
+	private static volatile File snapshotDirectory;
 	
-	private static ClassPath getClassPath(ClassLoader classLoader) throws IOException
+	private static ClassPathScan getClassPath(ClassLoader classLoader) throws IOException
 	{
-		try
+		return getClassPath(classLoader, null);
+	}
+	
+	private static ClassPathScan getClassPath(ClassLoader classLoader, Executor executor) throws IOException
+	{
+		final File directory = snapshotDirectory;
+		return CACHE.getScan(classLoader, () -> ClassPathScanner.scan(classLoader, executor == null ? MoreExecutors.directExecutor() : executor, directory));
+	}
+	
+	private static ClassIndex getClassIndex(ClassLoader classLoader) throws IOException
+	{
+		return CACHE.getIndex(classLoader, () -> ClassIndex.load(classLoader));
+	}
+	
+	private ClassPathUtil()
+	{
+		// utility class
+	}
+	
+	/**
+	 * Scans the classpath of the class loader in parallel, one task per classpath root, and caches the result for the upcoming queries.<br>
+	 * The result is the same as the one of the serial scan done by the queries. Does nothing if the classpath has already been scanned.
+	 * @param classLoader the class loader that is used for the process
+	 * @param executor the executor running the root scans
+	 * @throws IOException
+	 */
+	public static void scanParallel(ClassLoader classLoader, Executor executor) throws IOException
+	{
+		getClassPath(classLoader, executor);
+	}
+	
+	/**
+	 * Same as {@link #scanParallel(ClassLoader, Executor)}, using {@link ForkJoinPool#commonPool()} as the executor parameter.
+	 * @param classLoader the class loader that is used for the process
+	 * @throws IOException
+	 */
+	public static void scanParallel(ClassLoader classLoader) throws IOException
+	{
+		scanParallel(classLoader, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Scans the classpath of the class loader as a background task of the executor, and caches the result for the upcoming queries.<br>
+	 * The roots are scanned serially inside that single task, so that a bounded executor can never wait on itself. A query asking for the classpath meanwhile waits for this scan instead of starting another one.
+	 * @param classLoader the class loader that is used for the process
+	 * @param executor the executor running the scan
+	 * @return the future completed once the classpath is cached, or completed exceptionally with the {@link IOException} of the scan
+	 */
+	public static CompletableFuture<Void> scanAsync(ClassLoader classLoader, Executor executor)
+	{
+		return supplyAsync(() ->
 		{
-			return CLASS_PATH_BY_CLASS_LOADER_MAP.computeIfAbsent(classLoader, cl ->
-			{
-				try
-				{
-					return ClassPath.from(cl);
-				}
-				catch (IOException e)
-				{
-					throw new UncheckedIOException(e);
-				}
-			});
-		}
-		catch (UncheckedIOException e)
+			getClassPath(classLoader);
+			return null;
+		}, executor);
+	}
+	
+	/**
+	 * Prepares the class loader for the upcoming queries in the background, such as from {@code main()} while the other subsystems initialize.<br>
+	 * The classpath is scanned and the compile time {@link ClassIndex} is loaded, when there is none the bytecode indexes of every package are built in parallel, one task per package.
+	 * The later queries of the same class loader and packages simply use the finished work.
+	 * @param classLoader the class loader that is used for the process
+	 * @param executor the executor running the tasks
+	 * @param packagePrefixes the packages the upcoming queries will seek in
+	 * @return the future completed once everything is ready, or completed exceptionally with the first {@link IOException}
+	 */
+	public static CompletableFuture<Void> warmUp(ClassLoader classLoader, Executor executor, String... packagePrefixes)
+	{
+		final CompletableFuture<ClassPathScan> classPath = supplyAsync(() -> getClassPath(classLoader), executor);
+		final CompletableFuture<ClassIndex> classIndex = supplyAsync(() -> getClassIndex(classLoader), executor);
+		final CompletableFuture<ClassPathScan> unindexedClassPath = classPath.thenCombine(classIndex, (scan, index) -> index == null ? scan : null);
+		final List<CompletableFuture<?>> tasks = new ArrayList<>(packagePrefixes.length + 1);
+		tasks.add(unindexedClassPath);
+		for (String packagePrefix : packagePrefixes)
 		{
-			throw e.getCause();
+			tasks.add(unindexedClassPath.thenCompose(scan -> scan == null ? CompletableFuture.completedFuture(null) : supplyAsync(() -> scan.getTypeHierarchy(packagePrefix), executor)));
 		}
+		return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[tasks.size()]));
 	}
 	
-	private ClassPathUtil()
+	/**
+	 * Same as {@link #warmUp(ClassLoader, Executor, String...)}, using {@link ForkJoinPool#commonPool()} as the executor parameter.
+	 * @param classLoader the class loader that is used for the process
+	 * @param packagePrefixes the packages the upcoming queries will seek in
+	 * @return the future completed once everything is ready
+	 */
+	public static CompletableFuture<Void> warmUp(ClassLoader classLoader, String... packagePrefixes)
 	{
-		// utility class
+		return warmUp(classLoader, ForkJoinPool.commonPool(), packagePrefixes);
+	}
+	
+	/**
+	 * Same as {@link #getAllClasses(ClassLoader, String)}, running as a task of the executor. The classes are loaded by the task as well.
+	 * @param classLoader the class loader that is used for the process
+	 * @param packagePrefix the package where you seek
+	 * @param executor the executor running the query
+	 * @return the future list of classes
+	 */
+	public static CompletableFuture<List<Class<?>>> getAllClassesAsync(ClassLoader classLoader, String packagePrefix, Executor executor)
+	{
+		return supplyAsync(() -> getAllClasses(classLoader, packagePrefix).toList(), executor);
+	}
+	
+	/**
+	 * Same as {@link #getAllClassesExtending(ClassLoader, String, Class)}, running as a task of the executor. The classes are loaded by the task as well.
+	 * @param <T>
+	 * @param classLoader the class loader that is used for the process
+	 * @param packagePrefix the package where you seek
+	 * @param targetClass the given target class
+	 * @param executor the executor running the query
+	 * @return the future list of classes
+	 */
+	public static <T> CompletableFuture<List<Class<? extends T>>> getAllClassesExtendingAsync(ClassLoader classLoader, String packagePrefix, Class<T> targetClass, Executor executor)
+	{
+		return supplyAsync(() -> getAllClassesExtending(classLoader, packagePrefix, targetClass).toList(), executor);
+	}
+	
+	/**
+	 * Same as {@link #getAllClassesAnnotatedWith(ClassLoader, String, Class)}, running as a task of the executor. The classes are loaded by the task as well.
+	 * @param classLoader the class loader that is used for the process
+	 * @param packagePrefix the package where you seek
+	 * @param annotationClass the given annotation class
+	 * @param executor the executor running the query
+	 * @return the future list of classes
+	 */
+	public static CompletableFuture<List<Class<?>>> getAllClassesAnnotatedWithAsync(ClassLoader classLoader, String packagePrefix, Class<? extends Annotation> annotationClass, Executor executor)
+	{
+		return supplyAsync(() -> getAllClassesAnnotatedWith(classLoader, packagePrefix, annotationClass).toList(), executor);
+	}
+	
+	/**
+	 * Same as {@link #getAllMethodsAnnotatedWith(ClassLoader, String, Class)}, running as a task of the executor. The classes are loaded by the task as well.
+	 * @param classLoader the class loader that is used for the process
+	 * @param packagePrefix the name of the package
+	 * @param annotationClass the annotation you seek
+	 * @param executor the executor running the query
+	 * @return the future list of methods
+	 */
+	public static CompletableFuture<List<Method>> getAllMethodsAnnotatedWithAsync(ClassLoader classLoader, String packagePrefix, Class<? extends Annotation> annotationClass, Executor executor)
+	{
+		return supplyAsync(() -> getAllMethodsAnnotatedWith(classLoader, packagePrefix, annotationClass).toList(), executor);
+	}
+	
+	/**
+	 * Same as {@link #getAllClasses(ClassLoader, String)}, loading the classes in parallel on the pool. See {@link LoadedClasses}.
+	 * @param classLoader the class loader that is used for the process
+	 * @param packagePrefix the package where you seek
+	 * @param pool the pool loading the classes, its parallelism bounds the number of classes loaded at once
+	 * @return the loaded classes in the order of the serial query, and the classes which failed to load
+	 * @throws IOException
+	 */
+	public static LoadedClasses<Class<?>> getAllClassesParallel(ClassLoader classLoader, String packagePrefix, ForkJoinPool pool) throws IOException
+	{
+		return LoadedClasses.load(getAllClassHandles(classLoader, packagePrefix).toList(), clazz -> true, pool);
+	}
+	
+	/**
+	 * Same as {@link #getAllClassesExtending(ClassLoader, String, Class)}, loading the classes in parallel on the pool. See {@link LoadedClasses}.
+	 * @param <T>
+	 * @param classLoader the class loader that is used for the process
+	 * @param packagePrefix the package where you seek
+	 * @param targetClass the given target class
+	 * @param pool the pool loading the classes, its parallelism bounds the number of classes loaded at once
+	 * @return the loaded classes in the order of the serial query, and the classes which failed to load
+	 * @throws IOException
+	 */
+	public static <T> LoadedClasses<Class<? extends T>> getAllClassesExtendingParallel(ClassLoader classLoader, String packagePrefix, Class<T> targetClass, ForkJoinPool pool) throws IOException
+	{
+		return LoadedClasses.load(getExtendingCandidates(classLoader, packagePrefix, targetClass).toList(), targetClass::isAssignableFrom, pool);
+	}
+	
+	/**
+	 * Same as {@link #getAllClassesAnnotatedWith(ClassLoader, String, Class)}, loading the classes and reading their annotations in parallel on the pool. See {@link LoadedClasses}.
+	 * @param classLoader the class loader that is used for the process
+	 * @param packagePrefix the package where you seek
+	 * @param annotationClass the given annotation class
+	 * @param pool the pool loading the classes, its parallelism bounds the number of classes loaded at once
+	 * @return the loaded classes in the order of the serial query, and the classes which failed to load
+	 * @throws IOException
+	 */
+	public static LoadedClasses<Class<?>> getAllClassesAnnotatedWithParallel(ClassLoader classLoader, String packagePrefix, Class<? extends Annotation> annotationClass, ForkJoinPool pool) throws IOException
+	{
+		return LoadedClasses.load(getAnnotatedCandidates(classLoader, packagePrefix, annotationClass).toList(), clazz -> clazz.isAnnotationPresent(annotationClass), pool);
+	}
+	
+	/**
+	 * Starts watching the directory roots of the classpath of the class loader, JAR roots are not watched.<br>
+	 * The cached scan is patched in place as class files are added, removed or modified, so the upcoming queries see the changes without a rescan.
+	 * Register a {@link ClassPathListener} on the returned watcher to be notified of the changes. Queries answered from compile time indexes are not affected.
+	 * @param classLoader the class loader that is used for the process
+	 * @return the watcher, close it to stop watching
+	 * @throws IOException
+	 */
+	public static ClassPathWatcher watch(ClassLoader classLoader) throws IOException
+	{
+		final ClassPathScan classPath = getClassPath(classLoader);
+		final WeakReference<ClassLoader> classLoaderReference = new WeakReference<>(classLoader);
+		return new ClassPathWatcher(classPath.getRoots(), change ->
+		{
+			final ClassLoader watchedClassLoader = classLoaderReference.get();
+			if (watchedClassLoader != null)
+			{
+				CACHE.patch(watchedClassLoader, change);
+			}
+		});
+	}
+	
+	/**
+	 * Drops the cached classpath of the class loader, the next query scans it again.
+	 * @param classLoader the class loader
+	 */
+	public static void invalidate(ClassLoader classLoader)
+	{
+		CACHE.invalidate(classLoader);
+	}
+	
+	/**
+	 * Drops the cached classpath of every class loader.
+	 */
+	public static void invalidateAll()
+	{
+		CACHE.invalidateAll();
+	}
+	
+	/**
+	 * Bounds the classpath cache, which is unbounded by default. Class loaders are weakly referenced either way, so discarded class loaders never stay in the cache.<br>
+	 * Only one of the limits can be set, the current cache content is dropped.
+	 * @param maximumClassLoaders the maximum number of cached class loaders, {@code 0} for no limit
+	 * @param maximumClasses the maximum number of cached classes of all class loaders, {@code 0} for no limit
+	 */
+	public static void setCacheLimits(long maximumClassLoaders, long maximumClasses)
+	{
+		CACHE.setLimits(maximumClassLoaders, maximumClasses);
+	}
+	
+	/**
+	 * Keeps the scanned classpaths in snapshot files inside the directory, disabled by default. Upon restart, only the JAR files which changed since are scanned again,
+	 * and the bytecode queries use the class files parsed by the snapshot. See {@link ClassPathScanner#scan(ClassLoader, Executor, File)}.<br>
+	 * The setting applies to the upcoming scans, the already cached classpaths are kept.
+	 * @param directory the directory of the snapshot files, {@code null} to disable the snapshots
+	 */
+	public static void setSnapshotDirectory(File directory)
+	{
+		snapshotDirectory = directory;
+	}
+	
+	/**
+	 * Gets the statistics of the classpath cache, including the number of evictions.
+	 * @return the cache statistics
+	 */
+	public static CacheStats getCacheStats()
+	{
+		return CACHE.stats();
 	}
 	
 	/**
@@ -79,11 +339,8 @@ public final class ClassPathUtil
 	 */
 	public static FluentIterable<Class<?>> getAllClasses(ClassLoader classLoader, String packagePrefix) throws IOException
 	{
-		final ClassPath classPath = getClassPath(classLoader);
 		//@formatter:off
-		return FluentIterable.from(classPath.getResources())
-			.filter(ClassInfo.class)
-			.filter(classInfo -> classInfo.getName().startsWith(packagePrefix))
+		return getAllClassHandles(classLoader, packagePrefix)
 			.transform(ClassPathUtil::loadClass)
 			.filter(Objects::nonNull)
 			.transform(clazz -> (Class<?>) clazz);
@@ -101,6 +358,45 @@ public final class ClassPathUtil
 		return getAllClasses(ClassLoader.getSystemClassLoader(), packagePrefix);
 	}
 	
+	/**
+	 * Gets all classes of the named modules of the boot layer, the JDK modules included. Only the modules holding a matching package are read, see {@link ModuleScanner}.
+	 * @param packagePrefix the package where you seek
+	 * @return a list of classes, empty on Java 8
+	 * @throws IOException if a module cannot be read
+	 */
+	public static FluentIterable<Class<?>> getAllModuleClasses(String packagePrefix) throws IOException
+	{
+		//@formatter:off
+		return FluentIterable.from(ModuleScanner.getClassNames(packagePrefix).entries())
+			.transform(entry -> loadClass(entry.getKey(), entry.getValue()))
+			.filter(Objects::nonNull)
+			.transform(clazz -> (Class<?>) clazz);
+		//@formatter:on
+	}
+	
+	/**
+	 * Gets handles of all classes, without loading any of them. The metadata of the handles is read from the class files on demand.
+	 * @param classLoader the class loader that is used for the process
+	 * @param packagePrefix the package where you seek
+	 * @return a list of class handles, sorted by name
+	 * @throws IOException
+	 */
+	public static FluentIterable<ClassHandle> getAllClassHandles(ClassLoader classLoader, String packagePrefix) throws IOException
+	{
+		return getAllScannedClasses(classLoader, packagePrefix).transform(ClassHandle::of);
+	}
+	
+	/**
+	 * Same as {@link #getAllClassHandles(ClassLoader, String)}, using {@link ClassLoader#getSystemClassLoader()} as the classLoader parameter.
+	 * @param packagePrefix
+	 * @return all class handles
+	 * @throws IOException
+	 */
+	public static FluentIterable<ClassHandle> getAllClassHandles(String packagePrefix) throws IOException
+	{
+		return getAllClassHandles(ClassLoader.getSystemClassLoader(), packagePrefix);
+	}
+	
 	/**
 	 * Gets all classes extending the given target class.
 	 * @param <T>
@@ -113,7 +409,9 @@ public final class ClassPathUtil
 	public static <T> FluentIterable<Class<? extends T>> getAllClassesExtending(ClassLoader classLoader, String packagePrefix, Class<T> targetClass) throws IOException
 	{
 		//@formatter:off
-		return getAllClasses(classLoader, packagePrefix)
+		return getExtendingCandidates(classLoader, packagePrefix, targetClass)
+			.transform(ClassPathUtil::loadClass)
+			.filter(Objects::nonNull)
 			.filter(targetClass::isAssignableFrom)
 			.transform(clazz -> (Class<? extends T>) clazz);
 		//@formatter:on
@@ -133,7 +431,8 @@ public final class ClassPathUtil
 	}
 	
 	/**
-	 * Gets all classes extending the given target class.
+	 * Gets all classes annotated with the given annotation class.<br>
+	 * The annotations are read from the class files first, so only the matching classes are loaded.
 	 * @param classLoader the class loader that is used for the process
 	 * @param packagePrefix the package where you seek
 	 * @param annotationClass the given annotation class
@@ -143,8 +442,11 @@ public final class ClassPathUtil
 	public static FluentIterable<Class<?>> getAllClassesAnnotatedWith(ClassLoader classLoader, String packagePrefix, Class<? extends Annotation> annotationClass) throws IOException
 	{
 		//@formatter:off
-		return getAllClasses(classLoader, packagePrefix)
-			.filter(clazz -> clazz.isAnnotationPresent(annotationClass));
+		return getAnnotatedCandidates(classLoader, packagePrefix, annotationClass)
+			.transform(ClassPathUtil::loadClass)
+			.filter(Objects::nonNull)
+			.filter(clazz -> clazz.isAnnotationPresent(annotationClass))
+			.transform(clazz -> (Class<?>) clazz);
 		//@formatter:on
 	}
 	
@@ -161,7 +463,8 @@ public final class ClassPathUtil
 	}
 	
 	/**
-	 * Gets all methods inside the package.
+	 * Gets all methods inside the package.<br>
+	 * The declared methods are cached per class, every query returns the same {@link Method} instances.
 	 * @param classLoader the class loader that is used for the process
 	 * @param packagePrefix the name of the package
 	 * @return a stream of methods
@@ -171,7 +474,7 @@ public final class ClassPathUtil
 	{
 		//@formatter:off
 		return getAllClasses(classLoader, packagePrefix)
-			.transformAndConcat(clazz -> Arrays.asList(clazz.getDeclaredMethods()));
+			.transformAndConcat(DeclaredMethods::of);
 		//@formatter:on
 	}
 	
@@ -187,7 +490,8 @@ public final class ClassPathUtil
 	}
 	
 	/**
-	 * Gets all methods inside the package annotated with the specified annotation.
+	 * Gets all methods inside the package annotated with the specified annotation.<br>
+	 * The declared methods are cached per class, every query returns the same {@link Method} instances.
 	 * @param classLoader the class loader that is used for the process
 	 * @param packagePrefix the name of the package
 	 * @param annotationClass the annotation you seek
@@ -196,9 +500,21 @@ public final class ClassPathUtil
 	 */
 	public static FluentIterable<Method> getAllMethodsAnnotatedWith(ClassLoader classLoader, String packagePrefix, Class<? extends Annotation> annotationClass) throws IOException
 	{
+		// only the classes declaring annotated methods are loaded, malformed class files are left to the class loader
+		final ClassPathScan classPath = getClassPath(classLoader);
+		final MethodAnnotationIndex methodAnnotationIndex = classPath.getMethodAnnotationIndex(packagePrefix);
+		final Set<String> candidateNames = new TreeSet<>(methodAnnotationIndex.getDeclaringClassNames(annotationClass.getName()));
+		candidateNames.addAll(methodAnnotationIndex.getMalformedClassNames());
+		
 		//@formatter:off
-		return getAllMethods(classLoader, packagePrefix)
-			.filter(method -> method.isAnnotationPresent(annotationClass));
+		return FluentIterable.from(candidateNames)
+			.filter(name -> name.startsWith(packagePrefix))
+			.transform(classPath::getClass)
+			.filter(Objects::nonNull)
+			.transform(ClassHandle::of)
+			.transform(ClassPathUtil::loadClass)
+			.filter(Objects::nonNull)
+			.transformAndConcat(clazz -> DeclaredMethods.annotatedWith(clazz, annotationClass));
 		//@formatter:on
 	}
 	
@@ -215,19 +531,343 @@ public final class ClassPathUtil
 	}
 	
 	/**
-	 * Loads the class inside {@link ClassInfo}
-	 * @param info the class info
-	 * @return the loaded class
+	 * Runs the task on the executor, its {@link IOException} completes the future exceptionally as is.
+	 * @param task the task
+	 * @param executor the executor
+	 * @return the future result of the task
+	 */
+	private static <T> CompletableFuture<T> supplyAsync(Callable<T> task, Executor executor)
+	{
+		final CompletableFuture<T> future = new CompletableFuture<>();
+		executor.execute(() ->
+		{
+			try
+			{
+				future.complete(task.call());
+			}
+			catch (Throwable t)
+			{
+				future.completeExceptionally(t);
+			}
+		});
+		return future;
+	}
+	
+	/**
+	 * Gets the handles of the classes which may extend the target class, without loading any of them.
+	 * @param classLoader the class loader that is used for the process
+	 * @param packagePrefix the package where you seek
+	 * @param targetClass the given target class
+	 * @return a list of class handles, the loaded classes have the final word
+	 * @throws IOException
+	 */
+	private static FluentIterable<ClassHandle> getExtendingCandidates(ClassLoader classLoader, String packagePrefix, Class<?> targetClass) throws IOException
+	{
+		final String targetName = targetClass.getName();
+		final ClassIndex classIndex = getClassIndex(classLoader);
+		if (classIndex != null)
+		{
+			//@formatter:off
+			return getAllScannedClasses(classLoader, packagePrefix)
+				.filter(scannedClass -> isSubtypeOf(classLoader, classIndex, scannedClass, targetName))
+				.transform(ClassHandle::of);
+			//@formatter:on
+		}
+		
+		// walk the bytecode hierarchy down from the target, the subtypes of unreadable types are only candidates
+		final ClassPathScan classPath = getClassPath(classLoader);
+		final TypeHierarchy typeHierarchy = classPath.getTypeHierarchy(packagePrefix);
+		final Set<String> candidateNames = new TreeSet<>();
+		candidateNames.add(targetName);
+		candidateNames.addAll(typeHierarchy.getSubtypeNames(targetName));
+		for (String unresolvedTypeName : typeHierarchy.getUnresolvedTypeNames())
+		{
+			candidateNames.add(unresolvedTypeName);
+			candidateNames.addAll(typeHierarchy.getSubtypeNames(unresolvedTypeName));
+		}
+		
+		//@formatter:off
+		return FluentIterable.from(candidateNames)
+			.filter(name -> name.startsWith(packagePrefix))
+			.transform(classPath::getClass)
+			.filter(Objects::nonNull)
+			.transform(ClassHandle::of);
+		//@formatter:on
+	}
+	
+	/**
+	 * Gets the handles of the classes which may be annotated with the annotation, without loading any of them.<br>
+	 * The annotations are read from the class files, so only the matching classes are loaded later.
+	 * @param classLoader the class loader that is used for the process
+	 * @param packagePrefix the package where you seek
+	 * @param annotationClass the given annotation class
+	 * @return a list of class handles, the loaded classes have the final word
+	 * @throws IOException
+	 */
+	private static FluentIterable<ClassHandle> getAnnotatedCandidates(ClassLoader classLoader, String packagePrefix, Class<? extends Annotation> annotationClass) throws IOException
+	{
+		final String annotationName = annotationClass.getName();
+		final boolean inherited = annotationClass.isAnnotationPresent(Inherited.class);
+		final ClassIndex classIndex = getClassIndex(classLoader);
+		if (classIndex != null)
+		{
+			final Map<String, Boolean> unindexedSuperclasses = new ConcurrentHashMap<>();
+			//@formatter:off
+			return getAllScannedClasses(classLoader, packagePrefix)
+				.filter(scannedClass -> isAnnotationPresent(classLoader, classIndex, scannedClass, annotationName, inherited, unindexedSuperclasses))
+				.transform(ClassHandle::of);
+			//@formatter:on
+		}
+		
+		//@formatter:off
+		return getAllScannedClasses(classLoader, packagePrefix)
+			.filter(scannedClass -> isAnnotationPresent(classLoader, scannedClass, annotationName, inherited))
+			.transform(ClassHandle::of);
+		//@formatter:on
+	}
+	
+	/**
+	 * Gets all scanned classes inside the package, without loading any of them.
+	 * @param classLoader the class loader that is used for the process
+	 * @param packagePrefix the package where you seek
+	 * @return a list of scanned classes
+	 * @throws IOException
+	 */
+	private static FluentIterable<ScannedClass> getAllScannedClasses(ClassLoader classLoader, String packagePrefix) throws IOException
+	{
+		return FluentIterable.from(getClassPath(classLoader).getClasses(packagePrefix));
+	}
+	
+	/**
+	 * Checks the {@code RuntimeVisibleAnnotations} of the class file behind the {@link ScannedClass}, without loading the class.<br>
+	 * For {@link Inherited} annotations the superclass files are checked as well. Unreadable class files are reported as a possible match, so that the loaded class can decide.
+	 * @param classLoader the class loader used to look up superclass files
+	 * @param scannedClass the scanned class
+	 * @param annotationName the binary name of the annotation
+	 * @param inherited whether the annotation is {@link Inherited} or not
+	 * @return {@code true} if the class may be annotated with the annotation
+	 */
+	private static boolean isAnnotationPresent(ClassLoader classLoader, ScannedClass scannedClass, String annotationName, boolean inherited)
+	{
+		try
+		{
+			ClassFileInfo classFileInfo = scannedClass.readClassFileInfo();
+			if (!inherited || classFileInfo.isInterface())
+			{
+				return classFileInfo.isAnnotationPresent(annotationName);
+			}
+			
+			while (!classFileInfo.isAnnotationPresent(annotationName))
+			{
+				final String superName = classFileInfo.getSuperName();
+				if (superName == null)
+				{
+					return false;
+				}
+				
+				classFileInfo = readClassFileInfo(classLoader, superName);
+				if (classFileInfo == null)
+				{
+					return true;
+				}
+			}
+			return true;
+		}
+		catch (IOException e)
+		{
+			return true;
+		}
+	}
+	
+	/**
+	 * Checks the entry of the {@link ScannedClass} in the compile time index, the classes it does not list are checked through their class files.<br>
+	 * For {@link Inherited} annotations the supertypes of the entry are looked up in the index, only the class files of the supertypes it does not list are read, once per query.
+	 * @param classLoader the class loader used to look up superclass files
+	 * @param classIndex the compile time index
+	 * @param scannedClass the scanned class
+	 * @param annotationName the binary name of the annotation
+	 * @param inherited whether the annotation is {@link Inherited} or not
+	 * @param unindexedSuperclasses the answers for the supertypes missing from the index, by their name
+	 * @return {@code true} if the class may be annotated with the annotation
+	 */
+	private static boolean isAnnotationPresent(ClassLoader classLoader, ClassIndex classIndex, ScannedClass scannedClass, String annotationName, boolean inherited, Map<String, Boolean> unindexedSuperclasses)
+	{
+		final ClassIndex.Entry entry = classIndex.getEntry(scannedClass.getName());
+		if (entry == null)
+		{
+			return isAnnotationPresent(classLoader, scannedClass, annotationName, inherited);
+		}
+		
+		if (classIndex.isAnnotationPresent(entry, annotationName, inherited))
+		{
+			return true;
+		}
+		
+		if (inherited)
+		{
+			// an inherited annotation may sit on a superclass the index does not list, the supertype names of the entry are transitive
+			for (String supertypeName : entry.getSupertypeNames())
+			{
+				if ((classIndex.getEntry(supertypeName) == null) && unindexedSuperclasses.computeIfAbsent(supertypeName, name -> isDeclaredOnSuperclass(classLoader, name, annotationName)))
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Checks the {@code RuntimeVisibleAnnotations} of the class file of a supertype, without loading it. The annotations of interfaces are not inherited.
+	 * @param classLoader the class loader used to look up the class file
+	 * @param className the binary name of the supertype
+	 * @param annotationName the binary name of the annotation
+	 * @return {@code true} if the supertype is a class which may be annotated with the annotation
+	 */
+	private static boolean isDeclaredOnSuperclass(ClassLoader classLoader, String className, String annotationName)
+	{
+		try
+		{
+			final ClassFileInfo classFileInfo = readClassFileInfo(classLoader, className);
+			return (classFileInfo == null) || (!classFileInfo.isInterface() && classFileInfo.isAnnotationPresent(annotationName));
+		}
+		catch (IOException e)
+		{
+			return true;
+		}
+	}
+	
+	/**
+	 * Checks whether the class behind the {@link ScannedClass} may be a subtype of the target, without loading any class.<br>
+	 * The entries of the compile time index answer directly. The classes it does not list, such as anonymous and local classes or the classes missed by a partial compilation, are read from
+	 * their class files up to the first indexed supertype. Unreadable class files are reported as a possible match, so that the loaded class can decide.
+	 * @param classLoader the class loader used to look up supertype files
+	 * @param classIndex the compile time index
+	 * @param scannedClass the scanned class
+	 * @param targetName the binary name of the target type
+	 * @return {@code true} if the class may be a subtype of the target
+	 */
+	private static boolean isSubtypeOf(ClassLoader classLoader, ClassIndex classIndex, ScannedClass scannedClass, String targetName)
+	{
+		final ClassIndex.Entry entry = classIndex.getEntry(scannedClass.getName());
+		if (entry != null)
+		{
+			return entry.isSubtypeOf(targetName);
+		}
+		
+		if (scannedClass.getName().equals(targetName) || Object.class.getName().equals(targetName))
+		{
+			return true;
+		}
+		
+		try
+		{
+			final Deque<ClassFileInfo> pending = new ArrayDeque<>();
+			final Set<String> visited = new HashSet<>();
+			pending.add(scannedClass.readClassFileInfo());
+			while (!pending.isEmpty())
+			{
+				final ClassFileInfo classFileInfo = pending.poll();
+				final List<String> supertypeNames = new ArrayList<>(classFileInfo.getInterfaceNames());
+				if (classFileInfo.getSuperName() != null)
+				{
+					supertypeNames.add(classFileInfo.getSuperName());
+				}
+				
+				for (String supertypeName : supertypeNames)
+				{
+					if (supertypeName.equals(targetName))
+					{
+						return true;
+					}
+					
+					if (!visited.add(supertypeName))
+					{
+						continue;
+					}
+					
+					final ClassIndex.Entry supertypeEntry = classIndex.getEntry(supertypeName);
+					if (supertypeEntry != null)
+					{
+						if (supertypeEntry.isSubtypeOf(targetName))
+						{
+							return true;
+						}
+						continue;
+					}
+					
+					final ClassFileInfo supertypeInfo = readClassFileInfo(classLoader, supertypeName);
+					if (supertypeInfo == null)
+					{
+						return true;
+					}
+					pending.add(supertypeInfo);
+				}
+			}
+			return false;
+		}
+		catch (IOException e)
+		{
+			return true;
+		}
+	}
+	
+	/**
+	 * Reads the class file of a class through the class loader, without loading the class.
+	 * @param classLoader the class loader
+	 * @param className the binary name of the class
+	 * @return the class file info, or {@code null} if the class file cannot be found
+	 * @throws IOException if the class file cannot be read or it is malformed
+	 */
+	private static ClassFileInfo readClassFileInfo(ClassLoader classLoader, String className) throws IOException
+	{
+		try (InputStream inputStream = classLoader.getResourceAsStream(className.replace('.', '/') + ".class"))
+		{
+			return inputStream != null ? ClassFileReader.read(inputStream) : null;
+		}
+	}
+	
+	/**
+	 * Loads the class of the {@link ClassHandle}
+	 * @param handle the class handle
+	 * @return the loaded class, or {@code null} if the class cannot be loaded
+	 */
+	private static Class<?> loadClass(ClassHandle handle)
+	{
+		final long start = Instrumentation.start();
+		try
+		{
+			final Class<?> clazz = handle.load();
+			Instrumentation.classLoaded(handle.getName(), start);
+			return clazz;
+		}
+		catch (ClassNotFoundException | LinkageError e)
+		{
+			// stale index, collected class loader, missing dependency or incompatible class file
+			Instrumentation.classLoadFailed(handle.getName(), e);
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Loads a class of a module, without initializing it.
+	 * @param module the module
+	 * @param className the binary name of the class
+	 * @return the loaded class, or {@code null} if the class cannot be loaded
 	 */
-	private static Class<?> loadClass(ClassInfo info)
+	private static Class<?> loadClass(ScannedModule module, String className)
 	{
+		final long start = Instrumentation.start();
 		try
 		{
-			return info.load();
+			final Class<?> clazz = module.loadClass(className);
+			Instrumentation.classLoaded(className, start);
+			return clazz;
 		}
-		catch (NoClassDefFoundError e)
+		catch (ClassNotFoundException | LinkageError e)
 		{
-			// ignore
+			Instrumentation.classLoadFailed(className, e);
 		}
 		
 		return null;
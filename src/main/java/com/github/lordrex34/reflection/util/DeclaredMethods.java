@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The per class cache of declared methods shared by the method queries of {@link ClassPathUtil}.<br>
+ * {@link Class#getDeclaredMethods()} copies the array and every {@link Method} on each call, the cache keeps a single copy per class, so repeated queries allocate nothing.
+ * Since the same {@link Method} instances are returned every time, their annotations are parsed only once as well.<br>
+ * The cache is a {@link ClassValue}, its entries go away along with the class when it is unloaded. The annotation types are weakly referenced, queries with the annotations of other class loaders do not keep those alive.
+ * @author lord_rex
+ */
+final class DeclaredMethods
+{
+	private static final ClassValue<DeclaredMethods> CACHE = new ClassValue<DeclaredMethods>()
+	{
+		@Override
+		protected DeclaredMethods computeValue(Class<?> type)
+		{
+			return new DeclaredMethods(type.getDeclaredMethods());
+		}
+	};
+	
+	private final List<Method> methods;
+	private final Map<Class<? extends Annotation>, List<Method>> methodsByAnnotation = new WeakHashMap<>();
+	
+	private DeclaredMethods(Method[] methods)
+	{
+		this.methods = Collections.unmodifiableList(Arrays.asList(methods));
+	}
+	
+	/**
+	 * Gets the declared methods of the class.
+	 * @param clazz the class
+	 * @return an unmodifiable list of the shared method instances
+	 */
+	static List<Method> of(Class<?> clazz)
+	{
+		return CACHE.get(clazz).methods;
+	}
+	
+	/**
+	 * Gets the declared methods of the class annotated with the annotation.
+	 * @param clazz the class
+	 * @param annotationClass the annotation
+	 * @return an unmodifiable list of the shared method instances
+	 */
+	static List<Method> annotatedWith(Class<?> clazz, Class<? extends Annotation> annotationClass)
+	{
+		final DeclaredMethods declaredMethods = CACHE.get(clazz);
+		synchronized (declaredMethods.methodsByAnnotation)
+		{
+			return declaredMethods.methodsByAnnotation.computeIfAbsent(annotationClass, declaredMethods::filter);
+		}
+	}
+	
+	private List<Method> filter(Class<? extends Annotation> annotationClass)
+	{
+		final List<Method> annotatedMethods = new ArrayList<>();
+		for (Method method : methods)
+		{
+			if (method.isAnnotationPresent(annotationClass))
+			{
+				annotatedMethods.add(method);
+			}
+		}
+		return annotatedMethods.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(annotatedMethods);
+	}
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The fields of a class along with their resolved generic types, built once per class by {@link GenericUtil#fieldTableOf(Class)}.<br>
+ * Every field of the class and of its superclasses is listed, superclass fields first, in declaration order. Synthetic fields are left out.
+ * The raw types and the generic arguments of the fields are erased to classes the same way {@link GenericUtil#parametersOf(Class, Class)} does,
+ * and the type variables of the superclasses are resolved as seen from the class.<br>
+ * The table is immutable and kept in flat arrays, so the lookups allocate nothing and the table can be shared between threads.
+ * The {@link Field} instances are shared as well, they must not be made accessible by one caller for another.
+ * @author lord_rex
+ */
+public final class GenericFieldTable
+{
+	private static final ClassValue<GenericFieldTable> CACHE = new ClassValue<GenericFieldTable>()
+	{
+		@Override
+		protected GenericFieldTable computeValue(Class<?> type)
+		{
+			return new GenericFieldTable(type);
+		}
+	};
+	
+	private final Field[] fields;
+	private final Class<?>[] rawTypes;
+	private final int[] argumentOffsets;
+	private final Class<?>[] arguments;
+	private final Map<String, Integer> indexByName = new HashMap<>();
+	
+	private GenericFieldTable(Class<?> clazz)
+	{
+		final Deque<Class<?>> hierarchy = new ArrayDeque<>();
+		for (Class<?> type = clazz; type != null; type = type.getSuperclass())
+		{
+			hierarchy.push(type);
+		}
+		
+		final List<Field> fieldList = new ArrayList<>();
+		for (Class<?> type : hierarchy)
+		{
+			for (Field field : type.getDeclaredFields())
+			{
+				if (!field.isSynthetic())
+				{
+					fieldList.add(field);
+				}
+			}
+		}
+		
+		fields = fieldList.toArray(new Field[0]);
+		rawTypes = new Class<?>[fields.length];
+		argumentOffsets = new int[fields.length + 1];
+		final List<Class<?>> argumentList = new ArrayList<>();
+		for (int i = 0; i < fields.length; i++)
+		{
+			final Field field = fields[i];
+			final Type genericType = field.getGenericType();
+			rawTypes[i] = resolve(clazz, field, genericType);
+			if (genericType instanceof ParameterizedType)
+			{
+				for (Type typeArgument : ((ParameterizedType) genericType).getActualTypeArguments())
+				{
+					argumentList.add(resolve(clazz, field, typeArgument));
+				}
+			}
+			argumentOffsets[i + 1] = argumentList.size();
+			indexByName.put(field.getName(), i); // a field hides the same named field of the superclass
+		}
+		arguments = argumentList.toArray(new Class<?>[0]);
+	}
+	
+	/**
+	 * Gets the table of the class.
+	 * @param clazz the class
+	 * @return the cached table
+	 */
+	static GenericFieldTable of(Class<?> clazz)
+	{
+		return CACHE.get(clazz);
+	}
+	
+	private static Class<?> resolve(Class<?> clazz, Field field, Type type)
+	{
+		if (type instanceof WildcardType)
+		{
+			return resolve(clazz, field, ((WildcardType) type).getUpperBounds()[0]);
+		}
+		
+		final Class<?> declaringClass = field.getDeclaringClass();
+		if ((type instanceof TypeVariable) && (((TypeVariable<?>) type).getGenericDeclaration() == declaringClass))
+		{
+			final int index = Arrays.asList(declaringClass.getTypeParameters()).indexOf(type);
+			return GenericUtil.parameterOf(clazz, declaringClass, index);
+		}
+		return GenericUtil.rawTypeOf(type);
+	}
+	
+	/**
+	 * Gets the number of fields.
+	 * @return the number of fields
+	 */
+	public int size()
+	{
+		return fields.length;
+	}
+	
+	/**
+	 * Gets the index of the named field. A field hiding a field of a superclass wins.
+	 * @param name the name of the field
+	 * @return the index of the field, or {@code -1} if there is no such field
+	 */
+	public int indexOf(String name)
+	{
+		final Integer index = indexByName.get(name);
+		return index != null ? index : -1;
+	}
+	
+	/**
+	 * Gets a field.
+	 * @param index the index of the field
+	 * @return the shared field instance
+	 */
+	public Field getField(int index)
+	{
+		return fields[index];
+	}
+	
+	/**
+	 * Gets the name of a field.
+	 * @param index the index of the field
+	 * @return the field name
+	 */
+	public String getName(int index)
+	{
+		return fields[index].getName();
+	}
+	
+	/**
+	 * Gets the resolved raw type of a field.
+	 * @param index the index of the field
+	 * @return the raw type
+	 */
+	public Class<?> getRawType(int index)
+	{
+		return rawTypes[index];
+	}
+	
+	/**
+	 * Gets the number of generic arguments of a field.
+	 * @param index the index of the field
+	 * @return the number of generic arguments, {@code 0} if the field type is not parameterized
+	 */
+	public int getArgumentCount(int index)
+	{
+		return argumentOffsets[index + 1] - argumentOffsets[index];
+	}
+	
+	/**
+	 * Gets a resolved generic argument of a field.
+	 * @param index the index of the field
+	 * @param argumentIndex the index of the generic argument
+	 * @return the generic argument
+	 * @throws IndexOutOfBoundsException if the field has no such generic argument
+	 */
+	public Class<?> getArgument(int index, int argumentIndex)
+	{
+		if ((argumentIndex < 0) || (argumentIndex >= getArgumentCount(index)))
+		{
+			throw new IndexOutOfBoundsException("Field " + fields[index] + " has no generic argument " + argumentIndex);
+		}
+		
+		return arguments[argumentOffsets[index] + argumentIndex];
+	}
+}
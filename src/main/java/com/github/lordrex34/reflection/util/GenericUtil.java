@@ -21,15 +21,34 @@
  */
 package com.github.lordrex34.reflection.util;
 
+import java.lang.reflect.Array;
 import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author lord_rex
  */
 public final class GenericUtil
 {
+	/** The resolved type arguments of the generic supertypes, per class and per supertype. */
+	private static final ClassValue<ConcurrentMap<Class<?>, Class<?>[]>> PARAMETERS = new ClassValue<ConcurrentMap<Class<?>, Class<?>[]>>()
+	{
+		@Override
+		protected ConcurrentMap<Class<?>, Class<?>[]> computeValue(Class<?> type)
+		{
+			return new ConcurrentHashMap<>();
+		}
+	};
+	
 	private GenericUtil()
 	{
 		// utility class
@@ -53,7 +72,7 @@ public final class GenericUtil
 	}
 	
 	/**
-	 * Retrieves a specific element of the generic type array, see {@link #typesOf(Field)}.
+	 * Retrieves a specific element of the generic type array, see {@link #typesOf(Field)}. A wildcard, a type variable or a parameterized type is erased to its raw class.
 	 * @param field the field used to get the generic types
 	 * @param index the index of the desired generic type
 	 * @return generic type
@@ -66,33 +85,206 @@ public final class GenericUtil
 			return Object.class; // missing wildcard declaration
 		}
 		
-		return (Class<?>) allGenericTypes[index];
+		return rawTypeOf(allGenericTypes[index]);
+	}
+	
+	/**
+	 * Gets the field table of a class, every field along with its raw type and its generic arguments. The table is built once per class, see {@link GenericFieldTable}.
+	 * @param clazz the class
+	 * @return the cached field table
+	 */
+	public static GenericFieldTable fieldTableOf(Class<?> clazz)
+	{
+		return GenericFieldTable.of(clazz);
 	}
 	
 	/**
 	 * Retrieves the generic parameter of a specified class.<br>
-	 * In case it cannot be found, the parent is being checked as well.
+	 * The parameter belongs to the closest superclass declared with type arguments, type variables bound through intermediate classes are resolved. See {@link #parameterOf(Class, Class, int)}.
 	 * @param clazz the class whose generic is being gathered
 	 * @param index the index of the desired generic parameter
-	 * @return generic parameter
+	 * @return generic parameter, {@link Object} if the class has no parameterized superclass
 	 */
 	public static Class<?> parameterOf(Class<?> clazz, int index)
 	{
-		Type genericSuperClass = clazz.getGenericSuperclass();
+		for (Type genericSuperclass = clazz.getGenericSuperclass(); genericSuperclass != null; genericSuperclass = rawTypeOf(genericSuperclass).getGenericSuperclass())
+		{
+			if (genericSuperclass instanceof ParameterizedType)
+			{
+				return parameterOf(clazz, rawTypeOf(genericSuperclass), index);
+			}
+		}
+		
+		return Object.class; // missing generic declaration
+	}
+	
+	/**
+	 * Retrieves a generic parameter of a supertype, as seen from the specified class, see {@link #parametersOf(Class, Class)}.
+	 * @param clazz the class whose generic is being gathered
+	 * @param supertype the generic superclass or interface declaring the parameter
+	 * @param index the index of the desired generic parameter
+	 * @return generic parameter
+	 * @throws IllegalArgumentException if the class is not a subtype of the supertype
+	 */
+	public static Class<?> parameterOf(Class<?> clazz, Class<?> supertype, int index)
+	{
+		final Class<?>[] parameters = resolveParameters(clazz, supertype);
+		if (parameters == null)
+		{
+			throw new IllegalArgumentException(clazz.getName() + " is not a subtype of " + supertype.getName());
+		}
+		
+		return parameters[index];
+	}
+	
+	/**
+	 * Retrieves the generic parameters of a supertype, as seen from the specified class.<br>
+	 * Both superclasses and interfaces are followed, type variables bound through intermediate classes are resolved. A parameter which remains a type variable resolves to its bound,
+	 * a wildcard to its upper bound, a parameterized type to its raw type and a generic array to the array class.<br>
+	 * The result is computed once per class and supertype.
+	 * @param clazz the class whose generics are being gathered
+	 * @param supertype the generic superclass or interface
+	 * @return a new array of generic parameters, or {@code null} if the class is not a subtype of the supertype
+	 */
+	public static Class<?>[] parametersOf(Class<?> clazz, Class<?> supertype)
+	{
+		final Class<?>[] parameters = resolveParameters(clazz, supertype);
+		return parameters != null ? parameters.clone() : null;
+	}
+	
+	/**
+	 * Gets the cached generic parameters of a supertype, computing them on the first call. The returned array is shared, it must not be modified.
+	 * @param clazz the class whose generics are being gathered
+	 * @param supertype the generic superclass or interface
+	 * @return the cached array of generic parameters, or {@code null} if the class is not a subtype of the supertype
+	 */
+	static Class<?>[] resolveParameters(Class<?> clazz, Class<?> supertype)
+	{
+		if (!supertype.isAssignableFrom(clazz))
+		{
+			return null;
+		}
+		
+		final ConcurrentMap<Class<?>, Class<?>[]> parameters = PARAMETERS.get(clazz);
+		final Class<?>[] cachedParameters = parameters.get(supertype);
+		if (cachedParameters != null)
+		{
+			return cachedParameters;
+		}
+		
+		final Type[] typeArguments = resolveTypeArguments(clazz, Collections.emptyMap(), supertype);
+		if (typeArguments == null)
+		{
+			return null;
+		}
+		
+		final Class<?>[] resolvedParameters = new Class<?>[typeArguments.length];
+		for (int i = 0; i < typeArguments.length; i++)
+		{
+			resolvedParameters[i] = rawTypeOf(typeArguments[i]);
+		}
 		
-		ParameterizedType parametrizedType = null;
-		while (parametrizedType == null)
+		final Class<?>[] existingParameters = parameters.putIfAbsent(supertype, resolvedParameters);
+		return existingParameters != null ? existingParameters : resolvedParameters;
+	}
+	
+	/**
+	 * Walks the supertypes of the type up to the target, binding the type variables of each level.
+	 * @param type the current type
+	 * @param bindings the bound type variables of the level below
+	 * @param target the generic supertype
+	 * @return the type arguments of the target, or {@code null} if the target is not reachable from the type
+	 */
+	private static Type[] resolveTypeArguments(Type type, Map<TypeVariable<?>, Type> bindings, Class<?> target)
+	{
+		final Class<?> rawType = rawTypeOf(type);
+		final TypeVariable<?>[] typeParameters = rawType.getTypeParameters();
+		final Map<TypeVariable<?>, Type> typeBindings = new HashMap<>();
+		if (type instanceof ParameterizedType)
 		{
-			if ((genericSuperClass instanceof ParameterizedType))
+			final Type[] actualTypeArguments = ((ParameterizedType) type).getActualTypeArguments();
+			for (int i = 0; i < typeParameters.length; i++)
 			{
-				parametrizedType = (ParameterizedType) genericSuperClass;
+				typeBindings.put(typeParameters[i], substitute(actualTypeArguments[i], bindings));
 			}
-			else
+		}
+		
+		if (rawType == target)
+		{
+			final Type[] typeArguments = new Type[typeParameters.length];
+			for (int i = 0; i < typeParameters.length; i++)
 			{
-				genericSuperClass = ((Class<?>) genericSuperClass).getGenericSuperclass();
+				typeArguments[i] = typeBindings.getOrDefault(typeParameters[i], typeParameters[i]);
 			}
+			return typeArguments;
 		}
 		
-		return (Class<?>) parametrizedType.getActualTypeArguments()[index];
+		final Type genericSuperclass = rawType.getGenericSuperclass();
+		if ((genericSuperclass != null) && target.isAssignableFrom(rawTypeOf(genericSuperclass)))
+		{
+			return resolveTypeArguments(genericSuperclass, typeBindings, target);
+		}
+		
+		for (Type genericInterface : rawType.getGenericInterfaces())
+		{
+			if (target.isAssignableFrom(rawTypeOf(genericInterface)))
+			{
+				return resolveTypeArguments(genericInterface, typeBindings, target);
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Replaces the bound type variables of a type argument. Only the parts of the type which survive the erasure are replaced.
+	 * @param type the type argument
+	 * @param bindings the bound type variables
+	 * @return the substituted type
+	 */
+	private static Type substitute(Type type, Map<TypeVariable<?>, Type> bindings)
+	{
+		if (type instanceof TypeVariable)
+		{
+			return bindings.getOrDefault(type, type);
+		}
+		if (type instanceof WildcardType)
+		{
+			return substitute(((WildcardType) type).getUpperBounds()[0], bindings);
+		}
+		if (type instanceof GenericArrayType)
+		{
+			return Array.newInstance(rawTypeOf(substitute(((GenericArrayType) type).getGenericComponentType(), bindings)), 0).getClass();
+		}
+		return type;
+	}
+	
+	/**
+	 * Gets the erasure of a type.
+	 * @param type the type
+	 * @return the raw class of the type
+	 */
+	static Class<?> rawTypeOf(Type type)
+	{
+		if (type instanceof Class)
+		{
+			return (Class<?>) type;
+		}
+		if (type instanceof ParameterizedType)
+		{
+			return (Class<?>) ((ParameterizedType) type).getRawType();
+		}
+		if (type instanceof GenericArrayType)
+		{
+			return Array.newInstance(rawTypeOf(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+		}
+		if (type instanceof WildcardType)
+		{
+			return rawTypeOf(((WildcardType) type).getUpperBounds()[0]);
+		}
+		if (type instanceof TypeVariable)
+		{
+			return rawTypeOf(((TypeVariable<?>) type).getBounds()[0]);
+		}
+		return Object.class;
 	}
 }
@@ -0,0 +1,378 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleProxies;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Turns discovered methods, such as the results of {@link ClassPathUtil#getAllMethodsAnnotatedWith(ClassLoader, String, Class)}, into strongly typed invokers.<br>
+ * The invokers implement a functional interface chosen by the caller and are generated through {@link LambdaMetafactory}, so calling them costs about as much as a direct call:
+ * there is no argument array, no boxing of primitive arguments matching the interface, and no access check per call.<br>
+ * The generated factories are cached per declaring class, they are dropped along with the class when it is unloaded.
+ * @author lord_rex
+ */
+public final class InvokerUtil
+{
+	private static final ClassValue<ConcurrentMap<InvokerKey, MethodHandle>> FACTORIES = new ClassValue<ConcurrentMap<InvokerKey, MethodHandle>>()
+	{
+		@Override
+		protected ConcurrentMap<InvokerKey, MethodHandle> computeValue(Class<?> type)
+		{
+			return new ConcurrentHashMap<>();
+		}
+	};
+	
+	private static final Method PRIVATE_LOOKUP_IN = findPrivateLookupIn();
+	private static final Constructor<MethodHandles.Lookup> LOOKUP_CONSTRUCTOR = PRIVATE_LOOKUP_IN == null ? findLookupConstructor() : null;
+	private static final int ALL_MODES = MethodHandles.Lookup.PUBLIC | MethodHandles.Lookup.PRIVATE | MethodHandles.Lookup.PROTECTED | MethodHandles.Lookup.PACKAGE;
+	private static final MethodHandle PROXY_FACTORY = findProxyFactory();
+	
+	private InvokerUtil()
+	{
+		// utility class
+	}
+	
+	/**
+	 * Creates an invoker of the method implementing the functional interface.<br>
+	 * For static methods the parameters of the interface method are the parameters of the method. For instance methods the first parameter is the receiver, for example
+	 * {@code BiConsumer<Listener, Event>} for {@code void Listener.onEvent(Event)}.
+	 * @param <T> the type of the functional interface
+	 * @param method the method to invoke, non-public methods are supported as well
+	 * @param functionalInterface the functional interface
+	 * @return the invoker
+	 * @throws IllegalArgumentException if the method does not fit the functional interface
+	 */
+	public static <T> T invokerOf(Method method, Class<T> functionalInterface)
+	{
+		return create(method, functionalInterface, false, null);
+	}
+	
+	/**
+	 * Creates an invoker of the instance method bound to the target, implementing the functional interface. The parameters of the interface method are the parameters of the method,
+	 * for example {@code Consumer<Event>} for {@code void Listener.onEvent(Event)}.
+	 * @param <T> the type of the functional interface
+	 * @param method the instance method to invoke, non-public methods are supported as well
+	 * @param target the receiver of the calls
+	 * @param functionalInterface the functional interface
+	 * @return the invoker
+	 * @throws IllegalArgumentException if the method is static, the target is not an instance of the declaring class, or the method does not fit the functional interface
+	 */
+	public static <T> T boundInvokerOf(Method method, Object target, Class<T> functionalInterface)
+	{
+		Objects.requireNonNull(target, "target");
+		if (Modifier.isStatic(method.getModifiers()) || !method.getDeclaringClass().isInstance(target))
+		{
+			throw new IllegalArgumentException("Cannot bind " + method + " to " + target.getClass().getName() + ".");
+		}
+		return create(method, functionalInterface, true, target);
+	}
+	
+	private static <T> T create(Method method, Class<T> functionalInterface, boolean bound, Object target)
+	{
+		final MethodHandle factory = FACTORIES.get(method.getDeclaringClass()).computeIfAbsent(new InvokerKey(method, functionalInterface, bound), InvokerUtil::createFactory);
+		try
+		{
+			return functionalInterface.cast(bound ? factory.invoke(target) : factory.invoke());
+		}
+		catch (RuntimeException | Error e)
+		{
+			throw e;
+		}
+		catch (Throwable e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Creates the factory of the invokers, taking the receiver for bound invokers and nothing otherwise.
+	 * @param key the invoker key
+	 * @return the factory
+	 */
+	private static MethodHandle createFactory(InvokerKey key)
+	{
+		final Method method = key.method;
+		final Class<?> functionalInterface = key.functionalInterface;
+		final Method samMethod = findSingleAbstractMethod(functionalInterface);
+		final MethodType samType = MethodType.methodType(samMethod.getReturnType(), samMethod.getParameterTypes());
+		final List<MethodType> bridgeTypes = findBridgeTypes(functionalInterface, samMethod);
+		
+		final MethodHandles.Lookup lookup;
+		final MethodHandle implementation;
+		try
+		{
+			lookup = privateLookupIn(method.getDeclaringClass());
+			implementation = lookup.unreflect(method);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new IllegalArgumentException("Cannot access " + method + ".", e);
+		}
+		
+		// the receiver of bound invokers is captured, it is not part of the interface method
+		final MethodType implementationType = key.bound ? implementation.type().dropParameterTypes(0, 1) : implementation.type();
+		final MethodType instantiatedType = samType.returnType() == void.class ? implementationType.changeReturnType(void.class) : implementationType;
+		if (instantiatedType.parameterCount() != samType.parameterCount())
+		{
+			throw new IllegalArgumentException(method + " does not fit " + functionalInterface.getName() + ".");
+		}
+		
+		final MethodType factoryType = key.bound ? MethodType.methodType(functionalInterface, method.getDeclaringClass()) : MethodType.methodType(functionalInterface);
+		try
+		{
+			final CallSite callSite;
+			if (bridgeTypes.isEmpty())
+			{
+				callSite = LambdaMetafactory.metafactory(lookup, samMethod.getName(), factoryType, samType, implementation, instantiatedType);
+			}
+			else
+			{
+				// the signatures overridden by the function method are implemented as bridges
+				final List<Object> arguments = new ArrayList<>();
+				arguments.add(samType);
+				arguments.add(implementation);
+				arguments.add(instantiatedType);
+				arguments.add(LambdaMetafactory.FLAG_BRIDGES);
+				arguments.add(bridgeTypes.size());
+				arguments.addAll(bridgeTypes);
+				callSite = LambdaMetafactory.altMetafactory(lookup, samMethod.getName(), factoryType, arguments.toArray());
+			}
+			return callSite.getTarget();
+		}
+		catch (Throwable e)
+		{
+			// the functional interface is not visible from the declaring class, or the types need conversions the metafactory does not do
+			try
+			{
+				final MethodHandle adapted = implementation.asType(key.bound ? samType.insertParameterTypes(0, method.getDeclaringClass()) : samType);
+				return key.bound ? PROXY_FACTORY.bindTo(functionalInterface).bindTo(adapted) : MethodHandles.constant(Object.class, MethodHandleProxies.asInterfaceInstance(functionalInterface, adapted)).asType(factoryType);
+			}
+			catch (RuntimeException f)
+			{
+				f.addSuppressed(e);
+				throw new IllegalArgumentException(method + " does not fit " + functionalInterface.getName() + ".", f);
+			}
+		}
+	}
+	
+	private static MethodHandle findProxyFactory()
+	{
+		try
+		{
+			return MethodHandles.lookup().findStatic(InvokerUtil.class, "boundProxy", MethodType.methodType(Object.class, Class.class, MethodHandle.class, Object.class));
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+	
+	@SuppressWarnings("unused")
+	private static Object boundProxy(Class<?> functionalInterface, MethodHandle implementation, Object target)
+	{
+		return MethodHandleProxies.asInterfaceInstance(functionalInterface, implementation.bindTo(target));
+	}
+	
+	/**
+	 * Finds the function method of the functional interface, the most specific of its abstract methods.<br>
+	 * The other abstract methods are the signatures it overrides, such as {@code Object get()} of {@code Supplier} under a covariant {@code Integer get()}.
+	 * @param functionalInterface the functional interface
+	 * @return the function method
+	 */
+	private static Method findSingleAbstractMethod(Class<?> functionalInterface)
+	{
+		if (!functionalInterface.isInterface())
+		{
+			throw new IllegalArgumentException(functionalInterface.getName() + " is not an interface.");
+		}
+		
+		final List<Method> abstractMethods = new ArrayList<>();
+		for (Method method : functionalInterface.getMethods())
+		{
+			if (Modifier.isAbstract(method.getModifiers()) && !isObjectMethod(method))
+			{
+				abstractMethods.add(method);
+			}
+		}
+		if (abstractMethods.isEmpty())
+		{
+			throw new IllegalArgumentException(functionalInterface.getName() + " has no abstract method.");
+		}
+		
+		// independent of the order of the methods, only the most specific one overrides all the others
+		for (Method method : abstractMethods)
+		{
+			if (abstractMethods.stream().allMatch(other -> isOverriding(method, other)))
+			{
+				return method;
+			}
+		}
+		throw new IllegalArgumentException(functionalInterface.getName() + " has more than one abstract method.");
+	}
+	
+	/**
+	 * Gets the distinct types of the abstract methods overridden by the function method, the invoker implements them as bridges.
+	 * @param functionalInterface the functional interface
+	 * @param samMethod the function method
+	 * @return the bridge types, empty if the function method overrides nothing with a different type
+	 */
+	private static List<MethodType> findBridgeTypes(Class<?> functionalInterface, Method samMethod)
+	{
+		final MethodType samType = MethodType.methodType(samMethod.getReturnType(), samMethod.getParameterTypes());
+		final Set<MethodType> bridgeTypes = new LinkedHashSet<>();
+		for (Method method : functionalInterface.getMethods())
+		{
+			final MethodType methodType = MethodType.methodType(method.getReturnType(), method.getParameterTypes());
+			if (Modifier.isAbstract(method.getModifiers()) && method.getName().equals(samMethod.getName()) && !methodType.equals(samType) && !isObjectMethod(method))
+			{
+				bridgeTypes.add(methodType);
+			}
+		}
+		return new ArrayList<>(bridgeTypes);
+	}
+	
+	private static boolean isOverriding(Method method, Method other)
+	{
+		if (!method.getName().equals(other.getName()) || (method.getParameterCount() != other.getParameterCount()) || !other.getReturnType().isAssignableFrom(method.getReturnType()))
+		{
+			return false;
+		}
+		
+		final Class<?>[] parameterTypes = method.getParameterTypes();
+		final Class<?>[] otherParameterTypes = other.getParameterTypes();
+		for (int i = 0; i < parameterTypes.length; i++)
+		{
+			if (!otherParameterTypes[i].isAssignableFrom(parameterTypes[i]))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static boolean isObjectMethod(Method method)
+	{
+		try
+		{
+			Object.class.getMethod(method.getName(), method.getParameterTypes());
+			return true;
+		}
+		catch (NoSuchMethodException e)
+		{
+			return false;
+		}
+	}
+	
+	/**
+	 * Gets a lookup with private access to the class, through {@code MethodHandles.privateLookupIn} on Java 9 and newer, or through the private constructor of the lookup on Java 8.
+	 * @param targetClass the class
+	 * @return the lookup
+	 * @throws ReflectiveOperationException if the lookup cannot be created
+	 */
+	private static MethodHandles.Lookup privateLookupIn(Class<?> targetClass) throws ReflectiveOperationException
+	{
+		if (PRIVATE_LOOKUP_IN != null)
+		{
+			return (MethodHandles.Lookup) PRIVATE_LOOKUP_IN.invoke(null, targetClass, MethodHandles.lookup());
+		}
+		if (LOOKUP_CONSTRUCTOR != null)
+		{
+			return LOOKUP_CONSTRUCTOR.newInstance(targetClass, ALL_MODES);
+		}
+		return MethodHandles.lookup().in(targetClass);
+	}
+	
+	private static Method findPrivateLookupIn()
+	{
+		try
+		{
+			return MethodHandles.class.getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class);
+		}
+		catch (NoSuchMethodException e)
+		{
+			return null; // Java 8
+		}
+	}
+	
+	private static Constructor<MethodHandles.Lookup> findLookupConstructor()
+	{
+		try
+		{
+			final Constructor<MethodHandles.Lookup> constructor = MethodHandles.Lookup.class.getDeclaredConstructor(Class.class, int.class);
+			constructor.setAccessible(true);
+			return constructor;
+		}
+		catch (ReflectiveOperationException | RuntimeException e)
+		{
+			return null;
+		}
+	}
+	
+	/**
+	 * The cache key of an invoker factory.
+	 */
+	private static final class InvokerKey
+	{
+		final Method method;
+		final Class<?> functionalInterface;
+		final boolean bound;
+		
+		InvokerKey(Method method, Class<?> functionalInterface, boolean bound)
+		{
+			this.method = method;
+			this.functionalInterface = functionalInterface;
+			this.bound = bound;
+		}
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof InvokerKey))
+			{
+				return false;
+			}
+			final InvokerKey other = (InvokerKey) obj;
+			return method.equals(other.method) && (functionalInterface == other.functionalInterface) && (bound == other.bound);
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return (((method.hashCode() * 31) + functionalInterface.hashCode()) * 31) + Boolean.hashCode(bound);
+		}
+	}
+}
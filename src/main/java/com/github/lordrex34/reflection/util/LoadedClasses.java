@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
+
+import com.github.lordrex34.reflection.util.instrument.Instrumentation;
+import com.github.lordrex34.reflection.util.scan.ClassHandle;
+
+/**
+ * The classes of a query loaded in parallel by the {@code *Parallel} methods of {@link ClassPathUtil}, along with the classes which failed to load.<br>
+ * The candidates are split between the workers of a {@link ForkJoinPool}, whose parallelism bounds the number of classes loaded at once. Each worker also runs the filter of the query on its classes,
+ * such as the annotation check. The results are always listed in candidate order, the same order as the serial query.
+ * @author lord_rex
+ * @param <T> the type of the loaded classes
+ */
+public final class LoadedClasses<T>
+{
+	/** The number of candidates a single task loads without splitting further. */
+	private static final int THRESHOLD = 16;
+	
+	private final List<T> classes;
+	private final Map<String, Throwable> failures;
+	
+	private LoadedClasses(List<T> classes, Map<String, Throwable> failures)
+	{
+		this.classes = Collections.unmodifiableList(classes);
+		this.failures = Collections.unmodifiableMap(failures);
+	}
+	
+	/**
+	 * Loads the candidates on the pool and keeps the classes accepted by the filter.
+	 * @param candidates the candidates, in query order
+	 * @param filter the filter of the loaded classes
+	 * @param pool the pool loading the classes
+	 * @return the loaded classes
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> LoadedClasses<T> load(List<ClassHandle> candidates, Predicate<Class<?>> filter, ForkJoinPool pool)
+	{
+		final ClassHandle[] handles = candidates.toArray(new ClassHandle[candidates.size()]);
+		final Class<?>[] loadedClasses = new Class<?>[handles.length];
+		final Throwable[] errors = new Throwable[handles.length];
+		pool.invoke(new LoadTask(handles, filter, loadedClasses, errors, 0, handles.length));
+		
+		final List<T> classes = new ArrayList<>(handles.length);
+		final Map<String, Throwable> failures = new LinkedHashMap<>();
+		for (int i = 0; i < handles.length; i++)
+		{
+			if (loadedClasses[i] != null)
+			{
+				classes.add((T) loadedClasses[i]);
+			}
+			else if (errors[i] != null)
+			{
+				failures.put(handles[i].getName(), errors[i]);
+			}
+		}
+		return new LoadedClasses<>(classes, failures);
+	}
+	
+	/**
+	 * Gets the loaded classes accepted by the query.
+	 * @return an unmodifiable list of classes, in the order of the serial query
+	 */
+	public List<T> getClasses()
+	{
+		return classes;
+	}
+	
+	/**
+	 * Gets the candidates which could not be loaded or filtered, such as the classes referencing a missing dependency. The serial queries skip the classes which cannot be loaded silently.
+	 * @return an unmodifiable map of the {@link ClassNotFoundException} or {@link LinkageError}, such as {@link NoClassDefFoundError}, or of the exception thrown by the filter, such as
+	 *         {@link TypeNotPresentException}, by class name, in candidate order
+	 */
+	public Map<String, Throwable> getFailures()
+	{
+		return failures;
+	}
+	
+	/**
+	 * Loads a range of candidates, splitting it in halves while it is larger than the threshold.
+	 */
+	@SuppressWarnings("serial")
+	private static final class LoadTask extends RecursiveAction
+	{
+		private final ClassHandle[] handles;
+		private final Predicate<Class<?>> filter;
+		private final Class<?>[] loadedClasses;
+		private final Throwable[] errors;
+		private final int from;
+		private final int to;
+		
+		LoadTask(ClassHandle[] handles, Predicate<Class<?>> filter, Class<?>[] loadedClasses, Throwable[] errors, int from, int to)
+		{
+			this.handles = handles;
+			this.filter = filter;
+			this.loadedClasses = loadedClasses;
+			this.errors = errors;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if ((to - from) > THRESHOLD)
+			{
+				final int middle = (from + to) >>> 1;
+				invokeAll(new LoadTask(handles, filter, loadedClasses, errors, from, middle), new LoadTask(handles, filter, loadedClasses, errors, middle, to));
+				return;
+			}
+			
+			for (int i = from; i < to; i++)
+			{
+				final String name = handles[i].getName();
+				final long start = Instrumentation.start();
+				final Class<?> clazz;
+				try
+				{
+					clazz = handles[i].load();
+					Instrumentation.classLoaded(name, start);
+				}
+				catch (ClassNotFoundException | LinkageError e)
+				{
+					Instrumentation.classLoadFailed(name, e);
+					errors[i] = e;
+					continue;
+				}
+				
+				try
+				{
+					if (filter.test(clazz))
+					{
+						loadedClasses[i] = clazz;
+					}
+				}
+				catch (RuntimeException | LinkageError e)
+				{
+					// such as a TypeNotPresentException while reading the annotations, the other candidates are still loaded
+					errors[i] = e;
+				}
+			}
+		}
+	}
+}
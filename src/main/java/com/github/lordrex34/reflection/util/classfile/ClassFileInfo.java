@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.classfile;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * The header information of a class file, gathered by {@link ClassFileReader} without loading the class.<br>
+ * All names are binary names, such as {@code java.util.Map$Entry}.
+ * @author lord_rex
+ */
+public final class ClassFileInfo
+{
+	/** The {@code ACC_ANNOTATION} access flag, not exposed by {@link Modifier}. */
+	public static final int ACC_ANNOTATION = 0x2000;
+	/** The {@code ACC_ENUM} access flag, not exposed by {@link Modifier}. */
+	public static final int ACC_ENUM = 0x4000;
+	
+	private final String name;
+	private final String superName;
+	private final List<String> interfaceNames;
+	private final int accessFlags;
+	private final Set<String> annotationNames;
+	private final List<MethodInfo> annotatedMethods;
+	
+	ClassFileInfo(String name, String superName, List<String> interfaceNames, int accessFlags, Set<String> annotationNames, List<MethodInfo> annotatedMethods)
+	{
+		this.name = name;
+		this.superName = superName;
+		this.interfaceNames = Collections.unmodifiableList(interfaceNames);
+		this.accessFlags = accessFlags;
+		this.annotationNames = Collections.unmodifiableSet(annotationNames);
+		this.annotatedMethods = Collections.unmodifiableList(annotatedMethods);
+	}
+	
+	/**
+	 * Gets the binary name of the class.
+	 * @return the class name
+	 */
+	public String getName()
+	{
+		return name;
+	}
+	
+	/**
+	 * Gets the binary name of the direct superclass.
+	 * @return the superclass name, {@code null} for {@link Object} and {@code module-info}
+	 */
+	public String getSuperName()
+	{
+		return superName;
+	}
+	
+	/**
+	 * Gets the binary names of the directly implemented interfaces, in declaration order.
+	 * @return an unmodifiable list of interface names
+	 */
+	public List<String> getInterfaceNames()
+	{
+		return interfaceNames;
+	}
+	
+	/**
+	 * Gets the raw access flags of the class file, see {@link Modifier} and the {@code ACC_} constants of this class.
+	 * @return the access flags
+	 */
+	public int getAccessFlags()
+	{
+		return accessFlags;
+	}
+	
+	/**
+	 * Gets the binary names of the annotations stored in the {@code RuntimeVisibleAnnotations} attribute of the class.
+	 * @return an unmodifiable set of annotation names
+	 */
+	public Set<String> getAnnotationNames()
+	{
+		return annotationNames;
+	}
+	
+	/**
+	 * Checks whether the class is directly annotated with the specified runtime visible annotation.
+	 * @param annotationName the binary name of the annotation
+	 * @return {@code true} if the annotation is declared on the class
+	 */
+	public boolean isAnnotationPresent(String annotationName)
+	{
+		return annotationNames.contains(annotationName);
+	}
+	
+	/**
+	 * Gets the declared methods (and constructors) which have runtime visible annotations, in declaration order.
+	 * @return an unmodifiable list of methods
+	 */
+	public List<MethodInfo> getAnnotatedMethods()
+	{
+		return annotatedMethods;
+	}
+	
+	/**
+	 * Checks whether any declared method is annotated with the specified runtime visible annotation.
+	 * @param annotationName the binary name of the annotation
+	 * @return {@code true} if a method carries the annotation
+	 */
+	public boolean isMethodAnnotationPresent(String annotationName)
+	{
+		for (MethodInfo method : annotatedMethods)
+		{
+			if (method.isAnnotationPresent(annotationName))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Verifies if the class file describes an interface (including annotation types).
+	 * @return {@code true} if it is an interface
+	 */
+	public boolean isInterface()
+	{
+		return (accessFlags & Modifier.INTERFACE) != 0;
+	}
+	
+	/**
+	 * Verifies if the class file describes an annotation type.
+	 * @return {@code true} if it is an annotation type
+	 */
+	public boolean isAnnotation()
+	{
+		return (accessFlags & ACC_ANNOTATION) != 0;
+	}
+	
+	/**
+	 * Verifies if the class file describes an enum type.
+	 * @return {@code true} if it is an enum
+	 */
+	public boolean isEnum()
+	{
+		return (accessFlags & ACC_ENUM) != 0;
+	}
+	
+	/**
+	 * Writes this information in a compact binary form, the names are written as indexes of a string table kept by the caller.
+	 * @param output the output
+	 * @param stringIndexes gives the index of a string in the string table
+	 * @throws IOException if the output cannot be written
+	 */
+	public void write(DataOutput output, ToIntFunction<String> stringIndexes) throws IOException
+	{
+		output.writeInt(stringIndexes.applyAsInt(name));
+		output.writeInt(superName == null ? -1 : stringIndexes.applyAsInt(superName));
+		writeNames(output, interfaceNames, stringIndexes);
+		output.writeInt(accessFlags);
+		writeNames(output, annotationNames, stringIndexes);
+		output.writeInt(annotatedMethods.size());
+		for (MethodInfo method : annotatedMethods)
+		{
+			output.writeInt(stringIndexes.applyAsInt(method.getName()));
+			output.writeInt(stringIndexes.applyAsInt(method.getDescriptor()));
+			output.writeInt(method.getAccessFlags());
+			writeNames(output, method.getAnnotationNames(), stringIndexes);
+		}
+	}
+	
+	/**
+	 * Reads the information written by {@link #write(DataOutput, ToIntFunction)}.
+	 * @param input the input
+	 * @param strings gives the string of an index of the string table
+	 * @return the class file information
+	 * @throws IOException if the input cannot be read
+	 */
+	public static ClassFileInfo read(DataInput input, IntFunction<String> strings) throws IOException
+	{
+		final String name = strings.apply(input.readInt());
+		final int superIndex = input.readInt();
+		final List<String> interfaceNames = readNames(input, strings, new ArrayList<>());
+		final int accessFlags = input.readInt();
+		final Set<String> annotationNames = readNames(input, strings, new LinkedHashSet<>());
+		final int methodCount = input.readInt();
+		final List<MethodInfo> annotatedMethods = new ArrayList<>(methodCount);
+		for (int i = 0; i < methodCount; i++)
+		{
+			final String methodName = strings.apply(input.readInt());
+			final String descriptor = strings.apply(input.readInt());
+			final int methodAccessFlags = input.readInt();
+			annotatedMethods.add(new MethodInfo(methodName, descriptor, methodAccessFlags, readNames(input, strings, new LinkedHashSet<>())));
+		}
+		return new ClassFileInfo(name, superIndex < 0 ? null : strings.apply(superIndex), interfaceNames, accessFlags, annotationNames, annotatedMethods);
+	}
+	
+	private static void writeNames(DataOutput output, Collection<String> names, ToIntFunction<String> stringIndexes) throws IOException
+	{
+		output.writeInt(names.size());
+		for (String name : names)
+		{
+			output.writeInt(stringIndexes.applyAsInt(name));
+		}
+	}
+	
+	private static <C extends Collection<String>> C readNames(DataInput input, IntFunction<String> strings, C names) throws IOException
+	{
+		final int count = input.readInt();
+		for (int i = 0; i < count; i++)
+		{
+			names.add(strings.apply(input.readInt()));
+		}
+		return names;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return name;
+	}
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.classfile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * A minimal class file parser that reads the header and the runtime visible annotations of a class and of its methods straight from its bytes, without loading it into the JVM.<br>
+ * Only the parts of the class file format required for class discovery are decoded, everything else is skipped.
+ * @author lord_rex
+ */
+public final class ClassFileReader
+{
+	private static final int MAGIC = 0xCAFEBABE;
+	private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+	
+	// constant pool tags
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_FLOAT = 4;
+	private static final int CONSTANT_LONG = 5;
+	private static final int CONSTANT_DOUBLE = 6;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_STRING = 8;
+	private static final int CONSTANT_FIELDREF = 9;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_INTERFACE_METHODREF = 11;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+	private static final int CONSTANT_METHOD_HANDLE = 15;
+	private static final int CONSTANT_METHOD_TYPE = 16;
+	private static final int CONSTANT_DYNAMIC = 17;
+	private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+	private static final int CONSTANT_MODULE = 19;
+	private static final int CONSTANT_PACKAGE = 20;
+	
+	private final byte[] bytes;
+	private final int[] constantPoolOffsets;
+	private final String[] constantPoolStrings;
+	private int position;
+	
+	private ClassFileReader(byte[] bytes)
+	{
+		this.bytes = bytes;
+		
+		if (readInt() != MAGIC)
+		{
+			throw new IllegalArgumentException("Not a class file.");
+		}
+		position += 4; // minor_version, major_version
+		
+		final int constantPoolCount = readUnsignedShort();
+		constantPoolOffsets = new int[constantPoolCount];
+		constantPoolStrings = new String[constantPoolCount];
+		for (int i = 1; i < constantPoolCount; i++)
+		{
+			constantPoolOffsets[i] = position;
+			final int tag = bytes[position++];
+			switch (tag)
+			{
+				case CONSTANT_UTF8:
+					position += 2 + readUnsignedShort(position);
+					break;
+				case CONSTANT_CLASS:
+				case CONSTANT_STRING:
+				case CONSTANT_METHOD_TYPE:
+				case CONSTANT_MODULE:
+				case CONSTANT_PACKAGE:
+					position += 2;
+					break;
+				case CONSTANT_METHOD_HANDLE:
+					position += 3;
+					break;
+				case CONSTANT_INTEGER:
+				case CONSTANT_FLOAT:
+				case CONSTANT_FIELDREF:
+				case CONSTANT_METHODREF:
+				case CONSTANT_INTERFACE_METHODREF:
+				case CONSTANT_NAME_AND_TYPE:
+				case CONSTANT_DYNAMIC:
+				case CONSTANT_INVOKE_DYNAMIC:
+					position += 4;
+					break;
+				case CONSTANT_LONG:
+				case CONSTANT_DOUBLE:
+					position += 8;
+					i++; // takes two slots
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown constant pool tag " + tag + ".");
+			}
+		}
+	}
+	
+	/**
+	 * Reads the class file information from the given stream. The stream is not closed.
+	 * @param inputStream the stream containing a class file
+	 * @return the class file information
+	 * @throws IOException if the stream cannot be read or it does not contain a valid class file
+	 */
+	public static ClassFileInfo read(InputStream inputStream) throws IOException
+	{
+		return read(ByteStreams.toByteArray(inputStream));
+	}
+	
+	/**
+	 * Reads the class file information from the given bytes.
+	 * @param bytes the content of a class file
+	 * @return the class file information
+	 * @throws IOException if the bytes do not represent a valid class file
+	 */
+	public static ClassFileInfo read(byte[] bytes) throws IOException
+	{
+		try
+		{
+			return new ClassFileReader(bytes).readClass();
+		}
+		catch (IllegalArgumentException | IndexOutOfBoundsException e)
+		{
+			throw new IOException("Malformed class file.", e);
+		}
+	}
+	
+	private ClassFileInfo readClass()
+	{
+		final int accessFlags = readUnsignedShort();
+		final String name = readClassName(readUnsignedShort());
+		final String superName = readClassName(readUnsignedShort());
+		
+		final int interfaceCount = readUnsignedShort();
+		final List<String> interfaceNames = interfaceCount == 0 ? Collections.emptyList() : new ArrayList<>(interfaceCount);
+		for (int i = 0; i < interfaceCount; i++)
+		{
+			interfaceNames.add(readClassName(readUnsignedShort()));
+		}
+		
+		skipMembers(); // fields
+		final List<MethodInfo> annotatedMethods = readAnnotatedMethods();
+		
+		Set<String> annotationNames = Collections.emptySet();
+		final int attributeCount = readUnsignedShort();
+		for (int i = 0; i < attributeCount; i++)
+		{
+			final String attributeName = readUtf8(readUnsignedShort());
+			final int length = readInt();
+			final int end = position + length;
+			if (RUNTIME_VISIBLE_ANNOTATIONS.equals(attributeName))
+			{
+				annotationNames = readAnnotationNames();
+			}
+			position = end;
+		}
+		
+		return new ClassFileInfo(name, superName, interfaceNames, accessFlags, annotationNames, annotatedMethods);
+	}
+	
+	/**
+	 * Reads the {@code method_info} structures, keeping only the methods that have runtime visible annotations.
+	 * @return the annotated methods
+	 */
+	private List<MethodInfo> readAnnotatedMethods()
+	{
+		List<MethodInfo> annotatedMethods = Collections.emptyList();
+		final int methodCount = readUnsignedShort();
+		for (int i = 0; i < methodCount; i++)
+		{
+			final int accessFlags = readUnsignedShort();
+			final int nameIndex = readUnsignedShort();
+			final int descriptorIndex = readUnsignedShort();
+			final int attributeCount = readUnsignedShort();
+			for (int j = 0; j < attributeCount; j++)
+			{
+				final String attributeName = readUtf8(readUnsignedShort());
+				final int length = readInt();
+				final int end = position + length;
+				if (RUNTIME_VISIBLE_ANNOTATIONS.equals(attributeName))
+				{
+					if (annotatedMethods.isEmpty())
+					{
+						annotatedMethods = new ArrayList<>();
+					}
+					annotatedMethods.add(new MethodInfo(readUtf8(nameIndex), readUtf8(descriptorIndex), accessFlags, readAnnotationNames()));
+				}
+				position = end;
+			}
+		}
+		return annotatedMethods;
+	}
+	
+	private void skipMembers()
+	{
+		final int memberCount = readUnsignedShort();
+		for (int i = 0; i < memberCount; i++)
+		{
+			position += 6; // access_flags, name_index, descriptor_index
+			skipAttributes();
+		}
+	}
+	
+	private void skipAttributes()
+	{
+		final int attributeCount = readUnsignedShort();
+		for (int i = 0; i < attributeCount; i++)
+		{
+			position += 2; // attribute_name_index
+			final int length = readInt();
+			position += length;
+		}
+	}
+	
+	private Set<String> readAnnotationNames()
+	{
+		final int annotationCount = readUnsignedShort();
+		final Set<String> annotationNames = new LinkedHashSet<>(annotationCount * 2);
+		for (int i = 0; i < annotationCount; i++)
+		{
+			annotationNames.add(readAnnotation());
+		}
+		return annotationNames;
+	}
+	
+	/**
+	 * Reads an {@code annotation} structure, returning its type name and skipping its element values.
+	 * @return the binary name of the annotation type
+	 */
+	private String readAnnotation()
+	{
+		final String typeName = descriptorToName(readUtf8(readUnsignedShort()));
+		final int pairCount = readUnsignedShort();
+		for (int i = 0; i < pairCount; i++)
+		{
+			position += 2; // element_name_index
+			skipElementValue();
+		}
+		return typeName;
+	}
+	
+	private void skipElementValue()
+	{
+		final char tag = (char) bytes[position++];
+		switch (tag)
+		{
+			case 'B':
+			case 'C':
+			case 'D':
+			case 'F':
+			case 'I':
+			case 'J':
+			case 'S':
+			case 'Z':
+			case 's':
+			case 'c':
+				position += 2;
+				break;
+			case 'e':
+				position += 4;
+				break;
+			case '@':
+				readAnnotation();
+				break;
+			case '[':
+				final int valueCount = readUnsignedShort();
+				for (int i = 0; i < valueCount; i++)
+				{
+					skipElementValue();
+				}
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown element value tag " + tag + ".");
+		}
+	}
+	
+	private String readClassName(int constantPoolIndex)
+	{
+		if (constantPoolIndex == 0)
+		{
+			return null;
+		}
+		final int nameIndex = readUnsignedShort(constantPoolOffsets[constantPoolIndex] + 1);
+		return readUtf8(nameIndex).replace('/', '.');
+	}
+	
+	/**
+	 * Decodes a {@code CONSTANT_Utf8} entry, which is stored in the modified UTF-8 format of {@link java.io.DataInput}.
+	 * @param constantPoolIndex the index of the entry
+	 * @return the decoded string
+	 */
+	private String readUtf8(int constantPoolIndex)
+	{
+		final String cached = constantPoolStrings[constantPoolIndex];
+		if (cached != null)
+		{
+			return cached;
+		}
+		
+		final int offset = constantPoolOffsets[constantPoolIndex] + 1;
+		final int length = readUnsignedShort(offset);
+		final char[] chars = new char[length];
+		int count = 0;
+		for (int i = offset + 2, end = i + length; i < end;)
+		{
+			final int b = bytes[i++] & 0xFF;
+			if (b < 0x80)
+			{
+				chars[count++] = (char) b;
+			}
+			else if ((b & 0xE0) == 0xC0)
+			{
+				chars[count++] = (char) (((b & 0x1F) << 6) | (bytes[i++] & 0x3F));
+			}
+			else
+			{
+				chars[count++] = (char) (((b & 0x0F) << 12) | ((bytes[i++] & 0x3F) << 6) | (bytes[i++] & 0x3F));
+			}
+		}
+		
+		final String value = new String(chars, 0, count);
+		constantPoolStrings[constantPoolIndex] = value;
+		return value;
+	}
+	
+	/**
+	 * Converts a field descriptor of a class type ({@code Lcom/example/Foo;}) to its binary name.
+	 * @param descriptor the descriptor
+	 * @return the binary name
+	 */
+	private static String descriptorToName(String descriptor)
+	{
+		return descriptor.substring(1, descriptor.length() - 1).replace('/', '.');
+	}
+	
+	private int readUnsignedShort()
+	{
+		final int value = readUnsignedShort(position);
+		position += 2;
+		return value;
+	}
+	
+	private int readUnsignedShort(int offset)
+	{
+		return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+	}
+	
+	private int readInt()
+	{
+		final int value = ((bytes[position] & 0xFF) << 24) | ((bytes[position + 1] & 0xFF) << 16) | ((bytes[position + 2] & 0xFF) << 8) | (bytes[position + 3] & 0xFF);
+		position += 4;
+		return value;
+	}
+}
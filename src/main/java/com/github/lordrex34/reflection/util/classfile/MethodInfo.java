@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.classfile;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * A method declared in a class file, gathered by {@link ClassFileReader} along with its runtime visible annotations.
+ * @author lord_rex
+ */
+public final class MethodInfo
+{
+	private final String name;
+	private final String descriptor;
+	private final int accessFlags;
+	private final Set<String> annotationNames;
+	
+	MethodInfo(String name, String descriptor, int accessFlags, Set<String> annotationNames)
+	{
+		this.name = name;
+		this.descriptor = descriptor;
+		this.accessFlags = accessFlags;
+		this.annotationNames = Collections.unmodifiableSet(annotationNames);
+	}
+	
+	/**
+	 * Gets the name of the method, {@code <init>} for constructors.
+	 * @return the method name
+	 */
+	public String getName()
+	{
+		return name;
+	}
+	
+	/**
+	 * Gets the method descriptor, such as {@code (Ljava/lang/String;I)V}.
+	 * @return the descriptor
+	 */
+	public String getDescriptor()
+	{
+		return descriptor;
+	}
+	
+	/**
+	 * Gets the raw access flags of the method.
+	 * @return the access flags
+	 */
+	public int getAccessFlags()
+	{
+		return accessFlags;
+	}
+	
+	/**
+	 * Gets the binary names of the annotations stored in the {@code RuntimeVisibleAnnotations} attribute of the method.
+	 * @return an unmodifiable set of annotation names
+	 */
+	public Set<String> getAnnotationNames()
+	{
+		return annotationNames;
+	}
+	
+	/**
+	 * Checks whether the method is annotated with the specified runtime visible annotation.
+	 * @param annotationName the binary name of the annotation
+	 * @return {@code true} if the annotation is declared on the method
+	 */
+	public boolean isAnnotationPresent(String annotationName)
+	{
+		return annotationNames.contains(annotationName);
+	}
+	
+	@Override
+	public String toString()
+	{
+		return name + descriptor;
+	}
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.instrument;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ServiceLoader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The instrumentation surface of the library. The registered {@link ReflectionListener}s receive the timings and counters of the classpath scans, the class loading and the manifest reads.<br>
+ * There is no listener by default, then the library does not even read the clock. Listeners are registered through {@link #addListener(ReflectionListener)}, or as a
+ * {@link ServiceLoader} service of {@link ReflectionListener}.<br>
+ * Setting the {@value #JFR_PROPERTY} system property to {@code true} registers the {@link JfrReflectionListener}, which emits JDK Flight Recorder events when the JVM supports them.
+ * @author lord_rex
+ */
+public final class Instrumentation
+{
+	/** The system property enabling the JDK Flight Recorder events. */
+	public static final String JFR_PROPERTY = "com.github.lordrex34.reflection.jfr";
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(Instrumentation.class);
+	private static final ReflectionListener[] NO_LISTENERS = new ReflectionListener[0];
+	
+	private static volatile ReflectionListener[] listeners = NO_LISTENERS;
+	
+	static
+	{
+		for (ReflectionListener listener : ServiceLoader.load(ReflectionListener.class, Instrumentation.class.getClassLoader()))
+		{
+			addListener(listener);
+		}
+		
+		if (Boolean.getBoolean(JFR_PROPERTY))
+		{
+			if (JfrReflectionListener.isSupported())
+			{
+				addListener(new JfrReflectionListener());
+			}
+			else
+			{
+				LOGGER.warn("JDK Flight Recorder is not available, the {} property is ignored.", JFR_PROPERTY);
+			}
+		}
+	}
+	
+	private Instrumentation()
+	{
+		// utility class
+	}
+	
+	/**
+	 * Registers a listener.
+	 * @param listener the listener
+	 */
+	public static synchronized void addListener(ReflectionListener listener)
+	{
+		final ReflectionListener[] newListeners = Arrays.copyOf(listeners, listeners.length + 1);
+		newListeners[listeners.length] = listener;
+		listeners = newListeners;
+	}
+	
+	/**
+	 * Removes a listener.
+	 * @param listener the listener
+	 */
+	public static synchronized void removeListener(ReflectionListener listener)
+	{
+		final List<ReflectionListener> newListeners = new ArrayList<>(Arrays.asList(listeners));
+		newListeners.remove(listener);
+		listeners = newListeners.toArray(NO_LISTENERS);
+	}
+	
+	/**
+	 * Checks whether any listener is registered. The library reads the clock only when this is {@code true}.
+	 * @return {@code true} if the instrumentation is on
+	 */
+	public static boolean isEnabled()
+	{
+		return listeners.length > 0;
+	}
+	
+	/**
+	 * Gets the current time for the timings, or {@code 0} when the instrumentation is off. The timed callbacks are skipped for a start of {@code 0}, so a listener registered meanwhile never
+	 * receives a bogus timing.
+	 * @return the value of {@link System#nanoTime()}
+	 */
+	public static long start()
+	{
+		return isEnabled() ? System.nanoTime() : 0;
+	}
+	
+	/**
+	 * See {@link ReflectionListener#rootScanned(File, int, long)}.
+	 * @param root the canonical directory or JAR file
+	 * @param classCount the number of class files found
+	 * @param start the value of {@link #start()}
+	 */
+	public static void rootScanned(File root, int classCount, long start)
+	{
+		if (start == 0)
+		{
+			return;
+		}
+		
+		final long nanos = System.nanoTime() - start;
+		for (ReflectionListener listener : listeners)
+		{
+			try
+			{
+				listener.rootScanned(root, classCount, nanos);
+			}
+			catch (RuntimeException e)
+			{
+				LOGGER.warn("Reflection listener {} failed.", listener, e);
+			}
+		}
+	}
+	
+	/**
+	 * See {@link ReflectionListener#classPathScanned(ClassLoader, int, int, long)}.
+	 * @param classLoader the class loader
+	 * @param rootCount the number of scanned roots
+	 * @param classCount the number of distinct classes
+	 * @param start the value of {@link #start()}
+	 */
+	public static void classPathScanned(ClassLoader classLoader, int rootCount, int classCount, long start)
+	{
+		if (start == 0)
+		{
+			return;
+		}
+		
+		final long nanos = System.nanoTime() - start;
+		for (ReflectionListener listener : listeners)
+		{
+			try
+			{
+				listener.classPathScanned(classLoader, rootCount, classCount, nanos);
+			}
+			catch (RuntimeException e)
+			{
+				LOGGER.warn("Reflection listener {} failed.", listener, e);
+			}
+		}
+	}
+	
+	/**
+	 * See {@link ReflectionListener#classFilesIndexed(int, long)}.
+	 * @param classCount the number of class files read
+	 * @param start the value of {@link #start()}
+	 */
+	public static void classFilesIndexed(int classCount, long start)
+	{
+		if (start == 0)
+		{
+			return;
+		}
+		
+		final long nanos = System.nanoTime() - start;
+		for (ReflectionListener listener : listeners)
+		{
+			try
+			{
+				listener.classFilesIndexed(classCount, nanos);
+			}
+			catch (RuntimeException e)
+			{
+				LOGGER.warn("Reflection listener {} failed.", listener, e);
+			}
+		}
+	}
+	
+	/**
+	 * See {@link ReflectionListener#classLoaded(String, long)}.
+	 * @param className the binary name of the class
+	 * @param start the value of {@link #start()}
+	 */
+	public static void classLoaded(String className, long start)
+	{
+		if (start == 0)
+		{
+			return;
+		}
+		
+		final long nanos = System.nanoTime() - start;
+		for (ReflectionListener listener : listeners)
+		{
+			try
+			{
+				listener.classLoaded(className, nanos);
+			}
+			catch (RuntimeException e)
+			{
+				LOGGER.warn("Reflection listener {} failed.", listener, e);
+			}
+		}
+	}
+	
+	/**
+	 * See {@link ReflectionListener#classLoadFailed(String, Throwable)}.
+	 * @param className the binary name of the class
+	 * @param error the error
+	 */
+	public static void classLoadFailed(String className, Throwable error)
+	{
+		for (ReflectionListener listener : listeners)
+		{
+			try
+			{
+				listener.classLoadFailed(className, error);
+			}
+			catch (RuntimeException e)
+			{
+				LOGGER.warn("Reflection listener {} failed.", listener, e);
+			}
+		}
+	}
+	
+	/**
+	 * See {@link ReflectionListener#versionInfoRead(File, int, long)}.
+	 * @param file the JAR file
+	 * @param attributeCount the number of main manifest attributes
+	 * @param start the value of {@link #start()}
+	 */
+	public static void versionInfoRead(File file, int attributeCount, long start)
+	{
+		if (start == 0)
+		{
+			return;
+		}
+		
+		final long nanos = System.nanoTime() - start;
+		for (ReflectionListener listener : listeners)
+		{
+			try
+			{
+				listener.versionInfoRead(file, attributeCount, nanos);
+			}
+			catch (RuntimeException e)
+			{
+				LOGGER.warn("Reflection listener {} failed.", listener, e);
+			}
+		}
+	}
+}
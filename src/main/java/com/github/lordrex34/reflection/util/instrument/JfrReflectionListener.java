@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.instrument;
+
+import java.io.File;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Turns the instrumentation callbacks into JDK Flight Recorder events, one event type per discovery phase.<br>
+ * Requires a JVM with JFR, that is Java 11 or newer, or Java 8 update 262 or newer. The events cost next to nothing while no recording is running.<br>
+ * The event types are built at run time through the {@code jdk.jfr.EventFactory}, reached through reflection, so the library itself keeps compiling against Java 8.
+ * @author lord_rex
+ */
+public final class JfrReflectionListener implements ReflectionListener
+{
+	private static final String CATEGORY = "Reflection Utils";
+	private static final String NAME_PREFIX = "com.github.lordrex34.reflection.";
+	
+	private final EventType rootScan;
+	private final EventType classPathScan;
+	private final EventType classFileIndex;
+	private final EventType classLoad;
+	private final EventType classLoadFailure;
+	private final EventType versionInfo;
+	
+	/**
+	 * Registers the event types with the JDK Flight Recorder.
+	 * @throws IllegalStateException if the running JVM does not support the JDK Flight Recorder, see {@link #isSupported()}
+	 */
+	public JfrReflectionListener()
+	{
+		try
+		{
+			final Jfr jfr = new Jfr();
+			//@formatter:off
+			rootScan = jfr.eventType("RootScan", "Classpath Root Scan", null, false,
+				jfr.field(String.class, "root", "Root", false),
+				jfr.field(int.class, "classCount", "Classes", false),
+				jfr.field(long.class, "scanTime", "Scan Time", true));
+			classPathScan = jfr.eventType("ClassPathScan", "Classpath Scan", null, true,
+				jfr.field(String.class, "classLoader", "Class Loader", false),
+				jfr.field(int.class, "rootCount", "Roots", false),
+				jfr.field(int.class, "classCount", "Classes", false),
+				jfr.field(long.class, "scanTime", "Scan Time", true));
+			classFileIndex = jfr.eventType("ClassFileIndex", "Class File Indexing", "Reading the class files of a scan for the type hierarchy and the method annotations.", true,
+				jfr.field(int.class, "classCount", "Classes", false),
+				jfr.field(long.class, "indexTime", "Index Time", true));
+			classLoad = jfr.eventType("ClassLoad", "Discovered Class Load", null, false,
+				jfr.field(String.class, "className", "Class", false),
+				jfr.field(long.class, "loadTime", "Load Time", true));
+			classLoadFailure = jfr.eventType("ClassLoadFailure", "Discovered Class Load Failure", "A discovered class which has been skipped because it cannot be loaded.", true,
+				jfr.field(String.class, "className", "Class", false),
+				jfr.field(String.class, "error", "Error", false));
+			versionInfo = jfr.eventType("VersionInfo", "Version Info Manifest Read", null, true,
+				jfr.field(String.class, "file", "File", false),
+				jfr.field(int.class, "attributeCount", "Attributes", false),
+				jfr.field(long.class, "readTime", "Read Time", true));
+			//@formatter:on
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new IllegalStateException("JDK Flight Recorder is not supported by this JVM.", e);
+		}
+	}
+	
+	/**
+	 * Checks whether the running JVM supports the JDK Flight Recorder.
+	 * @return {@code true} if the events can be emitted
+	 */
+	public static boolean isSupported()
+	{
+		try
+		{
+			Class.forName("jdk.jfr.EventFactory", false, JfrReflectionListener.class.getClassLoader());
+			return true;
+		}
+		catch (ClassNotFoundException | LinkageError e)
+		{
+			return false;
+		}
+	}
+	
+	@Override
+	public void rootScanned(File root, int classCount, long nanos)
+	{
+		rootScan.commit(root.getPath(), classCount, nanos);
+	}
+	
+	@Override
+	public void classPathScanned(ClassLoader classLoader, int rootCount, int classCount, long nanos)
+	{
+		classPathScan.commit(String.valueOf(classLoader), rootCount, classCount, nanos);
+	}
+	
+	@Override
+	public void classFilesIndexed(int classCount, long nanos)
+	{
+		classFileIndex.commit(classCount, nanos);
+	}
+	
+	@Override
+	public void classLoaded(String className, long nanos)
+	{
+		classLoad.commit(className, nanos);
+	}
+	
+	@Override
+	public void classLoadFailed(String className, Throwable error)
+	{
+		classLoadFailure.commit(className, error.toString());
+	}
+	
+	@Override
+	public void versionInfoRead(File file, int attributeCount, long nanos)
+	{
+		versionInfo.commit(file.getPath(), attributeCount, nanos);
+	}
+	
+	/**
+	 * The reflective view of the {@code jdk.jfr} classes needed to describe an event type.
+	 */
+	private static final class Jfr
+	{
+		private final Constructor<?> annotationElement;
+		private final Constructor<?> valueDescriptor;
+		private final Method create;
+		private final Method newEvent;
+		private final Method isEnabled;
+		private final Method set;
+		private final Method commit;
+		private final Class<? extends Annotation> name;
+		private final Class<? extends Annotation> label;
+		private final Class<? extends Annotation> description;
+		private final Class<? extends Annotation> category;
+		private final Class<? extends Annotation> stackTrace;
+		private final Class<? extends Annotation> timespan;
+		
+		Jfr() throws ReflectiveOperationException
+		{
+			final Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+			final Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+			final Class<?> eventClass = Class.forName("jdk.jfr.Event");
+			annotationElement = annotationElementClass.getConstructor(Class.class, Object.class);
+			valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor").getConstructor(Class.class, String.class, List.class);
+			create = factoryClass.getMethod("create", List.class, List.class);
+			newEvent = factoryClass.getMethod("newEvent");
+			isEnabled = eventClass.getMethod("isEnabled");
+			set = eventClass.getMethod("set", int.class, Object.class);
+			commit = eventClass.getMethod("commit");
+			name = annotationType("jdk.jfr.Name");
+			label = annotationType("jdk.jfr.Label");
+			description = annotationType("jdk.jfr.Description");
+			category = annotationType("jdk.jfr.Category");
+			stackTrace = annotationType("jdk.jfr.StackTrace");
+			timespan = annotationType("jdk.jfr.Timespan");
+		}
+		
+		private static Class<? extends Annotation> annotationType(String className) throws ClassNotFoundException
+		{
+			return Class.forName(className).asSubclass(Annotation.class);
+		}
+		
+		private Object annotation(Class<? extends Annotation> type, Object value) throws ReflectiveOperationException
+		{
+			return annotationElement.newInstance(type, value);
+		}
+		
+		Object field(Class<?> type, String fieldName, String fieldLabel, boolean nanoseconds) throws ReflectiveOperationException
+		{
+			final List<Object> annotations = new ArrayList<>(2);
+			annotations.add(annotation(label, fieldLabel));
+			if (nanoseconds)
+			{
+				annotations.add(annotation(timespan, "NANOSECONDS"));
+			}
+			return valueDescriptor.newInstance(type, fieldName, annotations);
+		}
+		
+		EventType eventType(String eventName, String eventLabel, String eventDescription, boolean withStackTrace, Object... fields) throws ReflectiveOperationException
+		{
+			final List<Object> annotations = new ArrayList<>(5);
+			annotations.add(annotation(name, NAME_PREFIX + eventName));
+			annotations.add(annotation(label, eventLabel));
+			if (eventDescription != null)
+			{
+				annotations.add(annotation(description, eventDescription));
+			}
+			annotations.add(annotation(category, new String[]
+			{
+				CATEGORY
+			}));
+			annotations.add(annotation(stackTrace, withStackTrace));
+			return new EventType(this, create.invoke(null, annotations, Arrays.asList(fields)));
+		}
+	}
+	
+	/**
+	 * An event type created through a {@code jdk.jfr.EventFactory}, the factory has to stay reachable to keep the type registered.
+	 */
+	private static final class EventType
+	{
+		private final Jfr jfr;
+		private final Object factory;
+		
+		EventType(Jfr jfr, Object factory)
+		{
+			this.jfr = jfr;
+			this.factory = factory;
+		}
+		
+		void commit(Object... values)
+		{
+			try
+			{
+				final Object event = jfr.newEvent.invoke(factory);
+				if ((Boolean) jfr.isEnabled.invoke(event))
+				{
+					for (int i = 0; i < values.length; i++)
+					{
+						jfr.set.invoke(event, i, values[i]);
+					}
+					jfr.commit.invoke(event);
+				}
+			}
+			catch (InvocationTargetException e)
+			{
+				Throwables.throwIfUnchecked(e.getCause());
+				throw new IllegalStateException(e.getCause());
+			}
+			catch (IllegalAccessException e)
+			{
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.instrument;
+
+import java.io.File;
+
+/**
+ * Receives the timings and the counters of the classpath discovery, see {@link Instrumentation}.<br>
+ * Every method does nothing by default, implement only the ones you need. The methods may be called from several threads at once, such as the tasks of a parallel scan.
+ * @author lord_rex
+ */
+public interface ReflectionListener
+{
+	/**
+	 * Called when a classpath root has been scanned.
+	 * @param root the canonical directory or JAR file
+	 * @param classCount the number of class files found
+	 * @param nanos the time spent on the root
+	 */
+	default void rootScanned(File root, int classCount, long nanos)
+	{
+	}
+	
+	/**
+	 * Called when the whole classpath of a class loader has been scanned and merged.
+	 * @param classLoader the class loader
+	 * @param rootCount the number of scanned roots
+	 * @param classCount the number of distinct classes
+	 * @param nanos the time spent on the scan
+	 */
+	default void classPathScanned(ClassLoader classLoader, int rootCount, int classCount, long nanos)
+	{
+	}
+	
+	/**
+	 * Called when the class files of a scan have been read to build its type hierarchy and method annotation index.
+	 * @param classCount the number of class files read
+	 * @param nanos the time spent reading and parsing
+	 */
+	default void classFilesIndexed(int classCount, long nanos)
+	{
+	}
+	
+	/**
+	 * Called when a discovered class has been loaded.
+	 * @param className the binary name of the class
+	 * @param nanos the time spent loading the class
+	 */
+	default void classLoaded(String className, long nanos)
+	{
+	}
+	
+	/**
+	 * Called when a discovered class cannot be loaded, the queries skip such classes silently.
+	 * @param className the binary name of the class
+	 * @param error the {@link ClassNotFoundException} or the {@link LinkageError}, such as a {@link NoClassDefFoundError}
+	 */
+	default void classLoadFailed(String className, Throwable error)
+	{
+	}
+	
+	/**
+	 * Called when the manifest of a JAR file has been read for a {@code VersionInfo}.
+	 * @param file the JAR file
+	 * @param attributeCount the number of main manifest attributes, {@code 0} if there is no manifest
+	 * @param nanos the time spent reading the manifest
+	 */
+	default void versionInfoRead(File file, int attributeCount, long nanos)
+	{
+	}
+}
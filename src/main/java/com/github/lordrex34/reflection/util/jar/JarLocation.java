@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.jar;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.util.Objects;
+
+/**
+ * The location of a classpath root or a JAR file: a file, or a JAR file stored inside another JAR file, such as the {@code BOOT-INF/lib} libraries of a Spring Boot fat JAR.<br>
+ * Nested JAR files are read through {@link ZipCentralDirectory#openNested(String)}, in place when they are STORED, they are never extracted to disk.
+ * @author lord_rex
+ */
+public final class JarLocation
+{
+	private static final String JAR_FILE_PREFIX = "jar:file:";
+	private static final String SEPARATOR = "!/";
+	
+	private final File file;
+	private final String entryName;
+	
+	/**
+	 * Creates the location of a plain file.
+	 * @param file the directory or JAR file
+	 */
+	public JarLocation(File file)
+	{
+		this(file, null);
+	}
+	
+	/**
+	 * Creates the location of a nested JAR file.
+	 * @param file the outer JAR file
+	 * @param entryName the entry name of the nested JAR file, {@code null} for the outer file itself
+	 */
+	public JarLocation(File file, String entryName)
+	{
+		this.file = Objects.requireNonNull(file);
+		this.entryName = entryName;
+	}
+	
+	/**
+	 * Finds the JAR file the class has been loaded from, nested or not. See {@link Locator#getClassSource(Class)}.
+	 * @param c the class whose location is required
+	 * @return the location, or {@code null} if it cannot be determined
+	 */
+	public static JarLocation of(Class<?> c)
+	{
+		URL codeSourceLocation = null;
+		try
+		{
+			final CodeSource codeSource = c.getProtectionDomain().getCodeSource();
+			codeSourceLocation = codeSource != null ? codeSource.getLocation() : null;
+		}
+		catch (SecurityException e)
+		{
+			// ignore, the resource is checked below
+		}
+		
+		JarLocation location = fromURL(codeSourceLocation);
+		if ((location == null) && ((codeSourceLocation == null) || !"file".equals(codeSourceLocation.getProtocol())))
+		{
+			final ClassLoader classLoader = c.getClassLoader() != null ? c.getClassLoader() : Locator.class.getClassLoader();
+			final String classResource = c.getName().replace('.', '/') + ".class";
+			location = fromURL(classLoader != null ? classLoader.getResource(classResource) : ClassLoader.getSystemResource(classResource));
+		}
+		
+		if (location == null)
+		{
+			final File file = Locator.getClassSource(c);
+			location = file != null ? new JarLocation(file) : null;
+		}
+		return location;
+	}
+	
+	/**
+	 * Parses the location of a nested JAR file from a URL such as {@code jar:file:/app.jar!/BOOT-INF/lib/library.jar!/com/example/Foo.class}.
+	 * @param url the URL of the nested JAR file or of an entry inside it
+	 * @return the location, or {@code null} if the URL does not point into a nested JAR file
+	 */
+	public static JarLocation fromURL(URL url)
+	{
+		if (url == null)
+		{
+			return null;
+		}
+		
+		final String spec = url.toString();
+		if (!spec.startsWith(JAR_FILE_PREFIX))
+		{
+			return null;
+		}
+		
+		final int separator = spec.indexOf(SEPARATOR);
+		final int nestedSeparator = separator < 0 ? -1 : spec.indexOf(SEPARATOR, separator + SEPARATOR.length());
+		if (nestedSeparator < 0)
+		{
+			return null; // a plain JAR file
+		}
+		
+		final String entryName = spec.substring(separator + SEPARATOR.length(), nestedSeparator);
+		if (!entryName.endsWith(".jar"))
+		{
+			return null; // a directory inside the JAR file, such as BOOT-INF/classes
+		}
+		return new JarLocation(new File(Locator.fromURI(spec.substring("jar:".length(), separator))), entryName);
+	}
+	
+	/**
+	 * Gets the file, the outer JAR file of a nested JAR file.
+	 * @return the file
+	 */
+	public File getFile()
+	{
+		return file;
+	}
+	
+	/**
+	 * Gets the entry name of the nested JAR file inside the file.
+	 * @return the entry name, or {@code null} if this is a plain file
+	 */
+	public String getEntryName()
+	{
+		return entryName;
+	}
+	
+	/**
+	 * Checks whether this is a JAR file nested inside another one.
+	 * @return {@code true} if the location has an entry name
+	 */
+	public boolean isNested()
+	{
+		return entryName != null;
+	}
+	
+	/**
+	 * Gets the file name of the JAR file, nested or not.
+	 * @return the file name
+	 */
+	public String getName()
+	{
+		return entryName == null ? file.getName() : entryName.substring(entryName.lastIndexOf('/') + 1);
+	}
+	
+	/**
+	 * Maps the central directory of the JAR file, nested or not.
+	 * @return the central directory
+	 * @throws IOException if the archive cannot be read, or the nested entry does not exist
+	 */
+	public ZipCentralDirectory open() throws IOException
+	{
+		final ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(file);
+		if (entryName == null)
+		{
+			return centralDirectory;
+		}
+		
+		final ZipCentralDirectory nestedCentralDirectory = centralDirectory.openNested(entryName);
+		if (nestedCentralDirectory == null)
+		{
+			throw new IOException("Nested JAR file not found: " + this);
+		}
+		return nestedCentralDirectory;
+	}
+	
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+		{
+			return true;
+		}
+		if (!(obj instanceof JarLocation))
+		{
+			return false;
+		}
+		
+		final JarLocation other = (JarLocation) obj;
+		return file.equals(other.file) && Objects.equals(entryName, other.entryName);
+	}
+	
+	@Override
+	public int hashCode()
+	{
+		return (31 * file.hashCode()) + Objects.hashCode(entryName);
+	}
+	
+	@Override
+	public String toString()
+	{
+		return entryName == null ? file.getPath() : file.getPath() + SEPARATOR + entryName;
+	}
+}
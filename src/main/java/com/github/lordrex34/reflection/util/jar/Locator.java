@@ -22,11 +22,30 @@
 package com.github.lordrex34.reflection.util.jar;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.text.CharacterIterator;
-import java.text.StringCharacterIterator;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.CodeSource;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The Locator is a utility class which is used to find certain items in the environment.
@@ -34,6 +53,9 @@ import java.util.Locale;
  */
 public final class Locator
 {
+	/** The resolved sources, per code source location, keyed by the string form since {@link URL#equals(Object)} resolves host names. */
+	private static final ConcurrentMap<String, File> CODE_SOURCES = new ConcurrentHashMap<>();
+	
 	/**
 	 * Not instantiable
 	 */
@@ -42,17 +64,59 @@ public final class Locator
 	}
 	
 	/**
-	 * Find the directory or jar file the class has been loaded from.
+	 * Find the directory or jar file the class has been loaded from.<br>
+	 * The {@link CodeSource} of the class is used when it points to a local file, the file is resolved once per code source location. Otherwise the class file is looked up as a resource.
 	 * @param c the class whose location is required.
 	 * @return the file or jar with the class or null if we cannot determine the location.
 	 * @since Ant 1.6
 	 */
 	public static File getClassSource(Class<?> c)
 	{
+		final File codeSource = getCodeSource(c);
+		if (codeSource != null)
+		{
+			return codeSource;
+		}
+		
 		final String classResource = c.getName().replace('.', '/') + ".class";
 		return getResourceSource(c.getClassLoader(), classResource);
 	}
 	
+	private static File getCodeSource(Class<?> c)
+	{
+		final CodeSource codeSource;
+		try
+		{
+			codeSource = c.getProtectionDomain().getCodeSource();
+		}
+		catch (SecurityException e)
+		{
+			return null;
+		}
+		
+		final URL location = codeSource != null ? codeSource.getLocation() : null;
+		if ((location == null) || !"file".equals(location.getProtocol()))
+		{
+			return null; // bootstrap classes, nested JARs, etc...
+		}
+		
+		final String uri = location.toString();
+		final File file = CODE_SOURCES.get(uri);
+		if (file != null)
+		{
+			return file;
+		}
+		return CODE_SOURCES.computeIfAbsent(uri, key -> new File(fromURI(key)));
+	}
+	
+	/**
+	 * Forgets the resolved code sources, the next lookup of each location decodes it again.
+	 */
+	static void clearCache()
+	{
+		CODE_SOURCES.clear();
+	}
+	
 	/**
 	 * Find the directory or jar a given resource has been loaded from.
 	 * @param c the classloader to be consulted for the source.
@@ -100,7 +164,7 @@ public final class Locator
 	 * Will be an absolute path if the given URI is absolute.
 	 * </p>
 	 * <p>
-	 * Swallows '%' that are not followed by two characters, doesn't deal with non-ASCII characters.
+	 * Percent escapes are decoded as UTF-8, a '%' which is not followed by two hexadecimal digits is kept as is.
 	 * </p>
 	 * @param uri the URI designating a file in the local filesystem.
 	 * @return the local file system path for the file.
@@ -121,10 +185,10 @@ public final class Locator
 		{
 			throw new IllegalArgumentException("Can only handle valid file: URIs");
 		}
-		final StringBuffer buf = new StringBuffer(url.getHost());
-		if (buf.length() > 0)
+		final StringBuilder buf = new StringBuilder();
+		if (!url.getHost().isEmpty())
 		{
-			buf.insert(0, File.separatorChar).insert(0, File.separatorChar);
+			buf.append(File.separatorChar).append(File.separatorChar).append(url.getHost());
 		}
 		final String file = url.getFile();
 		final int queryPos = file.indexOf('?');
@@ -141,41 +205,56 @@ public final class Locator
 	}
 	
 	/**
-	 * Decodes an Uri with % characters.
+	 * Decodes an Uri with % characters in a single pass, each run of escapes being decoded as UTF-8 bytes.
 	 * @param uri String with the uri possibly containing % characters.
 	 * @return The decoded Uri
 	 */
 	private static String decodeUri(String uri)
 	{
-		if (uri.indexOf('%') == -1)
+		final int firstEscape = uri.indexOf('%');
+		if (firstEscape == -1)
 		{
 			return uri;
 		}
-		final StringBuffer sb = new StringBuffer();
-		final CharacterIterator iter = new StringCharacterIterator(uri);
-		for (char c = iter.first(); c != CharacterIterator.DONE; c = iter.next())
+		
+		final int length = uri.length();
+		final StringBuilder sb = new StringBuilder(length).append(uri, 0, firstEscape);
+		final byte[] bytes = new byte[(length - firstEscape) / 3];
+		int i = firstEscape;
+		while (i < length)
 		{
-			if (c == '%')
+			final char c = uri.charAt(i);
+			if (c != '%')
 			{
-				final char c1 = iter.next();
-				if (c1 != CharacterIterator.DONE)
+				sb.append(c);
+				i++;
+				continue;
+			}
+			
+			int count = 0;
+			while (((i + 2) < length) && (uri.charAt(i) == '%'))
+			{
+				final int high = Character.digit(uri.charAt(i + 1), 16);
+				final int low = Character.digit(uri.charAt(i + 2), 16);
+				if ((high < 0) || (low < 0))
 				{
-					final int i1 = Character.digit(c1, 16);
-					final char c2 = iter.next();
-					if (c2 != CharacterIterator.DONE)
-					{
-						final int i2 = Character.digit(c2, 16);
-						sb.append((char) ((i1 << 4) + i2));
-					}
+					break;
 				}
+				bytes[count++] = (byte) ((high << 4) + low);
+				i += 3;
+			}
+			
+			if (count == 0)
+			{
+				sb.append(c); // malformed escape
+				i++;
 			}
 			else
 			{
-				sb.append(c);
+				sb.append(new String(bytes, 0, count, StandardCharsets.UTF_8));
 			}
 		}
-		final String path = sb.toString();
-		return path;
+		return sb.toString();
 	}
 	
 	/**
@@ -254,32 +333,23 @@ public final class Locator
 			return urls;
 		}
 		
+		final String[] lowerCaseExtensions = new String[extensions.length];
+		for (int i = 0; i < extensions.length; i++)
+		{
+			lowerCaseExtensions[i] = extensions[i].toLowerCase(Locale.ROOT);
+		}
+		
 		if (!location.isDirectory())
 		{
 			urls = new URL[1];
-			final String path = location.getPath();
-			for (String extension : extensions)
+			if (hasExtension(location.getName(), lowerCaseExtensions))
 			{
-				if (path.toLowerCase().endsWith(extension))
-				{
-					urls[0] = location.toURI().toURL();
-					break;
-				}
+				urls[0] = location.toURI().toURL();
 			}
 			return urls;
 		}
 		
-		final File[] matches = location.listFiles((dir, name) ->
-		{
-			for (String extension : extensions)
-			{
-				if (name.toLowerCase().endsWith(extension))
-				{
-					return true;
-				}
-			}
-			return false;
-		});
+		final File[] matches = location.listFiles((dir, name) -> hasExtension(name, lowerCaseExtensions));
 		
 		if (matches != null)
 		{
@@ -292,4 +362,213 @@ public final class Locator
 		
 		return urls;
 	}
+	
+	private static boolean hasExtension(String name, String[] lowerCaseExtensions)
+	{
+		final String lowerCaseName = name.toLowerCase(Locale.ROOT);
+		for (String extension : lowerCaseExtensions)
+		{
+			if (lowerCaseName.endsWith(extension))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Walks the location recursively and streams the matching files lazily, see {@link #walkLocation(Path, int, String, boolean)}.
+	 * @param location the file or directory to walk
+	 * @param maxDepth the maximum number of directory levels to visit, {@code 1} lists the directory only
+	 * @param glob the glob pattern of the files, such as {@code *.jar}
+	 * @return a lazy stream of matching files, to be closed
+	 * @throws IOException if the location cannot be opened
+	 */
+	public static Stream<Path> walkLocation(Path location, int maxDepth, String glob) throws IOException
+	{
+		return walkLocation(location, maxDepth, glob, false);
+	}
+	
+	/**
+	 * Walks the location recursively and streams the matching regular files lazily, so that the caller can consume them before the walk is over.<br>
+	 * The directories are read one entry at a time as the stream advances, only the directories on the way to the current entry are held open. Unreadable directories are skipped.<br>
+	 * A glob without a {@code /} is matched against the file names, such as {@code *.{jar,zip}}, any other glob is matched against the paths relative to the location, such as
+	 * {@code plugins/**.jar}. Symbolic links to files are listed, symbolic links to directories are not followed.<br>
+	 * The stream holds the open directories, it must be closed, for instance with a try-with-resources statement.
+	 * @param location the file or directory to walk
+	 * @param maxDepth the maximum number of directory levels to visit, {@code 1} lists the directory only, {@link Integer#MAX_VALUE} walks the whole tree
+	 * @param glob the glob pattern of the files
+	 * @param parallel whether the stream is parallel, the matched files are then processed by the common {@link java.util.concurrent.ForkJoinPool}
+	 * @return a lazy stream of matching files, empty if the location does not exist
+	 * @throws IOException if the location cannot be opened
+	 */
+	public static Stream<Path> walkLocation(Path location, int maxDepth, String glob, boolean parallel) throws IOException
+	{
+		if (!Files.exists(location))
+		{
+			return Stream.empty();
+		}
+		
+		final PathMatcher matcher = location.getFileSystem().getPathMatcher("glob:" + glob);
+		final boolean matchFileName = glob.indexOf('/') == -1;
+		if (!Files.isDirectory(location))
+		{
+			return Files.isRegularFile(location) && matches(location, location, matcher, matchFileName) ? Stream.of(location) : Stream.empty();
+		}
+		
+		if (maxDepth < 1)
+		{
+			return Stream.empty();
+		}
+		
+		final TreeIterator iterator = new TreeIterator(location, maxDepth, matcher, matchFileName);
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.NONNULL | Spliterator.DISTINCT), parallel).onClose(iterator::close);
+	}
+	
+	private static boolean matches(Path location, Path path, PathMatcher matcher, boolean matchFileName)
+	{
+		final Path matchedPath = matchFileName ? path.getFileName() : location.relativize(path);
+		return (matchedPath != null) && matcher.matches(matchedPath);
+	}
+	
+	/**
+	 * Walks a directory tree depth first, reading a single entry of the current directory per step. The directories are closed once their entries are exhausted, or by {@link #close()}.
+	 */
+	private static final class TreeIterator implements Iterator<Path>
+	{
+		private final Path location;
+		private final int maxDepth;
+		private final PathMatcher matcher;
+		private final boolean matchFileName;
+		private final Deque<DirectoryStream<Path>> directories = new ArrayDeque<>();
+		private final Deque<Iterator<Path>> entries = new ArrayDeque<>();
+		private Path next;
+		
+		TreeIterator(Path location, int maxDepth, PathMatcher matcher, boolean matchFileName) throws IOException
+		{
+			this.location = location;
+			this.maxDepth = maxDepth;
+			this.matcher = matcher;
+			this.matchFileName = matchFileName;
+			open(location);
+		}
+		
+		private void open(Path directory) throws IOException
+		{
+			final DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory);
+			directories.push(directoryStream);
+			entries.push(directoryStream.iterator());
+		}
+		
+		@Override
+		public boolean hasNext()
+		{
+			while ((next == null) && !entries.isEmpty())
+			{
+				final Path entry;
+				try
+				{
+					if (!entries.peek().hasNext())
+					{
+						closeDirectory();
+						continue;
+					}
+					entry = entries.peek().next();
+				}
+				catch (DirectoryIteratorException e)
+				{
+					closeDirectory(); // the directory could not be listed completely
+					continue;
+				}
+				
+				final BasicFileAttributes attributes;
+				try
+				{
+					attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+				}
+				catch (IOException e)
+				{
+					continue; // vanished file
+				}
+				
+				if (attributes.isDirectory())
+				{
+					if (directories.size() < maxDepth)
+					{
+						try
+						{
+							open(entry);
+						}
+						catch (IOException e)
+						{
+							// unreadable directory, skipped
+						}
+					}
+				}
+				else if ((attributes.isRegularFile() || (attributes.isSymbolicLink() && Files.isRegularFile(entry))) && matches(location, entry, matcher, matchFileName))
+				{
+					next = entry;
+				}
+			}
+			return next != null;
+		}
+		
+		@Override
+		public Path next()
+		{
+			if (!hasNext())
+			{
+				throw new NoSuchElementException();
+			}
+			
+			final Path path = next;
+			next = null;
+			return path;
+		}
+		
+		private void closeDirectory()
+		{
+			entries.pop();
+			try
+			{
+				directories.pop().close();
+			}
+			catch (IOException e)
+			{
+				// the entries have been read, nothing is lost
+			}
+		}
+		
+		void close()
+		{
+			while (!entries.isEmpty())
+			{
+				closeDirectory();
+			}
+		}
+	}
+	
+	/**
+	 * Walks the location recursively and streams the URLs of the matching files lazily, see {@link #walkLocation(Path, int, String, boolean)}.
+	 * @param location the file or directory to walk
+	 * @param maxDepth the maximum number of directory levels to visit
+	 * @param glob the glob pattern of the files
+	 * @param parallel whether the stream is parallel
+	 * @return a lazy stream of URLs, to be closed
+	 * @throws IOException if the location cannot be opened
+	 */
+	public static Stream<URL> walkLocationURLs(Path location, int maxDepth, String glob, boolean parallel) throws IOException
+	{
+		return walkLocation(location, maxDepth, glob, parallel).map(path ->
+		{
+			try
+			{
+				return path.toUri().toURL();
+			}
+			catch (MalformedURLException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
 }
@@ -24,17 +24,28 @@ package com.github.lordrex34.reflection.util.jar;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 import java.util.jar.Attributes;
-import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 
+import com.github.lordrex34.reflection.util.instrument.Instrumentation;
 import com.google.common.base.Strings;
+import com.google.common.util.concurrent.MoreExecutors;
 
 /**
- * A simple class to gather the manifest version information of JAR files.
+ * A simple class to gather the manifest version information of JAR files.<br>
+ * Only the manifest entry is read from the central directory of the JAR file. The attributes are shared between the instances of the same JAR file, they are read again only when the size or
+ * the modification time of the file changes. The libraries nested inside a fat JAR are read in place, see {@link JarLocation}.
  * @author lord_rex
  */
 public class VersionInfo
@@ -42,6 +53,9 @@ public class VersionInfo
 	/** A default string for the cases when version info cannot be retrieved. (IDE Mode) */
 	public static final String IDE_MODE = "Version Info - IDE Mode.";
 	
+	/** The manifest attributes of the JAR files read so far, per absolute location. */
+	private static final ConcurrentMap<JarLocation, CachedManifest> MANIFESTS = new ConcurrentHashMap<>();
+	
 	private String filename = null;
 	private final Map<String, String> manifestAttributes;
 	
@@ -51,7 +65,7 @@ public class VersionInfo
 	 */
 	public VersionInfo(Class<?> clazz)
 	{
-		this(Locator.getClassSource(clazz));
+		this(JarLocation.of(clazz));
 	}
 	
 	/**
@@ -60,25 +74,66 @@ public class VersionInfo
 	 */
 	public VersionInfo(File file)
 	{
-		this.manifestAttributes = new HashMap<>();
-
-		if (!file.isFile())
+		this(file != null ? new JarLocation(file) : null);
+	}
+	
+	/**
+	 * Gather version information from a JAR file, which may be nested inside another JAR file.
+	 * @param location the JAR file that is used for version extraction
+	 */
+	public VersionInfo(JarLocation location)
+	{
+		if ((location == null) || !location.getFile().isFile())
 		{
+			this.manifestAttributes = Collections.emptyMap();
 			return;
 		}
 		
-		final String filename = file.getName();
-		this.filename = filename.substring(0, filename.lastIndexOf("."));
+		final String filename = location.getName();
+		final int extension = filename.lastIndexOf('.');
+		this.filename = extension > 0 ? filename.substring(0, extension) : filename;
+		this.manifestAttributes = readManifestAttributes(new JarLocation(location.getFile().getAbsoluteFile(), location.getEntryName()));
+	}
+	
+	private static Map<String, String> readManifestAttributes(JarLocation location)
+	{
+		final File file = location.getFile();
+		final long length = file.length();
+		final long lastModified = file.lastModified();
+		final CachedManifest cachedManifest = MANIFESTS.get(location);
+		if ((cachedManifest != null) && (cachedManifest.length == length) && (cachedManifest.lastModified == lastModified))
+		{
+			return cachedManifest.attributes;
+		}
 		
-		try (JarFile jarFile = new JarFile(file))
+		final long start = Instrumentation.start();
+		final Map<String, String> manifestAttributes = new HashMap<>();
+		try
 		{
-			final Attributes attributes = jarFile.getManifest().getMainAttributes();
-			attributes.forEach((key, value) -> manifestAttributes.put(String.valueOf(key), String.valueOf(value)));
+			final Manifest manifest = location.open().getManifest();
+			if (manifest != null)
+			{
+				final Attributes attributes = manifest.getMainAttributes();
+				attributes.forEach((key, value) -> manifestAttributes.put(String.valueOf(key), String.valueOf(value)));
+			}
 		}
 		catch (IOException e)
 		{
 			// ignore, IDE mode, etc...
 		}
+		Instrumentation.versionInfoRead(file, manifestAttributes.size(), start);
+		
+		final Map<String, String> attributes = Collections.unmodifiableMap(manifestAttributes);
+		MANIFESTS.put(location, new CachedManifest(length, lastModified, attributes));
+		return attributes;
+	}
+	
+	/**
+	 * Forgets the manifests read so far, the next version info of each JAR file reads its manifest again.
+	 */
+	static void clearCache()
+	{
+		MANIFESTS.clear();
 	}
 	
 	/**
@@ -87,7 +142,7 @@ public class VersionInfo
 	 */
 	public Map<String, String> getManifestAttributes()
 	{
-		return Collections.unmodifiableMap(manifestAttributes);
+		return manifestAttributes;
 	}
 	
 	/**
@@ -169,19 +224,75 @@ public class VersionInfo
 	}
 	
 	/**
-	 * Gather version info of multiply classes. You can use it to gather information of any 3rd party application JAR.
+	 * Gather version info of multiply classes. You can use it to gather information of any 3rd party application JAR.<br>
+	 * The classes of the same JAR file share a single read, see {@link #of(Collection, Executor)}.
 	 * @param classes the classes to be checked
 	 * @return string array of version info
 	 */
 	public static List<String> of(Class<?>... classes)
 	{
-		final List<String> versions = new ArrayList<>();
+		final List<JarLocation> locations = new ArrayList<>(classes.length);
 		for (Class<?> clazz : classes)
 		{
-			final VersionInfo versionInfo = new VersionInfo(clazz);
-			versions.add(versionInfo.getFormattedClassInfo());
+			locations.add(JarLocation.of(clazz));
+		}
+		
+		final Map<JarLocation, VersionInfo> versionInfos = read(locations, VersionInfo::new, MoreExecutors.directExecutor());
+		final List<String> versions = new ArrayList<>();
+		for (JarLocation location : locations)
+		{
+			versions.add(versionInfos.get(location).getFormattedClassInfo());
 		}
 		
 		return versions;
 	}
+	
+	/**
+	 * Gather version info of multiple JAR files, each distinct file being read once as a separate task of the executor.
+	 * @param files the JAR files, a {@code null} file stands for a class without source
+	 * @param executor the executor of the reads, such as a {@link java.util.concurrent.ForkJoinPool}
+	 * @return the version info of each distinct file, in the order of the files
+	 */
+	public static Map<File, VersionInfo> of(Collection<File> files, Executor executor)
+	{
+		return read(files, VersionInfo::new, executor);
+	}
+	
+	/**
+	 * Gather version info of multiple JAR files, nested or not, each distinct location being read once as a separate task of the executor.
+	 * @param locations the JAR files, a {@code null} location stands for a class without source
+	 * @param executor the executor of the reads, such as a {@link java.util.concurrent.ForkJoinPool}
+	 * @return the version info of each distinct location, in the order of the locations
+	 */
+	public static Map<JarLocation, VersionInfo> ofLocations(Collection<JarLocation> locations, Executor executor)
+	{
+		return read(locations, VersionInfo::new, executor);
+	}
+	
+	private static <T> Map<T, VersionInfo> read(Collection<T> sources, Function<T, VersionInfo> reader, Executor executor)
+	{
+		final Map<T, CompletableFuture<VersionInfo>> futures = new LinkedHashMap<>();
+		for (T source : sources)
+		{
+			futures.computeIfAbsent(source, k -> CompletableFuture.supplyAsync(() -> reader.apply(k), executor));
+		}
+		
+		final Map<T, VersionInfo> versionInfos = new LinkedHashMap<>();
+		futures.forEach((source, future) -> versionInfos.put(source, future.join()));
+		return versionInfos;
+	}
+	
+	private static final class CachedManifest
+	{
+		final long length;
+		final long lastModified;
+		final Map<String, String> attributes;
+		
+		CachedManifest(long length, long lastModified, Map<String, String> attributes)
+		{
+			this.length = length;
+			this.lastModified = lastModified;
+			this.attributes = attributes;
+		}
+	}
 }
@@ -0,0 +1,684 @@
+/*
+ * Copyright (c) 2017 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.jar;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A read-only view of the central directory of a ZIP/JAR file, memory-mapped straight from the file.<br>
+ * Unlike {@link java.util.jar.JarFile} it creates no {@link java.util.zip.ZipEntry} objects and keeps no native ZIP handle open: entry names are decoded only when they match, and entry data is read on demand.
+ * @author lord_rex
+ */
+public final class ZipCentralDirectory
+{
+	private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+	private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+	private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+	private static final int ZIP64_LOCATOR_SIZE = 20;
+	private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+	private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE = 56;
+	private static final int ZIP64_EXTRA_FIELD_ID = 0x0001;
+	private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private static final int CENTRAL_HEADER_SIZE = 46;
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int LOCAL_HEADER_SIZE = 30;
+	private static final int MAX_COMMENT_SIZE = 0xFFFF;
+	private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+	
+	private static final int METHOD_STORED = 0;
+	private static final int METHOD_DEFLATED = 8;
+	
+	private final File file;
+	private final ByteBuffer inflatedArchive;
+	/** The position the recorded local header offsets are relative to: the archive offset, plus the length of the bytes prepended to the archive, such as a launch script. */
+	private final long baseOffset;
+	private final ByteBuffer centralDirectory;
+	private final int entryCount;
+	
+	private ZipCentralDirectory(File file, ByteBuffer inflatedArchive, long baseOffset, ByteBuffer centralDirectory, int entryCount)
+	{
+		this.file = file;
+		this.inflatedArchive = inflatedArchive;
+		this.baseOffset = baseOffset;
+		this.centralDirectory = centralDirectory;
+		this.entryCount = entryCount;
+	}
+	
+	/**
+	 * Maps the central directory of the ZIP file.
+	 * @param file the ZIP file
+	 * @return the central directory
+	 * @throws IOException if the file cannot be read or it is not a ZIP file
+	 */
+	public static ZipCentralDirectory open(File file) throws IOException
+	{
+		return open(file, 0, file.length());
+	}
+	
+	/**
+	 * Maps the central directory of a ZIP archive stored as a byte range of a file.
+	 * @param file the file containing the archive
+	 * @param archiveOffset the position of the first byte of the archive inside the file
+	 * @param archiveLength the length of the archive
+	 * @return the central directory
+	 * @throws IOException if the file cannot be read or the range is not a ZIP archive
+	 */
+	public static ZipCentralDirectory open(File file, long archiveOffset, long archiveLength) throws IOException
+	{
+		try (ArchiveData data = new FileData(file))
+		{
+			return open(file, null, data, archiveOffset, archiveLength);
+		}
+	}
+	
+	private static ZipCentralDirectory open(File file, ByteBuffer inflatedArchive, ArchiveData data, long archiveOffset, long archiveLength) throws IOException
+	{
+		final int tailLength = (int) Math.min(archiveLength, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+		final long tailOffset = archiveLength - tailLength;
+		final ByteBuffer tail = data.read(archiveOffset + tailOffset, tailLength);
+		
+		final int endPosition = findEndOfCentralDirectory(tail);
+		if (endPosition < 0)
+		{
+			throw new IOException("Not a ZIP archive: " + file);
+		}
+		
+		long entryCount = tail.getShort(endPosition + 10) & 0xFFFF;
+		long size = tail.getInt(endPosition + 12) & 0xFFFFFFFFL;
+		long recordedOffset = tail.getInt(endPosition + 16) & 0xFFFFFFFFL;
+		long endOffset = tailOffset + endPosition;
+		
+		final int locatorPosition = endPosition - ZIP64_LOCATOR_SIZE;
+		if ((locatorPosition >= 0) && (tail.getInt(locatorPosition) == ZIP64_LOCATOR_SIGNATURE))
+		{
+			// the ZIP64 end record lies right before its locator, the recorded offset is shifted by the bytes prepended to the archive
+			final long recordedZip64EndOffset = tail.getLong(locatorPosition + 8);
+			final long zip64EndDelta = Math.max(0, (tailOffset + locatorPosition) - ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE - recordedZip64EndOffset);
+			long zip64EndOffset = recordedZip64EndOffset + zip64EndDelta;
+			ByteBuffer zip64End = data.read(archiveOffset + zip64EndOffset, ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE);
+			if ((zip64End.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE) && (zip64EndDelta > 0))
+			{
+				zip64EndOffset = recordedZip64EndOffset; // the record has an extensible data sector
+				zip64End = data.read(archiveOffset + zip64EndOffset, ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE);
+			}
+			if (zip64End.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE)
+			{
+				throw new IOException("Corrupt ZIP64 end of central directory: " + file);
+			}
+			entryCount = zip64End.getLong(32);
+			size = zip64End.getLong(40);
+			recordedOffset = zip64End.getLong(48);
+			endOffset = zip64EndOffset;
+		}
+		
+		// the central directory lies right before its end record, the difference to its recorded offset applies to the local headers as well, as in java.util.zip
+		final long offset = endOffset - size;
+		final long delta = offset - recordedOffset;
+		if ((offset < 0) || (delta < 0) || (size > Integer.MAX_VALUE) || (entryCount > Integer.MAX_VALUE))
+		{
+			throw new IOException("Corrupt ZIP central directory: " + file);
+		}
+		
+		final ByteBuffer centralDirectory = data.map(archiveOffset + offset, (int) size).order(ByteOrder.LITTLE_ENDIAN);
+		final ZipCentralDirectory zipCentralDirectory = new ZipCentralDirectory(file, inflatedArchive, archiveOffset + delta, centralDirectory, (int) entryCount);
+		zipCentralDirectory.validate();
+		return zipCentralDirectory;
+	}
+	
+	/**
+	 * Walks the central headers once, so that a corrupt central directory fails to open instead of failing in the middle of a query.
+	 * @throws IOException if a central header is missing or it overflows the central directory
+	 */
+	private void validate() throws IOException
+	{
+		final int limit = centralDirectory.limit();
+		int position = 0;
+		for (int i = 0; i < entryCount; i++)
+		{
+			if (((position + CENTRAL_HEADER_SIZE) > limit) || (centralDirectory.getInt(position) != CENTRAL_HEADER_SIGNATURE))
+			{
+				throw new IOException("Corrupt ZIP central directory: " + file);
+			}
+			
+			position = nextEntry(position);
+			if (position > limit)
+			{
+				throw new IOException("Corrupt ZIP central directory: " + file);
+			}
+		}
+	}
+	
+	private static int findEndOfCentralDirectory(ByteBuffer tail)
+	{
+		int candidate = -1;
+		for (int position = tail.limit() - END_OF_CENTRAL_DIRECTORY_SIZE; position >= 0; position--)
+		{
+			if (tail.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE)
+			{
+				final int commentLength = tail.getShort(position + 20) & 0xFFFF;
+				if ((position + END_OF_CENTRAL_DIRECTORY_SIZE + commentLength) == tail.limit())
+				{
+					return position;
+				}
+				if (candidate < 0)
+				{
+					candidate = position;
+				}
+			}
+		}
+		return candidate;
+	}
+	
+	/**
+	 * Maps the central directory of an archive stored inside this one, such as a library of a fat JAR.<br>
+	 * A STORED nested archive is read in place, straight from the byte range of its entry. Build tools such as Spring Boot store nested JAR files that way. A compressed nested archive
+	 * cannot be read in place, it is inflated into memory instead and kept there by the returned central directory.
+	 * @param name the entry name of the nested archive
+	 * @return the central directory of the nested archive, or {@code null} if there is no such entry
+	 * @throws IOException if the entry cannot be read or it is not a ZIP archive
+	 */
+	public ZipCentralDirectory openNested(String name) throws IOException
+	{
+		final int position = findEntry(name);
+		if (position < 0)
+		{
+			return null;
+		}
+		
+		try (ArchiveData data = openData())
+		{
+			final int method = centralDirectory.getShort(position + 10) & 0xFFFF;
+			if (method != METHOD_STORED)
+			{
+				final ByteBuffer archive = ByteBuffer.wrap(readEntry(data, position, name));
+				return open(file, archive, new MemoryData(archive), 0, archive.capacity());
+			}
+			
+			final long[] sizes = getSizesAndOffset(position);
+			return open(file, inflatedArchive, data, getDataOffset(data, sizes[2]), sizes[1]);
+		}
+	}
+	
+	/**
+	 * Gets the file holding the archive.
+	 * @return the file
+	 */
+	public File getFile()
+	{
+		return file;
+	}
+	
+	/**
+	 * Gets the number of entries, including directories.
+	 * @return the entry count
+	 */
+	public int getEntryCount()
+	{
+		return entryCount;
+	}
+	
+	/**
+	 * Passes the name of every entry ending with the suffix to the action, in central directory order.<br>
+	 * The suffix is compared on the raw name bytes, so names of the other entries are never decoded.
+	 * @param suffix the name suffix, such as {@code .class}, an empty suffix matches every entry
+	 * @param action the action receiving the entry names
+	 */
+	public void forEachEntryName(String suffix, Consumer<String> action)
+	{
+		final byte[] suffixBytes = suffix.getBytes(StandardCharsets.UTF_8);
+		byte[] nameBytes = new byte[256];
+		int position = 0;
+		for (int i = 0; i < entryCount; i++)
+		{
+			final int nameLength = centralDirectory.getShort(position + 28) & 0xFFFF;
+			final int nameOffset = position + CENTRAL_HEADER_SIZE;
+			if (endsWith(nameOffset, nameLength, suffixBytes))
+			{
+				if (nameBytes.length < nameLength)
+				{
+					nameBytes = new byte[nameLength];
+				}
+				for (int j = 0; j < nameLength; j++)
+				{
+					nameBytes[j] = centralDirectory.get(nameOffset + j);
+				}
+				action.accept(new String(nameBytes, 0, nameLength, StandardCharsets.UTF_8));
+			}
+			position = nextEntry(position);
+		}
+	}
+	
+	/**
+	 * Checks whether the archive has an entry with the given name.
+	 * @param name the entry name
+	 * @return {@code true} if the entry exists
+	 */
+	public boolean contains(String name)
+	{
+		return findEntry(name) >= 0;
+	}
+	
+	/**
+	 * Reads the uncompressed content of an entry. Only the STORED and DEFLATED methods are supported, they cover every JAR file.
+	 * @param name the entry name
+	 * @return the content, or {@code null} if there is no such entry
+	 * @throws IOException if the entry cannot be read
+	 */
+	public byte[] read(String name) throws IOException
+	{
+		final int position = findEntry(name);
+		if (position < 0)
+		{
+			return null;
+		}
+		
+		try (ArchiveData data = openData())
+		{
+			return readEntry(data, position, name);
+		}
+	}
+	
+	/**
+	 * Reads the content of every entry ending with the suffix, in central directory order, through a single file channel.
+	 * @param suffix the name suffix, such as {@code .class}, an empty suffix matches every entry
+	 * @param consumer the consumer receiving the entry names and contents
+	 * @throws IOException if an entry cannot be read, or thrown by the consumer
+	 */
+	public void forEachEntry(String suffix, EntryConsumer consumer) throws IOException
+	{
+		forEachEntry("", suffix, consumer);
+	}
+	
+	/**
+	 * Reads the content of every entry starting with the prefix and ending with the suffix, in central directory order, through a single file channel.<br>
+	 * The entries outside the prefix, such as the other packages, are neither decoded nor read.
+	 * @param prefix the name prefix, such as {@code com/example/}, an empty prefix matches every entry
+	 * @param suffix the name suffix, such as {@code .class}, an empty suffix matches every entry
+	 * @param consumer the consumer receiving the entry names and contents
+	 * @throws IOException if an entry cannot be read, or thrown by the consumer
+	 */
+	public void forEachEntry(String prefix, String suffix, EntryConsumer consumer) throws IOException
+	{
+		final byte[] prefixBytes = prefix.getBytes(StandardCharsets.UTF_8);
+		final byte[] suffixBytes = suffix.getBytes(StandardCharsets.UTF_8);
+		try (ArchiveData data = openData())
+		{
+			int position = 0;
+			for (int i = 0; i < entryCount; i++)
+			{
+				final int nameLength = centralDirectory.getShort(position + 28) & 0xFFFF;
+				final int nameOffset = position + CENTRAL_HEADER_SIZE;
+				if (startsWith(nameOffset, nameLength, prefixBytes) && endsWith(nameOffset, nameLength, suffixBytes))
+				{
+					final byte[] nameBytes = new byte[nameLength];
+					for (int j = 0; j < nameLength; j++)
+					{
+						nameBytes[j] = centralDirectory.get(nameOffset + j);
+					}
+					final String name = new String(nameBytes, StandardCharsets.UTF_8);
+					consumer.accept(name, readEntry(data, position, name));
+				}
+				position = nextEntry(position);
+			}
+		}
+	}
+	
+	private byte[] readEntry(ArchiveData data, int position, String name) throws IOException
+	{
+		final int method = centralDirectory.getShort(position + 10) & 0xFFFF;
+		final long[] sizes = getSizesAndOffset(position);
+		final long compressedSize = sizes[1];
+		final long uncompressedSize = sizes[0];
+		if ((compressedSize > Integer.MAX_VALUE) || (uncompressedSize > Integer.MAX_VALUE))
+		{
+			throw new IOException("ZIP entry is too large: " + name);
+		}
+		
+		final ByteBuffer content = data.read(getDataOffset(data, sizes[2]), (int) compressedSize);
+		switch (method)
+		{
+			case METHOD_STORED:
+				return content.array();
+			case METHOD_DEFLATED:
+				return inflate(content.array(), (int) uncompressedSize);
+			default:
+				throw new IOException("Unsupported ZIP compression method " + method + ": " + name);
+		}
+	}
+	
+	/**
+	 * Reads the manifest of the JAR file.
+	 * @return the manifest, or {@code null} if the archive has none
+	 * @throws IOException if the manifest cannot be read
+	 */
+	public Manifest getManifest() throws IOException
+	{
+		final byte[] manifest = read(JarFile.MANIFEST_NAME);
+		return manifest == null ? null : new Manifest(new ByteArrayInputStream(manifest));
+	}
+	
+	/**
+	 * Gets the position of the entry data inside the file holding the archive, or inside the inflated archive for a compressed nested archive.<br>
+	 * Together with the compressed size it gives the byte range of STORED entries, which can be read in place.
+	 * @param name the entry name
+	 * @return the data position, or {@code -1} if there is no such entry
+	 * @throws IOException if the local header cannot be read
+	 */
+	public long getDataPosition(String name) throws IOException
+	{
+		final int position = findEntry(name);
+		if (position < 0)
+		{
+			return -1;
+		}
+		
+		try (ArchiveData data = openData())
+		{
+			return getDataOffset(data, getSizesAndOffset(position)[2]);
+		}
+	}
+	
+	private ArchiveData openData() throws IOException
+	{
+		return inflatedArchive != null ? new MemoryData(inflatedArchive) : new FileData(file);
+	}
+	
+	private long getDataOffset(ArchiveData data, long localHeaderOffset) throws IOException
+	{
+		final long headerOffset = baseOffset + localHeaderOffset;
+		final ByteBuffer header = data.read(headerOffset, LOCAL_HEADER_SIZE);
+		if (header.getInt(0) != LOCAL_HEADER_SIGNATURE)
+		{
+			throw new IOException("Corrupt ZIP local header: " + file);
+		}
+		final int nameLength = header.getShort(26) & 0xFFFF;
+		final int extraLength = header.getShort(28) & 0xFFFF;
+		return headerOffset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+	}
+	
+	/**
+	 * Gets the uncompressed size, the compressed size and the local header offset of the entry, in this order, resolving their ZIP64 extra field values.
+	 * @param position the position of the central header
+	 * @return the sizes and the offset
+	 */
+	private long[] getSizesAndOffset(int position)
+	{
+		final long[] values =
+		{
+			centralDirectory.getInt(position + 24) & 0xFFFFFFFFL,
+			centralDirectory.getInt(position + 20) & 0xFFFFFFFFL,
+			centralDirectory.getInt(position + 42) & 0xFFFFFFFFL
+		};
+		if ((values[0] != ZIP64_MAGIC) && (values[1] != ZIP64_MAGIC) && (values[2] != ZIP64_MAGIC))
+		{
+			return values;
+		}
+		
+		final int nameLength = centralDirectory.getShort(position + 28) & 0xFFFF;
+		final int extraLength = centralDirectory.getShort(position + 30) & 0xFFFF;
+		int extraPosition = position + CENTRAL_HEADER_SIZE + nameLength;
+		final int extraEnd = extraPosition + extraLength;
+		while ((extraPosition + 4) <= extraEnd)
+		{
+			final int id = centralDirectory.getShort(extraPosition) & 0xFFFF;
+			final int length = centralDirectory.getShort(extraPosition + 2) & 0xFFFF;
+			if (id == ZIP64_EXTRA_FIELD_ID)
+			{
+				int valuePosition = extraPosition + 4;
+				for (int i = 0; i < values.length; i++)
+				{
+					if ((values[i] == ZIP64_MAGIC) && ((valuePosition + 8) <= (extraPosition + 4 + length)))
+					{
+						values[i] = centralDirectory.getLong(valuePosition);
+						valuePosition += 8;
+					}
+				}
+				break;
+			}
+			extraPosition += 4 + length;
+		}
+		return values;
+	}
+	
+	private int findEntry(String name)
+	{
+		final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		int position = 0;
+		for (int i = 0; i < entryCount; i++)
+		{
+			final int nameLength = centralDirectory.getShort(position + 28) & 0xFFFF;
+			if ((nameLength == nameBytes.length) && endsWith(position + CENTRAL_HEADER_SIZE, nameLength, nameBytes))
+			{
+				return position;
+			}
+			position = nextEntry(position);
+		}
+		return -1;
+	}
+	
+	private int nextEntry(int position)
+	{
+		final int nameLength = centralDirectory.getShort(position + 28) & 0xFFFF;
+		final int extraLength = centralDirectory.getShort(position + 30) & 0xFFFF;
+		final int commentLength = centralDirectory.getShort(position + 32) & 0xFFFF;
+		return position + CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+	}
+	
+	private boolean startsWith(int nameOffset, int nameLength, byte[] prefixBytes)
+	{
+		if (nameLength < prefixBytes.length)
+		{
+			return false;
+		}
+		for (int i = 0; i < prefixBytes.length; i++)
+		{
+			if (centralDirectory.get(nameOffset + i) != prefixBytes[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private boolean endsWith(int nameOffset, int nameLength, byte[] suffixBytes)
+	{
+		if (nameLength < suffixBytes.length)
+		{
+			return false;
+		}
+		final int start = (nameOffset + nameLength) - suffixBytes.length;
+		for (int i = 0; i < suffixBytes.length; i++)
+		{
+			if (centralDirectory.get(start + i) != suffixBytes[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static byte[] inflate(byte[] compressed, int uncompressedSize) throws IOException
+	{
+		final Inflater inflater = new Inflater(true);
+		try
+		{
+			inflater.setInput(Arrays.copyOf(compressed, compressed.length + 1)); // the raw inflater needs an extra dummy byte
+			final byte[] result = new byte[uncompressedSize];
+			int length = 0;
+			while ((length < uncompressedSize) && !inflater.finished())
+			{
+				final int inflated = inflater.inflate(result, length, uncompressedSize - length);
+				if ((inflated == 0) && (inflater.needsInput() || inflater.needsDictionary()))
+				{
+					throw new IOException("Truncated ZIP entry.");
+				}
+				length += inflated;
+			}
+			return result;
+		}
+		catch (DataFormatException e)
+		{
+			throw new IOException("Corrupt ZIP entry.", e);
+		}
+		finally
+		{
+			inflater.end();
+		}
+	}
+	
+	/**
+	 * The bytes of an archive, read by position.
+	 */
+	private interface ArchiveData extends Closeable
+	{
+		/**
+		 * Reads a byte range into a new heap buffer.
+		 * @param offset the position of the first byte
+		 * @param length the number of bytes
+		 * @return the little-endian buffer holding the bytes
+		 * @throws IOException if the range cannot be read
+		 */
+		ByteBuffer read(long offset, int length) throws IOException;
+		
+		/**
+		 * Gets a byte range without copying it, where possible.
+		 * @param offset the position of the first byte
+		 * @param length the number of bytes
+		 * @return the buffer holding the bytes
+		 * @throws IOException if the range cannot be read
+		 */
+		ByteBuffer map(long offset, int length) throws IOException;
+	}
+	
+	/**
+	 * The bytes of an archive inside a file, read through a file channel and memory-mapped.
+	 */
+	private static final class FileData implements ArchiveData
+	{
+		private final FileChannel channel;
+		
+		FileData(File file) throws IOException
+		{
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		}
+		
+		@Override
+		public ByteBuffer read(long offset, int length) throws IOException
+		{
+			final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+			while (buffer.hasRemaining())
+			{
+				if (channel.read(buffer, offset + buffer.position()) < 0)
+				{
+					throw new IOException("Unexpected end of ZIP file.");
+				}
+			}
+			((Buffer) buffer).flip(); // links the Java 8 method when compiled by a newer JDK
+			return buffer;
+		}
+		
+		@Override
+		public ByteBuffer map(long offset, int length) throws IOException
+		{
+			return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+		}
+		
+		@Override
+		public void close() throws IOException
+		{
+			channel.close();
+		}
+	}
+	
+	/**
+	 * The bytes of an archive inflated into memory.
+	 */
+	private static final class MemoryData implements ArchiveData
+	{
+		private final ByteBuffer archive;
+		
+		MemoryData(ByteBuffer archive)
+		{
+			this.archive = archive;
+		}
+		
+		@Override
+		public ByteBuffer read(long offset, int length) throws IOException
+		{
+			final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.put(map(offset, length));
+			((Buffer) buffer).flip(); // links the Java 8 method when compiled by a newer JDK
+			return buffer;
+		}
+		
+		@Override
+		public ByteBuffer map(long offset, int length) throws IOException
+		{
+			if ((offset < 0) || ((offset + length) > archive.capacity()))
+			{
+				throw new IOException("Unexpected end of ZIP file.");
+			}
+			
+			final ByteBuffer range = archive.duplicate();
+			((Buffer) range).position((int) offset); // links the Java 8 methods when compiled by a newer JDK
+			((Buffer) range).limit((int) offset + length);
+			return range.slice();
+		}
+		
+		@Override
+		public void close()
+		{
+			// nothing to release
+		}
+	}
+	
+	/**
+	 * Receives the entries read by {@link ZipCentralDirectory#forEachEntry(String, EntryConsumer)}.
+	 * @author lord_rex
+	 */
+	@FunctionalInterface
+	public interface EntryConsumer
+	{
+		/**
+		 * Called for each matching entry.
+		 * @param name the entry name
+		 * @param content the uncompressed entry content
+		 * @throws IOException if the content cannot be processed
+		 */
+		void accept(String name, byte[] content) throws IOException;
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.scan;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.lordrex34.reflection.util.classfile.ClassFileInfo;
+import com.github.lordrex34.reflection.util.classfile.ClassFileReader;
+import com.github.lordrex34.reflection.util.jar.ZipCentralDirectory;
+
+/**
+ * Reads the class file of every scanned class once, one pass per classpath root, and passes the parsed information to the visitors building the bytecode indexes.
+ * @author lord_rex
+ */
+final class ClassFileIndexer
+{
+	private ClassFileIndexer()
+	{
+		// utility class
+	}
+	
+	/**
+	 * Visits every scanned class of the scan whose name starts with the package prefix.<br>
+	 * The roots whose package summary cannot match the prefix are skipped, inside a JAR file only the entries under the prefix are read.
+	 * @param scan the scan
+	 * @param packagePrefix the package prefix, empty for every class
+	 * @param visitors the visitors
+	 * @throws IOException if a classpath root cannot be read
+	 */
+	static void index(ClassPathScan scan, String packagePrefix, Visitor... visitors) throws IOException
+	{
+		final Map<ScannedRoot, Set<String>> resourceNamesByRoot = new IdentityHashMap<>();
+		for (ScannedClass scannedClass : scan.getClasses(packagePrefix))
+		{
+			resourceNamesByRoot.computeIfAbsent(scannedClass.getRoot(), k -> new HashSet<>()).add(scannedClass.getResourceName());
+		}
+		
+		final String resourcePrefix = packagePrefix.replace('.', '/');
+		for (ScannedRoot root : scan.getRoots(packagePrefix))
+		{
+			final Set<String> resourceNames = resourceNamesByRoot.get(root);
+			if (resourceNames == null)
+			{
+				continue;
+			}
+			
+			// the class files parsed by a scan snapshot are not read again
+			if (root.hasClassFileInfos())
+			{
+				for (String resourceName : resourceNames)
+				{
+					visit(root, resourceName, root.getClassFileInfo(toClassName(resourceName)), visitors);
+				}
+				continue;
+			}
+			
+			final ZipCentralDirectory.EntryConsumer consumer = (resourceName, content) ->
+			{
+				if (!resourceNames.contains(resourceName))
+				{
+					return;
+				}
+				
+				ClassFileInfo classFileInfo;
+				try
+				{
+					classFileInfo = ClassFileReader.read(content);
+				}
+				catch (IOException e)
+				{
+					classFileInfo = null;
+				}
+				visit(root, resourceName, classFileInfo, visitors);
+			};
+			if ((root.getEntryName() == null) && root.getFile().isDirectory())
+			{
+				for (String resourceName : resourceNames)
+				{
+					final byte[] content;
+					try
+					{
+						content = Files.readAllBytes(new File(root.getFile(), resourceName).toPath());
+					}
+					catch (IOException e)
+					{
+						// deleted since the scan or unreadable, left to the class loader like a malformed one
+						visit(root, resourceName, null, visitors);
+						continue;
+					}
+					consumer.accept(resourceName, content);
+				}
+			}
+			else
+			{
+				root.getLocation().open().forEachEntry(resourcePrefix, ".class", consumer);
+			}
+		}
+	}
+	
+	private static void visit(ScannedRoot root, String resourceName, ClassFileInfo classFileInfo, Visitor[] visitors)
+	{
+		for (Visitor visitor : visitors)
+		{
+			if (classFileInfo != null)
+			{
+				visitor.visit(root, classFileInfo);
+			}
+			else
+			{
+				visitor.visitMalformed(toClassName(resourceName));
+			}
+		}
+	}
+	
+	private static String toClassName(String resourceName)
+	{
+		return resourceName.substring(0, resourceName.length() - ".class".length()).replace('/', '.');
+	}
+	
+	/**
+	 * Receives the class files read by {@link ClassFileIndexer#index(ClassPathScan, String, Visitor...)}.
+	 */
+	interface Visitor
+	{
+		/**
+		 * Called for each readable class file.
+		 * @param root the root holding the class file
+		 * @param classFileInfo the parsed class file
+		 */
+		void visit(ScannedRoot root, ClassFileInfo classFileInfo);
+		
+		/**
+		 * Called for each class file that cannot be parsed.
+		 * @param className the binary name of the class
+		 */
+		void visitMalformed(String className);
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.scan;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Set;
+
+import com.github.lordrex34.reflection.util.classfile.ClassFileInfo;
+import com.github.lordrex34.reflection.util.classfile.ClassFileReader;
+
+/**
+ * A lightweight reference to a discovered class, which is not loaded until {@link #load()} is called.<br>
+ * The metadata is parsed from the class file on first access and kept along with the handle, so filtering, sorting and grouping large amounts of candidates does not load any of them.
+ * @author lord_rex
+ */
+public final class ClassHandle
+{
+	private final String name;
+	private final WeakReference<ClassLoader> classLoader;
+	private volatile ClassFileInfo classFileInfo;
+	
+	/**
+	 * Creates a handle of the class.
+	 * @param name the binary name of the class
+	 * @param classLoader the class loader which loads the class, it is weakly referenced
+	 */
+	public ClassHandle(String name, ClassLoader classLoader)
+	{
+		this.name = name;
+		this.classLoader = new WeakReference<>(classLoader);
+	}
+	
+	/**
+	 * Creates a handle of the scanned class.
+	 * @param scannedClass the scanned class
+	 * @return the handle
+	 */
+	public static ClassHandle of(ScannedClass scannedClass)
+	{
+		return new ClassHandle(scannedClass.getName(), scannedClass.getClassLoader());
+	}
+	
+	/**
+	 * Gets the binary name of the class.
+	 * @return the class name
+	 */
+	public String getName()
+	{
+		return name;
+	}
+	
+	/**
+	 * Gets the name of the package of the class.
+	 * @return the package name, empty for the default package
+	 */
+	public String getPackageName()
+	{
+		final int lastDot = name.lastIndexOf('.');
+		return lastDot < 0 ? "" : name.substring(0, lastDot);
+	}
+	
+	/**
+	 * Gets the class loader which loads the class.
+	 * @return the class loader, or {@code null} if it has been collected
+	 */
+	public ClassLoader getClassLoader()
+	{
+		return classLoader.get();
+	}
+	
+	/**
+	 * Gets the header information of the class file, read once and then kept.
+	 * @return the class file information
+	 * @throws UncheckedIOException if the class file cannot be found or read
+	 */
+	public ClassFileInfo getClassFileInfo()
+	{
+		ClassFileInfo info = classFileInfo;
+		if (info == null)
+		{
+			final String resourceName = name.replace('.', '/') + ".class";
+			final ClassLoader loader = getClassLoader();
+			try (InputStream inputStream = loader == null ? null : loader.getResourceAsStream(resourceName))
+			{
+				if (inputStream == null)
+				{
+					throw new IOException("Class file not found: " + resourceName);
+				}
+				info = ClassFileReader.read(inputStream);
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+			classFileInfo = info;
+		}
+		return info;
+	}
+	
+	/**
+	 * Gets the binary name of the direct superclass.
+	 * @return the superclass name, {@code null} for {@link Object}
+	 * @see ClassFileInfo#getSuperName()
+	 */
+	public String getSuperName()
+	{
+		return getClassFileInfo().getSuperName();
+	}
+	
+	/**
+	 * Gets the binary names of the directly implemented interfaces.
+	 * @return an unmodifiable list of interface names
+	 * @see ClassFileInfo#getInterfaceNames()
+	 */
+	public List<String> getInterfaceNames()
+	{
+		return getClassFileInfo().getInterfaceNames();
+	}
+	
+	/**
+	 * Gets the raw access flags of the class file.
+	 * @return the access flags
+	 * @see ClassFileInfo#getAccessFlags()
+	 */
+	public int getAccessFlags()
+	{
+		return getClassFileInfo().getAccessFlags();
+	}
+	
+	/**
+	 * Gets the binary names of the runtime visible annotations declared on the class.
+	 * @return an unmodifiable set of annotation names
+	 * @see ClassFileInfo#getAnnotationNames()
+	 */
+	public Set<String> getAnnotationNames()
+	{
+		return getClassFileInfo().getAnnotationNames();
+	}
+	
+	/**
+	 * Checks whether the class is directly annotated with the specified runtime visible annotation.
+	 * @param annotationName the binary name of the annotation
+	 * @return {@code true} if the annotation is declared on the class
+	 */
+	public boolean isAnnotationPresent(String annotationName)
+	{
+		return getClassFileInfo().isAnnotationPresent(annotationName);
+	}
+	
+	/**
+	 * Loads the class through its class loader.
+	 * @return the loaded class
+	 * @throws ClassNotFoundException if the class cannot be found or its class loader has been collected
+	 */
+	public Class<?> load() throws ClassNotFoundException
+	{
+		final ClassLoader loader = getClassLoader();
+		if (loader == null)
+		{
+			throw new ClassNotFoundException(name);
+		}
+		return loader.loadClass(name);
+	}
+	
+	@Override
+	public String toString()
+	{
+		return name;
+	}
+}
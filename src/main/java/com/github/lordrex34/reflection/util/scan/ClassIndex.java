@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.scan;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.lordrex34.reflection.util.jar.JarLocation;
+import com.github.lordrex34.reflection.util.jar.ZipCentralDirectory;
+
+/**
+ * A class discovery index, written at compile time by the {@code commons-reflection-utils-processor} annotation processor.
+ * <p>
+ * Each classpath root compiled with the processor carries an {@value #INDEX_RESOURCE} resource, a line based UTF-8 text file:
+ * </p>
+ * <pre>
+ * # comment
+ * com.example.handlers:
+ *  FooHandler @com.example.Handler +com.example.AbstractHandler +java.lang.Runnable
+ *  FooHandler$Inner
+ * </pre>
+ * <p>
+ * A line ending with {@code :} opens a package (empty for the default package). The lines starting with a space list the classes of that package by their binary name relative to the package,
+ * followed by their runtime visible annotations ({@code @}) and all of their transitive supertypes ({@code +}), except {@link Object}.<br>
+ * Anonymous and local classes are not visible to annotation processors, therefore they are never listed. An incremental compilation, such as the one of an IDE, writes only the classes it
+ * has compiled. The index is therefore never taken as the complete list of classes, the queries use it to prune the scanned classes and read the class files of the others.
+ * </p>
+ * @author lord_rex
+ */
+public final class ClassIndex
+{
+	/** The location of the index inside a classpath root. */
+	public static final String INDEX_RESOURCE = "META-INF/reflection-utils/classes.idx";
+	
+	private final Map<String, Entry> entries;
+	private final PrefixIndex<Entry> entryIndex;
+	
+	private ClassIndex(Map<String, Entry> entries)
+	{
+		this.entries = entries;
+		this.entryIndex = new PrefixIndex<>(entries.values(), Entry::getName);
+	}
+	
+	/**
+	 * Loads the indexes of all classpath roots of the class loader. The roots of the Java installation are not required to carry an index.
+	 * @param classLoader the class loader
+	 * @return the merged index, or {@code null} if at least one classpath root has no index
+	 * @throws IOException if an index cannot be read
+	 */
+	public static ClassIndex load(ClassLoader classLoader) throws IOException
+	{
+		final Map<String, Entry> entries = new LinkedHashMap<>();
+		final Set<File> visited = new HashSet<>();
+		for (ClassPathRoot root : ClassPathRoots.of(classLoader))
+		{
+			if (ClassPathRoots.isJdkRoot(root.getFile()))
+			{
+				continue;
+			}
+			
+			final boolean indexed = root.getEntryName() != null ? readNested(new JarLocation(root.getFile(), root.getEntryName()), root.getClassLoader(), entries) : read(root.getFile(), root.getClassLoader(), visited, entries);
+			if (!indexed)
+			{
+				return null;
+			}
+		}
+		return new ClassIndex(entries);
+	}
+	
+	private static boolean readNested(JarLocation location, ClassLoader classLoader, Map<String, Entry> entries) throws IOException
+	{
+		final ZipCentralDirectory centralDirectory;
+		try
+		{
+			centralDirectory = location.open();
+		}
+		catch (IOException e)
+		{
+			return false; // not readable as a nested JAR file, the scan decides what it holds
+		}
+		
+		final byte[] index = centralDirectory.read(INDEX_RESOURCE);
+		if (index == null)
+		{
+			return false;
+		}
+		parse(new ByteArrayInputStream(index), classLoader, entries);
+		return true;
+	}
+	
+	private static boolean read(File file, ClassLoader classLoader, Set<File> visited, Map<String, Entry> entries) throws IOException
+	{
+		if (!visited.add(file.getAbsoluteFile()) || !file.exists())
+		{
+			return true;
+		}
+		
+		if (file.isDirectory())
+		{
+			final File indexFile = new File(file, INDEX_RESOURCE);
+			if (!indexFile.isFile())
+			{
+				return false;
+			}
+			
+			try (InputStream inputStream = new FileInputStream(indexFile))
+			{
+				parse(inputStream, classLoader, entries);
+			}
+			return true;
+		}
+		
+		final ZipCentralDirectory centralDirectory;
+		try
+		{
+			centralDirectory = ZipCentralDirectory.open(file);
+		}
+		catch (IOException e)
+		{
+			return true; // not a JAR file, there are no classes to index
+		}
+		
+		final byte[] index = centralDirectory.read(INDEX_RESOURCE);
+		if (index == null)
+		{
+			return false;
+		}
+		parse(new ByteArrayInputStream(index), classLoader, entries);
+		
+		for (File classPathFile : ClassPathRoots.getManifestClassPath(file, centralDirectory.getManifest()))
+		{
+			if (!read(classPathFile, classLoader, visited, entries))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Parses a single index, the first occurrence of a class wins.
+	 * @param inputStream the index
+	 * @param classLoader the class loader of the classpath root that holds the index
+	 * @param entries the entries to be filled
+	 * @throws IOException if the index cannot be read or it is malformed
+	 */
+	static void parse(InputStream inputStream, ClassLoader classLoader, Map<String, Entry> entries) throws IOException
+	{
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+		
+		String packageName = null;
+		String line;
+		while ((line = reader.readLine()) != null)
+		{
+			if (line.isEmpty() || (line.charAt(0) == '#'))
+			{
+				continue;
+			}
+			
+			if (line.charAt(0) != ' ')
+			{
+				if (!line.endsWith(":"))
+				{
+					throw new IOException("Malformed class index line: " + line);
+				}
+				packageName = line.substring(0, line.length() - 1);
+				continue;
+			}
+			
+			if (packageName == null)
+			{
+				throw new IOException("Class index entry without a package: " + line);
+			}
+			
+			final String[] tokens = line.trim().split(" +");
+			final String name = packageName.isEmpty() ? tokens[0] : packageName + "." + tokens[0];
+			final Set<String> annotationNames = new LinkedHashSet<>();
+			final Set<String> supertypeNames = new LinkedHashSet<>();
+			for (int i = 1; i < tokens.length; i++)
+			{
+				final String token = tokens[i];
+				switch (token.charAt(0))
+				{
+					case '@':
+						annotationNames.add(token.substring(1));
+						break;
+					case '+':
+						supertypeNames.add(token.substring(1));
+						break;
+					default:
+						throw new IOException("Malformed class index token: " + token);
+				}
+			}
+			entries.putIfAbsent(name, new Entry(name, classLoader, annotationNames, supertypeNames));
+		}
+	}
+	
+	/**
+	 * Gets the entries of the classes inside the package, sorted by name.
+	 * @param packagePrefix the package where you seek
+	 * @return an unmodifiable list of entries
+	 */
+	public List<Entry> getEntries(String packagePrefix)
+	{
+		return entryIndex.get(packagePrefix);
+	}
+	
+	/**
+	 * Gets the entry of the specified class.
+	 * @param name the binary name of the class
+	 * @return the entry, or {@code null} if the class is not indexed
+	 */
+	public Entry getEntry(String name)
+	{
+		return entries.get(name);
+	}
+	
+	/**
+	 * Gets every entry of this index.
+	 * @return an unmodifiable collection of entries
+	 */
+	public Collection<Entry> getEntries()
+	{
+		return Collections.unmodifiableCollection(entries.values());
+	}
+	
+	/**
+	 * Checks whether the class of the entry may be annotated with the annotation.<br>
+	 * For inherited annotations the indexed supertypes are checked as well, that includes interfaces, so the loaded class has the final word.
+	 * @param entry the entry
+	 * @param annotationName the binary name of the annotation
+	 * @param inherited whether the annotation is {@link java.lang.annotation.Inherited} or not
+	 * @return {@code true} if the class may be annotated with the annotation
+	 */
+	public boolean isAnnotationPresent(Entry entry, String annotationName, boolean inherited)
+	{
+		if (entry.getAnnotationNames().contains(annotationName))
+		{
+			return true;
+		}
+		
+		if (inherited)
+		{
+			for (String supertypeName : entry.getSupertypeNames())
+			{
+				final Entry supertypeEntry = entries.get(supertypeName);
+				if ((supertypeEntry != null) && supertypeEntry.getAnnotationNames().contains(annotationName))
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * A single indexed class.
+	 * @author lord_rex
+	 */
+	public static final class Entry
+	{
+		private final String name;
+		private final WeakReference<ClassLoader> classLoader;
+		private final Set<String> annotationNames;
+		private final Set<String> supertypeNames;
+		
+		Entry(String name, ClassLoader classLoader, Set<String> annotationNames, Set<String> supertypeNames)
+		{
+			this.name = name;
+			this.classLoader = new WeakReference<>(classLoader);
+			this.annotationNames = Collections.unmodifiableSet(annotationNames);
+			this.supertypeNames = Collections.unmodifiableSet(supertypeNames);
+		}
+		
+		/**
+		 * Gets the binary name of the class.
+		 * @return the class name
+		 */
+		public String getName()
+		{
+			return name;
+		}
+		
+		/**
+		 * Gets the class loader of the classpath root which holds the class. It is weakly referenced, like {@link ScannedRoot#getClassLoader()}.
+		 * @return the class loader, or {@code null} if it has been collected
+		 */
+		public ClassLoader getClassLoader()
+		{
+			return classLoader.get();
+		}
+		
+		/**
+		 * Gets the binary names of the runtime visible annotations declared on the class.
+		 * @return an unmodifiable set of annotation names
+		 */
+		public Set<String> getAnnotationNames()
+		{
+			return annotationNames;
+		}
+		
+		/**
+		 * Gets the binary names of all transitive superclasses and interfaces of the class, except {@link Object}.
+		 * @return an unmodifiable set of supertype names
+		 */
+		public Set<String> getSupertypeNames()
+		{
+			return supertypeNames;
+		}
+		
+		/**
+		 * Checks whether the class is the given type or one of its subtypes.
+		 * @param typeName the binary name of the type
+		 * @return {@code true} if the class is assignable to the type
+		 */
+		public boolean isSubtypeOf(String typeName)
+		{
+			return name.equals(typeName) || supertypeNames.contains(typeName) || Object.class.getName().equals(typeName);
+		}
+		
+		@Override
+		public String toString()
+		{
+			return name;
+		}
+	}
+}
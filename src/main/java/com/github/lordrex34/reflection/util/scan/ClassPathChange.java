@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.scan;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * The classes added, removed or modified inside a single classpath root, reported by a {@link ClassPathWatcher}.
+ * @author lord_rex
+ */
+public final class ClassPathChange
+{
+	private final File root;
+	private final Set<String> addedClassNames;
+	private final Set<String> removedClassNames;
+	private final Set<String> modifiedClassNames;
+	
+	ClassPathChange(File root, Set<String> addedClassNames, Set<String> removedClassNames, Set<String> modifiedClassNames)
+	{
+		this.root = root;
+		this.addedClassNames = Collections.unmodifiableSet(addedClassNames);
+		this.removedClassNames = Collections.unmodifiableSet(removedClassNames);
+		this.modifiedClassNames = Collections.unmodifiableSet(modifiedClassNames);
+	}
+	
+	/**
+	 * Gets the canonical directory of the changed classpath root.
+	 * @return the root directory
+	 */
+	public File getRoot()
+	{
+		return root;
+	}
+	
+	/**
+	 * Gets the binary names of the new classes.
+	 * @return an unmodifiable set of class names
+	 */
+	public Set<String> getAddedClassNames()
+	{
+		return addedClassNames;
+	}
+	
+	/**
+	 * Gets the binary names of the deleted classes.
+	 * @return an unmodifiable set of class names
+	 */
+	public Set<String> getRemovedClassNames()
+	{
+		return removedClassNames;
+	}
+	
+	/**
+	 * Gets the binary names of the classes whose class file has been rewritten.
+	 * @return an unmodifiable set of class names
+	 */
+	public Set<String> getModifiedClassNames()
+	{
+		return modifiedClassNames;
+	}
+	
+	/**
+	 * Verifies if the change is empty.
+	 * @return {@code true} if nothing has changed
+	 */
+	public boolean isEmpty()
+	{
+		return addedClassNames.isEmpty() && removedClassNames.isEmpty() && modifiedClassNames.isEmpty();
+	}
+	
+	@Override
+	public String toString()
+	{
+		return root + ": +" + addedClassNames + " -" + removedClassNames + " ~" + modifiedClassNames;
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.scan;
+
+import java.io.File;
+
+/**
+ * A classpath root, a directory or a JAR file, possibly nested inside another JAR file, along with the class loader it belongs to.
+ * @author lord_rex
+ */
+public final class ClassPathRoot
+{
+	private final File file;
+	private final String entryName;
+	private final ClassLoader classLoader;
+	
+	public ClassPathRoot(File file, ClassLoader classLoader)
+	{
+		this(file, null, classLoader);
+	}
+	
+	public ClassPathRoot(File file, String entryName, ClassLoader classLoader)
+	{
+		this.file = file;
+		this.entryName = entryName;
+		this.classLoader = classLoader;
+	}
+	
+	/**
+	 * Gets the directory or JAR file of this root, the outer JAR file of a nested JAR file.
+	 * @return the file
+	 */
+	public File getFile()
+	{
+		return file;
+	}
+	
+	/**
+	 * Gets the entry name of the nested JAR file of this root inside the file, see {@link com.github.lordrex34.reflection.util.jar.JarLocation}.
+	 * @return the entry name, or {@code null} if the root is not nested
+	 */
+	public String getEntryName()
+	{
+		return entryName;
+	}
+	
+	/**
+	 * Gets the class loader which loads the classes of this root.
+	 * @return the class loader
+	 */
+	public ClassLoader getClassLoader()
+	{
+		return classLoader;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return entryName == null ? file.getPath() : file.getPath() + "!/" + entryName;
+	}
+}
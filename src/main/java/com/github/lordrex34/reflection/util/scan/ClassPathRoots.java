@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.scan;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+import com.github.lordrex34.reflection.util.jar.JarLocation;
+import com.google.common.base.Splitter;
+import com.google.common.base.StandardSystemProperty;
+
+/**
+ * Resolves the classpath roots of a class loader hierarchy, the same way {@link com.google.common.reflect.ClassPath} does.
+ * @author lord_rex
+ */
+public final class ClassPathRoots
+{
+	private static final Path JAVA_HOME = Paths.get(StandardSystemProperty.JAVA_HOME.value()).toAbsolutePath();
+	
+	private ClassPathRoots()
+	{
+		// utility class
+	}
+	
+	/**
+	 * Gets the classpath roots of the class loader and its parents, parents first. A file seen by more than one class loader belongs to the topmost one.<br>
+	 * Besides the {@code file:} URLs, the {@code jar:file:} URLs of JAR files nested inside a fat JAR are roots as well, such as the {@code BOOT-INF/lib} libraries of Spring Boot.
+	 * On Java 9 and newer, the module path entries of the boot layer modules defined to these class loaders are roots too.
+	 * @param classLoader the class loader
+	 * @return an ordered list of classpath roots
+	 */
+	public static List<ClassPathRoot> of(ClassLoader classLoader)
+	{
+		final Map<JarLocation, ClassLoader> entries = new LinkedHashMap<>();
+		collect(classLoader, entries);
+		
+		final List<ClassPathRoot> roots = new ArrayList<>(entries.size());
+		entries.forEach((location, loader) -> roots.add(new ClassPathRoot(location.getFile(), location.getEntryName(), loader)));
+		return roots;
+	}
+	
+	private static void collect(ClassLoader classLoader, Map<JarLocation, ClassLoader> entries)
+	{
+		final ClassLoader parent = classLoader.getParent();
+		if (parent != null)
+		{
+			collect(parent, entries);
+		}
+		
+		for (URL url : getClassLoaderUrls(classLoader))
+		{
+			if ("file".equals(url.getProtocol()))
+			{
+				entries.putIfAbsent(new JarLocation(toFile(url)), classLoader);
+			}
+			else
+			{
+				final JarLocation nestedLocation = JarLocation.fromURL(url);
+				if (nestedLocation != null)
+				{
+					entries.putIfAbsent(nestedLocation, classLoader);
+				}
+			}
+		}
+		
+		for (ScannedModule module : ModuleScanner.getBootModules())
+		{
+			final URI location = module.getLocation();
+			if ((module.getClassLoader() == classLoader) && (location != null) && "file".equals(location.getScheme()))
+			{
+				entries.putIfAbsent(new JarLocation(new File(location)), classLoader);
+			}
+		}
+	}
+	
+	private static List<URL> getClassLoaderUrls(ClassLoader classLoader)
+	{
+		if (classLoader instanceof URLClassLoader)
+		{
+			final List<URL> urls = new ArrayList<>();
+			Collections.addAll(urls, ((URLClassLoader) classLoader).getURLs());
+			return urls;
+		}
+		
+		if (classLoader.equals(ClassLoader.getSystemClassLoader()))
+		{
+			final List<URL> urls = new ArrayList<>();
+			for (String entry : Splitter.on(StandardSystemProperty.PATH_SEPARATOR.value()).split(StandardSystemProperty.JAVA_CLASS_PATH.value()))
+			{
+				try
+				{
+					urls.add(new File(entry).toURI().toURL());
+				}
+				catch (MalformedURLException | SecurityException e)
+				{
+					// ignore, invalid classpath entry
+				}
+			}
+			return urls;
+		}
+		
+		return Collections.emptyList();
+	}
+	
+	/**
+	 * Gets the JAR files referenced by the {@code Class-Path} attribute of the manifest, resolved against the JAR file holding the manifest.
+	 * @param jarFile the JAR file
+	 * @param manifest the manifest of the JAR file, may be {@code null}
+	 * @return the referenced local files
+	 */
+	public static List<File> getManifestClassPath(File jarFile, Manifest manifest)
+	{
+		if (manifest == null)
+		{
+			return Collections.emptyList();
+		}
+		
+		final String classPath = manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+		if (classPath == null)
+		{
+			return Collections.emptyList();
+		}
+		
+		final List<File> files = new ArrayList<>();
+		for (String path : Splitter.on(' ').omitEmptyStrings().split(classPath))
+		{
+			try
+			{
+				final URL url = new URL(jarFile.toURI().toURL(), path);
+				if ("file".equals(url.getProtocol()))
+				{
+					files.add(toFile(url));
+				}
+			}
+			catch (MalformedURLException e)
+			{
+				// ignore, invalid manifest entry
+			}
+		}
+		return files;
+	}
+	
+	/**
+	 * Verifies if the root belongs to the running JDK/JRE, such as the extension JARs.<br>
+	 * The paths are compared by name elements, so that a sibling directory such as {@code /opt/java-libs} of {@code /opt/java} is not part of the installation.
+	 * @param file the root file
+	 * @return {@code true} if the root is part of the Java installation
+	 */
+	public static boolean isJdkRoot(File file)
+	{
+		try
+		{
+			return file.getAbsoluteFile().toPath().startsWith(JAVA_HOME);
+		}
+		catch (InvalidPathException e)
+		{
+			return false;
+		}
+	}
+	
+	private static File toFile(URL url)
+	{
+		try
+		{
+			return new File(url.toURI());
+		}
+		catch (URISyntaxException | IllegalArgumentException e)
+		{
+			return new File(url.getPath());
+		}
+	}
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.scan;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import com.github.lordrex34.reflection.util.instrument.Instrumentation;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * The result of a {@link ClassPathScanner} run: the scanned classpath roots and the classes they contain.<br>
+ * A class name seen more than once through the same class loader is listed only once, the first occurrence wins.<br>
+ * The classes are indexed by name once, so package prefix queries cost only as much as the number of matching classes.
+ * The bytecode indexes are built for a package prefix on demand, reading only the roots whose package summary matches it.
+ * @author lord_rex
+ */
+public final class ClassPathScan
+{
+	/** The number of package prefixes whose indexes are kept, the least recently used one is dropped for a further prefix. */
+	private static final int MAX_PREFIX_INDEXES = 8;
+	
+	private final List<ScannedRoot> roots;
+	private final List<ScannedClass> classes;
+	private final PrefixIndex<ScannedClass> classIndex;
+	// a single segment, so that the least recently used prefix of the whole scan is the one evicted
+	private final Cache<String, BytecodeIndexes> prefixIndexes = CacheBuilder.newBuilder().concurrencyLevel(1).maximumSize(MAX_PREFIX_INDEXES).build();
+	private volatile BytecodeIndexes indexes;
+	
+	ClassPathScan(List<ScannedRoot> roots)
+	{
+		this.roots = Collections.unmodifiableList(roots);
+		
+		final Map<ClassLoader, Set<String>> namesByClassLoader = new HashMap<>();
+		final List<ScannedClass> classes = new ArrayList<>();
+		for (ScannedRoot root : roots)
+		{
+			final Set<String> names = namesByClassLoader.computeIfAbsent(root.getClassLoader(), k -> new HashSet<>());
+			for (String className : root.getClassNames())
+			{
+				if (names.add(className))
+				{
+					classes.add(new ScannedClass(className, root));
+				}
+			}
+		}
+		this.classes = Collections.unmodifiableList(classes);
+		this.classIndex = new PrefixIndex<>(classes, ScannedClass::getName);
+	}
+	
+	/**
+	 * Applies the change of a watched root on a copy of this scan. The filesystem is not touched, only the in-memory index is rebuilt.
+	 * @param change the change
+	 * @return the patched scan, or this scan if the changed root is not part of it or its class loader has been collected
+	 */
+	public ClassPathScan patch(ClassPathChange change)
+	{
+		final List<ScannedRoot> patchedRoots = new ArrayList<>(roots);
+		for (int i = 0; i < patchedRoots.size(); i++)
+		{
+			final ScannedRoot root = patchedRoots.get(i);
+			if ((root.getEntryName() != null) || !root.getFile().equals(change.getRoot()))
+			{
+				continue;
+			}
+			
+			final ClassLoader classLoader = root.getClassLoader();
+			if (classLoader == null)
+			{
+				return this;
+			}
+			
+			final Set<String> classNames = new LinkedHashSet<>(root.getClassNames());
+			classNames.removeAll(change.getRemovedClassNames());
+			classNames.addAll(change.getAddedClassNames());
+			patchedRoots.set(i, new ScannedRoot(root.getFile(), classLoader, new ArrayList<>(classNames)));
+			return new ClassPathScan(patchedRoots);
+		}
+		return this;
+	}
+	
+	/**
+	 * Gets the scanned classpath roots in classpath order.
+	 * @return an unmodifiable list of roots
+	 */
+	public List<ScannedRoot> getRoots()
+	{
+		return roots;
+	}
+	
+	/**
+	 * Gets all scanned classes in classpath order.
+	 * @return an unmodifiable list of classes
+	 */
+	public List<ScannedClass> getClasses()
+	{
+		return classes;
+	}
+	
+	/**
+	 * Gets the scanned classes whose name starts with the package prefix, sorted by name.
+	 * @param packagePrefix the package where you seek
+	 * @return an unmodifiable list of classes
+	 */
+	public List<ScannedClass> getClasses(String packagePrefix)
+	{
+		return classIndex.get(packagePrefix);
+	}
+	
+	/**
+	 * Gets the scanned class of the specified name.
+	 * @param name the binary name of the class
+	 * @return the scanned class, or {@code null} if it has not been found
+	 */
+	public ScannedClass getClass(String name)
+	{
+		final List<ScannedClass> matches = classIndex.get(name);
+		return matches.isEmpty() || !matches.get(0).getName().equals(name) ? null : matches.get(0);
+	}
+	
+	/**
+	 * Gets the scanned classpath roots which may hold classes inside the package, in classpath order. The roots are picked by their package summary, no class name is looked at.
+	 * @param packagePrefix the package where you seek
+	 * @return a list of roots
+	 */
+	public List<ScannedRoot> getRoots(String packagePrefix)
+	{
+		final List<ScannedRoot> matchingRoots = new ArrayList<>();
+		for (ScannedRoot root : roots)
+		{
+			if (root.mayContain(packagePrefix))
+			{
+				matchingRoots.add(root);
+			}
+		}
+		return matchingRoots;
+	}
+	
+	/**
+	 * Gets the superclass/interface graph of the scanned classes. It is built from the class files on first use, along with the {@link #getMethodAnnotationIndex() method annotation index}, then kept with this scan.
+	 * @return the type hierarchy
+	 * @throws IOException if a classpath root cannot be read
+	 */
+	public TypeHierarchy getTypeHierarchy() throws IOException
+	{
+		return getIndexes("").typeHierarchy;
+	}
+	
+	/**
+	 * Gets the superclass/interface graph of the scanned classes inside the package, their supertypes outside the package are resolved through the class loaders.<br>
+	 * Only the roots which may hold the package are read. The graph is kept with this scan per prefix, unless the complete one has already been built.
+	 * The graphs of the 8 most recently used prefixes are kept, the graph of an evicted prefix is built again on its next use.
+	 * @param packagePrefix the package where you seek
+	 * @return the type hierarchy
+	 * @throws IOException if a classpath root cannot be read
+	 */
+	public TypeHierarchy getTypeHierarchy(String packagePrefix) throws IOException
+	{
+		return getIndexes(packagePrefix).typeHierarchy;
+	}
+	
+	/**
+	 * Gets the method annotations of the scanned classes. It is built from the class files on first use, along with the {@link #getTypeHierarchy() type hierarchy}, then kept with this scan.
+	 * @return the method annotation index
+	 * @throws IOException if a classpath root cannot be read
+	 */
+	public MethodAnnotationIndex getMethodAnnotationIndex() throws IOException
+	{
+		return getIndexes("").methodAnnotationIndex;
+	}
+	
+	/**
+	 * Gets the method annotations of the scanned classes inside the package, see {@link #getTypeHierarchy(String)}.
+	 * @param packagePrefix the package where you seek
+	 * @return the method annotation index
+	 * @throws IOException if a classpath root cannot be read
+	 */
+	public MethodAnnotationIndex getMethodAnnotationIndex(String packagePrefix) throws IOException
+	{
+		return getIndexes(packagePrefix).methodAnnotationIndex;
+	}
+	
+	private BytecodeIndexes getIndexes(String packagePrefix) throws IOException
+	{
+		final BytecodeIndexes completeIndexes = indexes;
+		if (completeIndexes != null)
+		{
+			return completeIndexes;
+		}
+		
+		if (packagePrefix.isEmpty())
+		{
+			return getCompleteIndexes();
+		}
+		
+		// each prefix is indexed once by the first caller, the other callers wait for it, other prefixes proceed in parallel
+		try
+		{
+			return prefixIndexes.get(packagePrefix, () -> indexClassFiles(packagePrefix));
+		}
+		catch (ExecutionException e)
+		{
+			Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+			throw new IllegalStateException(e.getCause());
+		}
+		catch (UncheckedExecutionException | ExecutionError e)
+		{
+			Throwables.throwIfUnchecked(e.getCause());
+			throw e;
+		}
+	}
+	
+	private synchronized BytecodeIndexes getCompleteIndexes() throws IOException
+	{
+		if (indexes == null)
+		{
+			indexes = indexClassFiles("");
+			prefixIndexes.invalidateAll();
+		}
+		return indexes;
+	}
+	
+	private BytecodeIndexes indexClassFiles(String packagePrefix) throws IOException
+	{
+		final long start = Instrumentation.start();
+		final TypeHierarchy.Builder typeHierarchyBuilder = new TypeHierarchy.Builder();
+		final MethodAnnotationIndex.Builder methodAnnotationIndexBuilder = new MethodAnnotationIndex.Builder();
+		ClassFileIndexer.index(this, packagePrefix, typeHierarchyBuilder, methodAnnotationIndexBuilder);
+		final BytecodeIndexes bytecodeIndexes = new BytecodeIndexes(typeHierarchyBuilder.build(), methodAnnotationIndexBuilder.build());
+		Instrumentation.classFilesIndexed(packagePrefix.isEmpty() ? classes.size() : getClasses(packagePrefix).size(), start);
+		return bytecodeIndexes;
+	}
+	
+	/**
+	 * The bytecode indexes built together by a single pass over the class files.
+	 */
+	private static final class BytecodeIndexes
+	{
+		final TypeHierarchy typeHierarchy;
+		final MethodAnnotationIndex methodAnnotationIndex;
+		
+		BytecodeIndexes(TypeHierarchy typeHierarchy, MethodAnnotationIndex methodAnnotationIndex)
+		{
+			this.typeHierarchy = typeHierarchy;
+			this.methodAnnotationIndex = methodAnnotationIndex;
+		}
+	}
+}
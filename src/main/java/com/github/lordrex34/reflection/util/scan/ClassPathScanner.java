@@ -0,0 +1,477 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.scan;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.lordrex34.reflection.util.instrument.Instrumentation;
+import com.github.lordrex34.reflection.util.jar.JarLocation;
+import com.github.lordrex34.reflection.util.jar.ZipCentralDirectory;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Scans the classpath roots of a class loader for classes, following the rules of {@link com.google.common.reflect.ClassPath}:
+ * parent class loaders first, {@code Class-Path} manifest entries before the JAR referencing them, and every canonical file scanned only once.<br>
+ * The roots can be scanned in parallel, one task per root, while the result is always merged in classpath order, so it is the same as the serial one.<br>
+ * JAR files are enumerated through their memory-mapped {@link ZipCentralDirectory}, the JAR files nested inside a fat JAR are read in place, or inflated into memory when compressed.<br>
+ * Optionally, the JAR roots are kept in a snapshot file between runs, only the JAR files which changed since the previous run are scanned again.
+ * @author lord_rex
+ */
+public final class ClassPathScanner
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(ClassPathScanner.class);
+	private static final String CLASS_FILE_EXTENSION = ".class";
+	
+	private final Executor executor;
+	private final ScanSnapshot snapshot;
+	private final ConcurrentMap<JarLocation, CompletableFuture<RootContent>> contents = new ConcurrentHashMap<>();
+	private final ConcurrentMap<JarLocation, ScanSnapshot.Root> snapshotRoots = new ConcurrentHashMap<>();
+	private volatile boolean snapshotChanged;
+	
+	private ClassPathScanner(Executor executor, ScanSnapshot snapshot)
+	{
+		this.executor = executor;
+		this.snapshot = snapshot;
+	}
+	
+	/**
+	 * Scans the classpath of the class loader on the calling thread.
+	 * @param classLoader the class loader
+	 * @return the scan result
+	 * @throws IOException if a root cannot be scanned
+	 */
+	public static ClassPathScan scan(ClassLoader classLoader) throws IOException
+	{
+		return scan(classLoader, MoreExecutors.directExecutor());
+	}
+	
+	/**
+	 * Scans the classpath of the class loader, each root being a separate task of the executor. The calling thread waits for the tasks and merges their results.
+	 * @param classLoader the class loader
+	 * @param executor the executor of the root scans, such as a {@link java.util.concurrent.ForkJoinPool}
+	 * @return the scan result
+	 * @throws IOException if a root cannot be scanned
+	 */
+	public static ClassPathScan scan(ClassLoader classLoader, Executor executor) throws IOException
+	{
+		return scan(classLoader, executor, null);
+	}
+	
+	/**
+	 * Scans the classpath of the class loader like {@link #scan(ClassLoader, Executor)}, reusing the snapshot of the previous run kept inside the directory.<br>
+	 * Only the JAR roots whose length or modification time changed are scanned again. Their class files are parsed once the scan is done, one task of the executor per root, so that the
+	 * bytecode queries of the upcoming runs do not read them at all. The queries of this run use a parsed root as soon as its task is done, the snapshot is rewritten after the last one.
+	 * A snapshot which cannot be written is only logged.
+	 * @param classLoader the class loader
+	 * @param executor the executor of the root scans
+	 * @param snapshotDirectory the directory of the snapshot files, {@code null} to scan without a snapshot
+	 * @return the scan result
+	 * @throws IOException if a root cannot be scanned
+	 */
+	public static ClassPathScan scan(ClassLoader classLoader, Executor executor, File snapshotDirectory) throws IOException
+	{
+		final long start = Instrumentation.start();
+		final List<ClassPathRoot> roots = ClassPathRoots.of(classLoader);
+		final ClassPathScan scan;
+		if (snapshotDirectory == null)
+		{
+			scan = new ClassPathScanner(executor, null).run(roots);
+		}
+		else
+		{
+			final File snapshotFile = ScanSnapshot.fileOf(snapshotDirectory, roots);
+			final ClassPathScanner scanner = new ClassPathScanner(executor, ScanSnapshot.read(snapshotFile));
+			scan = scanner.run(roots);
+			scanner.writeSnapshot(snapshotFile, scan);
+		}
+		Instrumentation.classPathScanned(classLoader, scan.getRoots().size(), scan.getClasses().size(), start);
+		return scan;
+	}
+	
+	private ClassPathScan run(List<ClassPathRoot> roots) throws IOException
+	{
+		for (ClassPathRoot root : roots)
+		{
+			submit(canonical(root.getFile(), root.getEntryName()));
+		}
+		
+		final Set<JarLocation> scannedLocations = new HashSet<>();
+		final List<ScannedRoot> scannedRoots = new ArrayList<>();
+		for (ClassPathRoot root : roots)
+		{
+			merge(root.getFile(), root.getEntryName(), root.getClassLoader(), scannedLocations, scannedRoots);
+		}
+		return new ClassPathScan(scannedRoots);
+	}
+	
+	private void merge(File file, String entryName, ClassLoader classLoader, Set<JarLocation> scannedLocations, List<ScannedRoot> scannedRoots) throws IOException
+	{
+		final JarLocation location = canonical(file, entryName);
+		if (!scannedLocations.add(location))
+		{
+			return;
+		}
+		
+		final RootContent content = join(submit(location));
+		for (File classPathFile : content.manifestClassPath)
+		{
+			merge(classPathFile, null, classLoader, scannedLocations, scannedRoots);
+		}
+		
+		// empty directories are kept, so that a ClassPathWatcher can fill them later
+		if (!content.classNames.isEmpty() || (!location.isNested() && location.getFile().isDirectory()))
+		{
+			scannedRoots.add(new ScannedRoot(location.getFile(), location.getEntryName(), classLoader, content.classNames, content.section));
+		}
+	}
+	
+	private static JarLocation canonical(File file, String entryName) throws IOException
+	{
+		return new JarLocation(file.getCanonicalFile(), entryName);
+	}
+	
+	private CompletableFuture<RootContent> submit(JarLocation location)
+	{
+		final CompletableFuture<RootContent> future = contents.get(location);
+		if (future != null)
+		{
+			return future;
+		}
+		
+		final CompletableFuture<RootContent> newFuture = new CompletableFuture<>();
+		final CompletableFuture<RootContent> existingFuture = contents.putIfAbsent(location, newFuture);
+		if (existingFuture != null)
+		{
+			return existingFuture;
+		}
+		
+		executor.execute(() ->
+		{
+			try
+			{
+				newFuture.complete(scanLocation(location));
+			}
+			catch (Throwable t)
+			{
+				newFuture.completeExceptionally(t);
+			}
+		});
+		return newFuture;
+	}
+	
+	private static RootContent join(CompletableFuture<RootContent> future) throws IOException
+	{
+		try
+		{
+			return future.join();
+		}
+		catch (CompletionException e)
+		{
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+			{
+				throw (IOException) cause;
+			}
+			if (cause instanceof UncheckedIOException)
+			{
+				throw ((UncheckedIOException) cause).getCause();
+			}
+			throw e;
+		}
+	}
+	
+	private RootContent scanLocation(JarLocation location) throws IOException
+	{
+		final File file = location.getFile();
+		if ((snapshot == null) || !file.isFile())
+		{
+			return scanFiles(location);
+		}
+		
+		// the fingerprint is taken first, a JAR file replaced during the scan is scanned again by the next run
+		final long length = file.length();
+		final long lastModified = file.lastModified();
+		RootContent content = snapshot.get(location, length, lastModified);
+		if (content != null)
+		{
+			for (File classPathFile : content.manifestClassPath)
+			{
+				prefetch(classPathFile);
+			}
+		}
+		else
+		{
+			content = scanFiles(location);
+			snapshotChanged = true;
+		}
+		snapshotRoots.put(location, new ScanSnapshot.Root(length, lastModified, content));
+		return content;
+	}
+	
+	private RootContent scanFiles(JarLocation location) throws IOException
+	{
+		final long start = Instrumentation.start();
+		final RootContent content = location.isNested() ? scanNestedRoot(location) : scanRoot(location.getFile());
+		Instrumentation.rootScanned(location.getFile(), content.classNames.size(), start);
+		return content;
+	}
+	
+	private void writeSnapshot(File snapshotFile, ClassPathScan scan)
+	{
+		if (!snapshotChanged && snapshot.hasRoots(snapshotRoots.keySet()))
+		{
+			return;
+		}
+		
+		final Map<JarLocation, ScannedRoot> scannedRoots = new HashMap<>();
+		for (ScannedRoot scannedRoot : scan.getRoots())
+		{
+			scannedRoots.put(scannedRoot.getLocation(), scannedRoot);
+		}
+		
+		final Map<JarLocation, CompletableFuture<ScanSnapshot.Root>> roots = new LinkedHashMap<>();
+		//@formatter:off
+		snapshotRoots.entrySet().stream()
+			.sorted(Comparator.comparing(entry -> entry.getKey().toString()))
+			.forEachOrdered(entry -> roots.put(entry.getKey(), parse(entry.getKey(), entry.getValue(), scannedRoots.get(entry.getKey()))));
+		//@formatter:on
+		CompletableFuture.allOf(roots.values().toArray(new CompletableFuture<?>[roots.size()])).whenComplete((result, t) ->
+		{
+			if (t != null)
+			{
+				LOGGER.warn("Cannot write scan snapshot {}.", snapshotFile, t);
+				return;
+			}
+			
+			final Map<JarLocation, ScanSnapshot.Root> parsedRoots = new LinkedHashMap<>();
+			for (Map.Entry<JarLocation, CompletableFuture<ScanSnapshot.Root>> entry : roots.entrySet())
+			{
+				parsedRoots.put(entry.getKey(), entry.getValue().join());
+			}
+			try
+			{
+				ScanSnapshot.write(snapshotFile, parsedRoots);
+			}
+			catch (IOException e)
+			{
+				LOGGER.warn("Cannot write scan snapshot {}.", snapshotFile, e);
+			}
+		});
+	}
+	
+	/**
+	 * Parses the class files of a freshly scanned root as a task of the executor, the stored roots are kept as they are.
+	 * @param location the location of the root
+	 * @param root the root to be written
+	 * @param scannedRoot the scanned root of the location, receiving the parsed section, {@code null} if the root holds no class
+	 * @return the root along with its section
+	 */
+	private CompletableFuture<ScanSnapshot.Root> parse(JarLocation location, ScanSnapshot.Root root, ScannedRoot scannedRoot)
+	{
+		if (root.content.section != null)
+		{
+			return CompletableFuture.completedFuture(root);
+		}
+		
+		final CompletableFuture<ScanSnapshot.Root> future = new CompletableFuture<>();
+		executor.execute(() ->
+		{
+			try
+			{
+				final ScanSnapshot.Section section = ScanSnapshot.parse(location, root.content);
+				if (scannedRoot != null)
+				{
+					scannedRoot.setSection(section);
+				}
+				future.complete(new ScanSnapshot.Root(root.length, root.lastModified, new RootContent(root.content.manifestClassPath, root.content.classNames, section)));
+			}
+			catch (Throwable t)
+			{
+				future.completeExceptionally(t);
+			}
+		});
+		return future;
+	}
+	
+	private RootContent scanRoot(File file) throws IOException
+	{
+		if (!file.exists())
+		{
+			return RootContent.EMPTY;
+		}
+		
+		final List<String> classNames = new ArrayList<>();
+		if (file.isDirectory())
+		{
+			final Set<File> currentPath = new HashSet<>();
+			currentPath.add(file);
+			scanDirectory(file, "", currentPath, classNames);
+			return new RootContent(Collections.emptyList(), classNames);
+		}
+		
+		final ZipCentralDirectory centralDirectory;
+		try
+		{
+			centralDirectory = ZipCentralDirectory.open(file);
+		}
+		catch (IOException e)
+		{
+			return RootContent.EMPTY; // not a JAR file
+		}
+		
+		List<File> manifestClassPath;
+		try
+		{
+			manifestClassPath = ClassPathRoots.getManifestClassPath(file, centralDirectory.getManifest());
+		}
+		catch (IOException e)
+		{
+			// the classes of the root are still listed, only its Class-Path references are lost
+			LOGGER.warn("Cannot read the manifest of {}.", file, e);
+			manifestClassPath = Collections.emptyList();
+		}
+		for (File classPathFile : manifestClassPath)
+		{
+			prefetch(classPathFile);
+		}
+		
+		centralDirectory.forEachEntryName(CLASS_FILE_EXTENSION, resourceName -> addClassName(resourceName, classNames));
+		return new RootContent(manifestClassPath, classNames);
+	}
+	
+	private static RootContent scanNestedRoot(JarLocation location) throws IOException
+	{
+		final ZipCentralDirectory centralDirectory;
+		try
+		{
+			centralDirectory = location.open();
+		}
+		catch (IOException e)
+		{
+			return RootContent.EMPTY; // missing or not a JAR file
+		}
+		
+		final List<String> classNames = new ArrayList<>();
+		centralDirectory.forEachEntryName(CLASS_FILE_EXTENSION, resourceName -> addClassName(resourceName, classNames));
+		return new RootContent(Collections.emptyList(), classNames);
+	}
+	
+	/**
+	 * Starts scanning a root referenced by a manifest ahead of the merge, which will need it later.
+	 * @param file the referenced file
+	 */
+	private void prefetch(File file)
+	{
+		try
+		{
+			submit(canonical(file, null));
+		}
+		catch (IOException e)
+		{
+			// ignore, the merge reports it
+		}
+	}
+	
+	private static void scanDirectory(File directory, String packagePrefix, Set<File> currentPath, List<String> classNames) throws IOException
+	{
+		final File[] files = directory.listFiles();
+		if (files == null)
+		{
+			return; // cannot be read
+		}
+		
+		for (File file : files)
+		{
+			final String name = file.getName();
+			if (file.isDirectory())
+			{
+				final File canonicalDirectory = file.getCanonicalFile();
+				if (currentPath.add(canonicalDirectory))
+				{
+					scanDirectory(canonicalDirectory, packagePrefix + name + "/", currentPath, classNames);
+					currentPath.remove(canonicalDirectory);
+				}
+			}
+			else
+			{
+				addClassName(packagePrefix + name, classNames);
+			}
+		}
+	}
+	
+	private static void addClassName(String resourceName, List<String> classNames)
+	{
+		if (resourceName.endsWith(CLASS_FILE_EXTENSION))
+		{
+			classNames.add(toClassName(resourceName));
+		}
+	}
+	
+	private static String toClassName(String resourceName)
+	{
+		return resourceName.substring(0, resourceName.length() - CLASS_FILE_EXTENSION.length()).replace('/', '.');
+	}
+	
+	/**
+	 * The content of a single classpath root.
+	 */
+	static final class RootContent
+	{
+		static final RootContent EMPTY = new RootContent(Collections.emptyList(), Collections.emptyList());
+		
+		final List<File> manifestClassPath;
+		final List<String> classNames;
+		/** The stored section holding the parsed class files, {@code null} unless the root has been read from a snapshot or parsed for one. */
+		final ScanSnapshot.Section section;
+		
+		RootContent(List<File> manifestClassPath, List<String> classNames)
+		{
+			this(manifestClassPath, classNames, null);
+		}
+		
+		RootContent(List<File> manifestClassPath, List<String> classNames, ScanSnapshot.Section section)
+		{
+			this.manifestClassPath = manifestClassPath;
+			this.classNames = classNames;
+			this.section = section;
+		}
+	}
+}
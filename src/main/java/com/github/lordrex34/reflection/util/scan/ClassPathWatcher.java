@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.scan;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the directory roots of a scanned classpath through a {@link WatchService} and reports the added, removed and modified class files incrementally.<br>
+ * Events are collected in short batches, each batch results in one {@link ClassPathChange} per changed root. The changes are passed to the updater first, then to the listeners, all on the watcher thread.
+ * JAR roots are not watched.
+ * @author lord_rex
+ */
+public final class ClassPathWatcher implements Closeable
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(ClassPathWatcher.class);
+	
+	private static final String CLASS_FILE_EXTENSION = ".class";
+	private static final long BATCH_DELAY_MILLIS = 50;
+	
+	private final WatchService watchService;
+	private final Map<WatchKey, Path> rootByKey = new HashMap<>();
+	private final Map<Path, Set<String>> classNamesByRoot = new LinkedHashMap<>();
+	private final Consumer<ClassPathChange> updater;
+	private final List<ClassPathListener> listeners = new CopyOnWriteArrayList<>();
+	private final Thread thread;
+	
+	/**
+	 * Starts watching the directory roots, most users want {@code ClassPathUtil.watch(ClassLoader)} instead.
+	 * @param roots the scanned roots, JAR roots are skipped
+	 * @param updater receives every change before the listeners, used to patch the cached scan
+	 * @throws IOException if the watch service cannot be created or a directory cannot be registered
+	 */
+	public ClassPathWatcher(Collection<ScannedRoot> roots, Consumer<ClassPathChange> updater) throws IOException
+	{
+		this.updater = updater;
+		this.watchService = FileSystems.getDefault().newWatchService();
+		try
+		{
+			for (ScannedRoot root : roots)
+			{
+				if (root.getFile().isDirectory())
+				{
+					final Path rootPath = root.getFile().toPath();
+					classNamesByRoot.put(rootPath, new HashSet<>(root.getClassNames()));
+					register(rootPath, rootPath);
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			watchService.close();
+			throw e;
+		}
+		
+		thread = new Thread(this::run, "ClassPathWatcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Registers a listener of the upcoming changes.
+	 * @param listener the listener
+	 */
+	public void addListener(ClassPathListener listener)
+	{
+		listeners.add(listener);
+	}
+	
+	/**
+	 * Removes a listener.
+	 * @param listener the listener
+	 */
+	public void removeListener(ClassPathListener listener)
+	{
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Stops watching. The cached scan keeps its last state.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		watchService.close();
+	}
+	
+	private void register(Path root, Path directory) throws IOException
+	{
+		Files.walkFileTree(directory, new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException
+			{
+				rootByKey.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), root);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+	
+	private void run()
+	{
+		final Map<Path, Delta> deltas = new LinkedHashMap<>();
+		try
+		{
+			// catch up with the changes made between the scan and the registration
+			for (Path root : classNamesByRoot.keySet())
+			{
+				resync(root, deltas);
+			}
+			publish(deltas);
+			
+			while (true)
+			{
+				WatchKey key = watchService.take();
+				do
+				{
+					handle(key, deltas);
+				}
+				while ((key = watchService.poll(BATCH_DELAY_MILLIS, TimeUnit.MILLISECONDS)) != null);
+				publish(deltas);
+			}
+		}
+		catch (ClosedWatchServiceException | InterruptedException e)
+		{
+			// closed
+		}
+	}
+	
+	private void handle(WatchKey key, Map<Path, Delta> deltas)
+	{
+		final Path root = rootByKey.get(key);
+		if (root == null)
+		{
+			key.cancel();
+			return;
+		}
+		
+		final Path directory = (Path) key.watchable();
+		final Delta delta = deltas.computeIfAbsent(root, k -> new Delta());
+		final Set<String> classNames = classNamesByRoot.get(root);
+		for (WatchEvent<?> event : key.pollEvents())
+		{
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+			{
+				resync(root, deltas);
+				continue;
+			}
+			
+			final Path path = directory.resolve((Path) event.context());
+			final String fileName = path.getFileName().toString();
+			if (fileName.endsWith(CLASS_FILE_EXTENSION))
+			{
+				final String className = toClassName(root, path);
+				if ((event.kind() != StandardWatchEventKinds.ENTRY_DELETE) && Files.isRegularFile(path))
+				{
+					delta.update(className, classNames.add(className));
+				}
+				else if (classNames.remove(className))
+				{
+					delta.remove(className);
+				}
+			}
+			else if ((event.kind() == StandardWatchEventKinds.ENTRY_DELETE) || Files.isDirectory(path))
+			{
+				// a package appeared or disappeared, walk the whole root
+				try
+				{
+					if (Files.isDirectory(path))
+					{
+						register(root, path);
+					}
+				}
+				catch (IOException e)
+				{
+					LOGGER.warn("Cannot watch directory {}.", path, e);
+				}
+				resync(root, deltas);
+			}
+		}
+		
+		if (!key.reset())
+		{
+			rootByKey.remove(key);
+		}
+	}
+	
+	/**
+	 * Walks the root and records the difference between its class files and the known class names.
+	 * @param root the root
+	 * @param deltas the deltas of the current batch
+	 */
+	private void resync(Path root, Map<Path, Delta> deltas)
+	{
+		final Set<String> actualClassNames = new HashSet<>();
+		try
+		{
+			Files.walkFileTree(root, new SimpleFileVisitor<Path>()
+			{
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+				{
+					if (file.getFileName().toString().endsWith(CLASS_FILE_EXTENSION))
+					{
+						actualClassNames.add(toClassName(root, file));
+					}
+					return FileVisitResult.CONTINUE;
+				}
+				
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException exc)
+				{
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+		catch (IOException e)
+		{
+			LOGGER.warn("Cannot walk classpath root {}.", root, e);
+			return;
+		}
+		
+		final Delta delta = deltas.computeIfAbsent(root, k -> new Delta());
+		final Set<String> classNames = classNamesByRoot.get(root);
+		for (String className : actualClassNames)
+		{
+			if (classNames.add(className))
+			{
+				delta.update(className, true);
+			}
+		}
+		for (String className : new HashSet<>(classNames))
+		{
+			if (!actualClassNames.contains(className))
+			{
+				classNames.remove(className);
+				delta.remove(className);
+			}
+		}
+	}
+	
+	private void publish(Map<Path, Delta> deltas)
+	{
+		for (Map.Entry<Path, Delta> entry : deltas.entrySet())
+		{
+			final Delta delta = entry.getValue();
+			final ClassPathChange change = new ClassPathChange(entry.getKey().toFile(), delta.added, delta.removed, delta.modified);
+			if (change.isEmpty())
+			{
+				continue;
+			}
+			
+			updater.accept(change);
+			for (ClassPathListener listener : listeners)
+			{
+				try
+				{
+					listener.onChange(change);
+				}
+				catch (RuntimeException e)
+				{
+					LOGGER.warn("Class path listener {} failed.", listener, e);
+				}
+			}
+		}
+		deltas.clear();
+	}
+	
+	private static String toClassName(Path root, Path classFile)
+	{
+		final String resourceName = root.relativize(classFile).toString().replace(File.separatorChar, '/');
+		return resourceName.substring(0, resourceName.length() - CLASS_FILE_EXTENSION.length()).replace('/', '.');
+	}
+	
+	/**
+	 * The changes of a single root within a batch.
+	 */
+	private static final class Delta
+	{
+		final Set<String> added = new LinkedHashSet<>();
+		final Set<String> removed = new LinkedHashSet<>();
+		final Set<String> modified = new LinkedHashSet<>();
+		
+		void update(String className, boolean isNew)
+		{
+			if (isNew)
+			{
+				if (removed.remove(className))
+				{
+					modified.add(className); // deleted and written again
+				}
+				else
+				{
+					added.add(className);
+				}
+			}
+			else if (!added.contains(className))
+			{
+				modified.add(className);
+			}
+		}
+		
+		void remove(String className)
+		{
+			modified.remove(className);
+			if (!added.remove(className))
+			{
+				removed.add(className);
+			}
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.scan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.lordrex34.reflection.util.classfile.ClassFileInfo;
+import com.github.lordrex34.reflection.util.classfile.MethodInfo;
+
+/**
+ * The runtime visible method annotations of the scanned classes, read from the {@code method_info} attributes of their class files without loading them.
+ * @author lord_rex
+ */
+public final class MethodAnnotationIndex
+{
+	private final Map<String, List<String>> classNamesByAnnotation;
+	private final Set<String> malformedClassNames;
+	
+	private MethodAnnotationIndex(Map<String, List<String>> classNamesByAnnotation, Set<String> malformedClassNames)
+	{
+		this.classNamesByAnnotation = classNamesByAnnotation;
+		this.malformedClassNames = Collections.unmodifiableSet(malformedClassNames);
+	}
+	
+	/**
+	 * Gets the binary names of the classes declaring at least one method annotated with the annotation, in scan order.
+	 * @param annotationName the binary name of the annotation
+	 * @return an unmodifiable list of class names
+	 */
+	public List<String> getDeclaringClassNames(String annotationName)
+	{
+		final List<String> classNames = classNamesByAnnotation.get(annotationName);
+		return classNames == null ? Collections.emptyList() : Collections.unmodifiableList(classNames);
+	}
+	
+	/**
+	 * Gets the binary names of the scanned classes whose class file cannot be parsed, any of them may declare annotated methods.
+	 * @return an unmodifiable set of class names
+	 */
+	public Set<String> getMalformedClassNames()
+	{
+		return malformedClassNames;
+	}
+	
+	/**
+	 * Collects the method annotations of the visited classes.
+	 */
+	static final class Builder implements ClassFileIndexer.Visitor
+	{
+		private final Map<String, List<String>> classNamesByAnnotation = new HashMap<>();
+		private final Set<String> malformedClassNames = new LinkedHashSet<>();
+		
+		@Override
+		public void visit(ScannedRoot root, ClassFileInfo classFileInfo)
+		{
+			final Set<String> annotationNames = new LinkedHashSet<>();
+			for (MethodInfo method : classFileInfo.getAnnotatedMethods())
+			{
+				annotationNames.addAll(method.getAnnotationNames());
+			}
+			for (String annotationName : annotationNames)
+			{
+				classNamesByAnnotation.computeIfAbsent(annotationName, k -> new ArrayList<>()).add(classFileInfo.getName());
+			}
+		}
+		
+		@Override
+		public void visitMalformed(String className)
+		{
+			malformedClassNames.add(className);
+		}
+		
+		MethodAnnotationIndex build()
+		{
+			return new MethodAnnotationIndex(classNamesByAnnotation, malformedClassNames);
+		}
+	}
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.scan;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
+
+/**
+ * Scans the named modules of the boot layer on Java 9 and newer, the JDK modules as well as the modules of the module path.<br>
+ * The packages of each module are known from its descriptor, so a prefix query lists only the packages that may match, inside the modules holding them. The modules of the run-time image
+ * are listed through the {@code jrt:/} file system one package directory at a time, the other modules through their {@code ModuleReader}.<br>
+ * The module API is reached through reflection, on Java 8 there are no modules to scan.
+ * @author lord_rex
+ */
+public final class ModuleScanner
+{
+	private static final String CLASS_FILE_EXTENSION = ".class";
+	
+	private static final Method OPEN;
+	private static final Method LIST;
+	private static final List<ScannedModule> BOOT_MODULES;
+	
+	static
+	{
+		Method open = null;
+		Method list = null;
+		List<ScannedModule> bootModules = Collections.emptyList();
+		try
+		{
+			final Class<?> referenceClass = Class.forName("java.lang.module.ModuleReference");
+			open = referenceClass.getMethod("open");
+			list = Class.forName("java.lang.module.ModuleReader").getMethod("list");
+			bootModules = readBootModules(referenceClass);
+		}
+		catch (ClassNotFoundException e)
+		{
+			// Java 8, no modules
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new ExceptionInInitializerError(e);
+		}
+		OPEN = open;
+		LIST = list;
+		BOOT_MODULES = bootModules;
+	}
+	
+	private ModuleScanner()
+	{
+		// utility class
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static List<ScannedModule> readBootModules(Class<?> referenceClass) throws ReflectiveOperationException
+	{
+		final Class<?> layerClass = Class.forName("java.lang.ModuleLayer");
+		final Class<?> resolvedModuleClass = Class.forName("java.lang.module.ResolvedModule");
+		final Method name = resolvedModuleClass.getMethod("name");
+		final Method reference = resolvedModuleClass.getMethod("reference");
+		final Method descriptor = referenceClass.getMethod("descriptor");
+		final Method location = referenceClass.getMethod("location");
+		final Method packages = Class.forName("java.lang.module.ModuleDescriptor").getMethod("packages");
+		final Method findLoader = layerClass.getMethod("findLoader", String.class);
+		
+		final Object layer = layerClass.getMethod("boot").invoke(null);
+		final Object configuration = layerClass.getMethod("configuration").invoke(layer);
+		final List<ScannedModule> modules = new ArrayList<>();
+		for (Object resolvedModule : (Set<?>) Class.forName("java.lang.module.Configuration").getMethod("modules").invoke(configuration))
+		{
+			final String moduleName = (String) name.invoke(resolvedModule);
+			final Object moduleReference = reference.invoke(resolvedModule);
+			final Set<String> modulePackages = (Set<String>) packages.invoke(descriptor.invoke(moduleReference));
+			final Optional<URI> moduleLocation = (Optional<URI>) location.invoke(moduleReference);
+			final ClassLoader classLoader = (ClassLoader) findLoader.invoke(layer, moduleName);
+			modules.add(new ScannedModule(moduleName, moduleLocation.orElse(null), classLoader, modulePackages, moduleReference));
+		}
+		modules.sort(Comparator.comparing(ScannedModule::getName));
+		return Collections.unmodifiableList(modules);
+	}
+	
+	/**
+	 * Checks whether the running JVM has modules.
+	 * @return {@code true} on Java 9 and newer
+	 */
+	public static boolean isSupported()
+	{
+		return OPEN != null;
+	}
+	
+	/**
+	 * Gets the named modules of the boot layer, sorted by name.
+	 * @return an unmodifiable list of modules, empty on Java 8
+	 */
+	public static List<ScannedModule> getBootModules()
+	{
+		return BOOT_MODULES;
+	}
+	
+	/**
+	 * Gets the modules of the boot layer which may hold classes starting with the prefix.
+	 * @param packagePrefix the class name prefix, such as a package
+	 * @return the matching modules, sorted by name
+	 */
+	public static List<ScannedModule> getModules(String packagePrefix)
+	{
+		final List<ScannedModule> modules = new ArrayList<>();
+		for (ScannedModule module : BOOT_MODULES)
+		{
+			if (module.containsPackagePrefix(packagePrefix))
+			{
+				modules.add(module);
+			}
+		}
+		return modules;
+	}
+	
+	/**
+	 * Gets the names of the classes starting with the prefix, from the modules of the boot layer which may hold them.
+	 * @param packagePrefix the class name prefix, such as a package
+	 * @return the class names per module, the modules and the class names are sorted by name
+	 * @throws IOException if a module cannot be read
+	 */
+	public static ListMultimap<ScannedModule, String> getClassNames(String packagePrefix) throws IOException
+	{
+		final ImmutableListMultimap.Builder<ScannedModule, String> classNames = ImmutableListMultimap.builder();
+		for (ScannedModule module : getModules(packagePrefix))
+		{
+			classNames.putAll(module, getClassNames(module, packagePrefix));
+		}
+		return classNames.build();
+	}
+	
+	/**
+	 * Gets the names of the classes of the module starting with the prefix. Only the packages which may match are listed.
+	 * @param module the module
+	 * @param packagePrefix the class name prefix, such as a package
+	 * @return the sorted class names
+	 * @throws IOException if the module cannot be read
+	 */
+	public static List<String> getClassNames(ScannedModule module, String packagePrefix) throws IOException
+	{
+		final List<String> classNames = new ArrayList<>();
+		if (module.isSystem())
+		{
+			final FileSystem fileSystem = FileSystems.getFileSystem(URI.create("jrt:/"));
+			for (String packageName : module.getPackages())
+			{
+				if (ScannedModule.matches(packageName, packagePrefix))
+				{
+					final Path packageDirectory = fileSystem.getPath("/modules", module.getName(), packageName.replace('.', '/'));
+					try (DirectoryStream<Path> files = Files.newDirectoryStream(packageDirectory, "*" + CLASS_FILE_EXTENSION))
+					{
+						for (Path file : files)
+						{
+							addClassName(packageName + "." + file.getFileName(), packagePrefix, classNames);
+						}
+					}
+				}
+			}
+		}
+		else
+		{
+			try (Closeable reader = (Closeable) invoke(OPEN, module.reference);
+				Stream<?> resourceNames = (Stream<?>) invoke(LIST, reader))
+			{
+				for (Iterator<?> it = resourceNames.iterator(); it.hasNext();)
+				{
+					final String resourceName = (String) it.next();
+					final int lastSlash = resourceName.lastIndexOf('/');
+					if ((lastSlash > 0) && module.getPackages().contains(resourceName.substring(0, lastSlash).replace('/', '.')))
+					{
+						addClassName(resourceName.replace('/', '.'), packagePrefix, classNames);
+					}
+				}
+			}
+		}
+		Collections.sort(classNames);
+		return classNames;
+	}
+	
+	private static void addClassName(String fileName, String packagePrefix, List<String> classNames)
+	{
+		if (fileName.endsWith(CLASS_FILE_EXTENSION))
+		{
+			final String className = fileName.substring(0, fileName.length() - CLASS_FILE_EXTENSION.length());
+			if (className.startsWith(packagePrefix))
+			{
+				classNames.add(className);
+			}
+		}
+	}
+	
+	private static Object invoke(Method method, Object target) throws IOException
+	{
+		try
+		{
+			return method.invoke(target);
+		}
+		catch (InvocationTargetException e)
+		{
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+			{
+				throw (IOException) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+		catch (IllegalAccessException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.scan;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * An immutable index of values sorted by name, answering name prefix queries with a binary search.<br>
+ * A query costs {@code O(log n)} plus the number of matching values, the matches are returned as a view, no copy is made.
+ * @author lord_rex
+ * @param <T> the type of the indexed values
+ */
+final class PrefixIndex<T>
+{
+	private final String[] names;
+	private final List<T> values;
+	
+	@SuppressWarnings("unchecked")
+	PrefixIndex(Collection<T> values, Function<T, String> nameFunction)
+	{
+		final Object[] sortedValues = values.toArray();
+		Arrays.sort(sortedValues, Comparator.comparing(value -> nameFunction.apply((T) value)));
+		
+		this.names = new String[sortedValues.length];
+		for (int i = 0; i < sortedValues.length; i++)
+		{
+			names[i] = nameFunction.apply((T) sortedValues[i]);
+		}
+		this.values = (List<T>) Collections.unmodifiableList(Arrays.asList(sortedValues));
+	}
+	
+	/**
+	 * Gets the values whose name starts with the prefix, sorted by name.
+	 * @param prefix the name prefix
+	 * @return an unmodifiable view of the matching values
+	 */
+	List<T> get(String prefix)
+	{
+		final int from = lowerBound(prefix);
+		int to = from;
+		while ((to < names.length) && names[to].startsWith(prefix))
+		{
+			to++;
+		}
+		return values.subList(from, to);
+	}
+	
+	/**
+	 * Finds the first position whose name is not less than the key.
+	 * @param key the key
+	 * @return the position
+	 */
+	private int lowerBound(String key)
+	{
+		int low = 0;
+		int high = names.length;
+		while (low < high)
+		{
+			final int middle = (low + high) >>> 1;
+			if (names[middle].compareTo(key) < 0)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		return low;
+	}
+}
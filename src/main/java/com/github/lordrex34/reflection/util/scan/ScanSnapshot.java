@@ -0,0 +1,498 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.scan;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.lordrex34.reflection.util.classfile.ClassFileInfo;
+import com.github.lordrex34.reflection.util.classfile.ClassFileReader;
+import com.github.lordrex34.reflection.util.jar.JarLocation;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * A scan result persisted between runs, one file per classpath, holding the class names and the class file information of its JAR roots.<br>
+ * Every root is stored along with its fingerprint, the path, length and modification time of its (outer) JAR file. The fingerprints are read first, the class names of a root are decoded only
+ * when its fingerprint still matches, the other roots are scanned again. Directory roots are never stored, they change too often to be worth it.<br>
+ * The class file information of a root is decoded on the first query needing it, see {@link Section}. Each section is self-contained, so the unchanged roots are copied as they are when the
+ * snapshot is rewritten.
+ * <p>
+ * The file is read into memory at once and closed right away, it is never kept mapped or open, so that the next run can replace it even where an open file cannot be replaced, such as
+ * on Windows. The stored sections are copied out of it, the rest is dropped after the scan. It is laid out as follows, the names being indexes of the string table of their section:
+ * </p>
+ * <pre>
+ * int magic, int version, int rootCount
+ * rootCount times: UTF file, UTF entryName, long length, long lastModified, int sectionOffset, int sectionLength
+ * sections: int manifestClassPathCount, UTF file..., int stringCount, UTF string..., int classCount, int name..., int infoCount, (int name, ClassFileInfo)...
+ * </pre>
+ * @author lord_rex
+ */
+final class ScanSnapshot
+{
+	private static final int MAGIC = 0x52555353;
+	private static final int VERSION = 2;
+	private static final String CLASS_FILE_EXTENSION = ".class";
+	
+	/** The snapshot of a classpath without a snapshot file yet. */
+	static final ScanSnapshot EMPTY = new ScanSnapshot(null, 0, Collections.emptyMap());
+	
+	private final ByteBuffer buffer;
+	private final int dataPosition;
+	private final Map<JarLocation, Header> headers;
+	
+	private ScanSnapshot(ByteBuffer buffer, int dataPosition, Map<JarLocation, Header> headers)
+	{
+		this.buffer = buffer;
+		this.dataPosition = dataPosition;
+		this.headers = headers;
+	}
+	
+	/**
+	 * Gets the snapshot file of the classpath roots inside the directory. The file name is a hash of the roots, so each classpath has its own file.
+	 * @param directory the snapshot directory
+	 * @param roots the classpath roots
+	 * @return the snapshot file
+	 */
+	static File fileOf(File directory, List<ClassPathRoot> roots)
+	{
+		final Hasher hasher = Hashing.murmur3_128().newHasher();
+		for (ClassPathRoot root : roots)
+		{
+			hasher.putString(root.toString(), StandardCharsets.UTF_8).putChar(File.pathSeparatorChar);
+		}
+		return new File(directory, "scan-" + hasher.hash() + ".snapshot");
+	}
+	
+	/**
+	 * Reads the snapshot file and the fingerprints of its roots.
+	 * @param file the snapshot file
+	 * @return the snapshot, {@link #EMPTY} if the file does not exist or it cannot be read
+	 */
+	static ScanSnapshot read(File file)
+	{
+		if (!file.isFile())
+		{
+			return EMPTY;
+		}
+		
+		try
+		{
+			final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+			final ByteBuffer headerBuffer = buffer.duplicate();
+			final DataInputStream input = new DataInputStream(new ByteBufferInputStream(headerBuffer));
+			if ((input.readInt() != MAGIC) || (input.readInt() != VERSION))
+			{
+				return EMPTY;
+			}
+			
+			final int rootCount = input.readInt();
+			final Map<JarLocation, Header> headers = new HashMap<>();
+			for (int i = 0; i < rootCount; i++)
+			{
+				final File rootFile = new File(input.readUTF());
+				final String entryName = input.readUTF();
+				final long length = input.readLong();
+				final long lastModified = input.readLong();
+				headers.put(new JarLocation(rootFile, entryName.isEmpty() ? null : entryName), new Header(length, lastModified, input.readInt(), input.readInt()));
+			}
+			return new ScanSnapshot(buffer, headerBuffer.position(), headers);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			return EMPTY; // damaged or foreign file, it is rewritten after the scan
+		}
+	}
+	
+	/**
+	 * Gets the stored content of a root, if its fingerprint still matches. Only the class names are decoded.
+	 * @param location the canonical location of the root
+	 * @param length the current length of the (outer) JAR file
+	 * @param lastModified the current modification time of the (outer) JAR file
+	 * @return the stored content, or {@code null} if the root has to be scanned
+	 */
+	ClassPathScanner.RootContent get(JarLocation location, long length, long lastModified)
+	{
+		final Header header = headers.get(location);
+		if ((header == null) || (header.length != length) || (header.lastModified != lastModified))
+		{
+			return null;
+		}
+		
+		try
+		{
+			final int sectionPosition = dataPosition + header.sectionOffset;
+			final ByteBuffer section = ByteBuffer.wrap(Arrays.copyOfRange(buffer.array(), sectionPosition, sectionPosition + header.sectionLength));
+			final ByteBuffer cursor = section.duplicate();
+			final DataInputStream input = new DataInputStream(new ByteBufferInputStream(cursor));
+			final int manifestClassPathCount = input.readInt();
+			final List<File> manifestClassPath = new ArrayList<>(manifestClassPathCount);
+			for (int i = 0; i < manifestClassPathCount; i++)
+			{
+				manifestClassPath.add(new File(input.readUTF()));
+			}
+			
+			final String[] strings = new String[input.readInt()];
+			for (int i = 0; i < strings.length; i++)
+			{
+				strings[i] = input.readUTF();
+			}
+			
+			final int classCount = input.readInt();
+			final List<String> classNames = new ArrayList<>(classCount);
+			for (int i = 0; i < classCount; i++)
+			{
+				classNames.add(strings[input.readInt()]);
+			}
+			return new ClassPathScanner.RootContent(manifestClassPath, classNames, new Section(section, strings, cursor.position()));
+		}
+		catch (IOException | RuntimeException e)
+		{
+			return null; // damaged section, scan the root again
+		}
+	}
+	
+	/**
+	 * Checks whether the snapshot holds exactly the given roots.
+	 * @param locations the canonical locations of the roots
+	 * @return {@code true} if the same roots are stored
+	 */
+	boolean hasRoots(Collection<JarLocation> locations)
+	{
+		return headers.keySet().equals(new HashSet<>(locations));
+	}
+	
+	/**
+	 * Writes the snapshot file of the roots, replacing the previous one atomically where the file system allows it.<br>
+	 * The sections are copied as they are, the freshly scanned roots must have been parsed by {@link #parse(JarLocation, ClassPathScanner.RootContent)} first.
+	 * @param file the snapshot file
+	 * @param roots the contents of the JAR roots by their canonical location, with their fingerprints and sections
+	 * @throws IOException if the file cannot be written
+	 */
+	static void write(File file, Map<JarLocation, Root> roots) throws IOException
+	{
+		final ByteArrayOutputStream header = new ByteArrayOutputStream();
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		final DataOutputStream headerOutput = new DataOutputStream(header);
+		
+		headerOutput.writeInt(MAGIC);
+		headerOutput.writeInt(VERSION);
+		headerOutput.writeInt(roots.size());
+		for (Map.Entry<JarLocation, Root> entry : roots.entrySet())
+		{
+			final JarLocation location = entry.getKey();
+			final Root root = entry.getValue();
+			headerOutput.writeUTF(location.getFile().getPath());
+			headerOutput.writeUTF(location.isNested() ? location.getEntryName() : "");
+			headerOutput.writeLong(root.length);
+			headerOutput.writeLong(root.lastModified);
+			headerOutput.writeInt(data.size());
+			
+			final int sectionStart = data.size();
+			root.content.section.writeTo(data);
+			headerOutput.writeInt(data.size() - sectionStart);
+		}
+		
+		final Path target = file.toPath();
+		Files.createDirectories(target.getParent());
+		final Path temporary = Files.createTempFile(target.getParent(), file.getName(), ".tmp");
+		try
+		{
+			try (OutputStream output = Files.newOutputStream(temporary))
+			{
+				header.writeTo(output);
+				data.writeTo(output);
+			}
+			try
+			{
+				Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally
+		{
+			Files.deleteIfExists(temporary);
+		}
+	}
+	
+	/**
+	 * Parses the class files of a freshly scanned root into its section, reading them one at a time. The malformed class files are left out, the class loader decides about them.<br>
+	 * The returned section is already decoded, so that the bytecode queries of the current run use it as well.
+	 * @param location the location of the root
+	 * @param content the scanned content of the root
+	 * @return the section
+	 * @throws IOException if the JAR file cannot be read
+	 */
+	static Section parse(JarLocation location, ClassPathScanner.RootContent content) throws IOException
+	{
+		final Map<String, Integer> stringIndexes = new LinkedHashMap<>();
+		final Map<String, ClassFileInfo> classFileInfos = new HashMap<>(content.classNames.size() * 2);
+		final ByteArrayOutputStream infos = new ByteArrayOutputStream();
+		final DataOutputStream infoOutput = new DataOutputStream(infos);
+		final int[] infoCount = new int[1];
+		if (!content.classNames.isEmpty())
+		{
+			location.open().forEachEntry(CLASS_FILE_EXTENSION, (resourceName, classFile) ->
+			{
+				final ClassFileInfo classFileInfo;
+				try
+				{
+					classFileInfo = ClassFileReader.read(classFile);
+				}
+				catch (IOException e)
+				{
+					return; // malformed class file, left to the class loader
+				}
+				
+				final String className = toClassName(resourceName);
+				try
+				{
+					infoOutput.writeInt(indexOf(stringIndexes, className));
+					classFileInfo.write(infoOutput, name -> indexOf(stringIndexes, name));
+					infoCount[0]++;
+				}
+				catch (IOException e)
+				{
+					throw new IllegalStateException(e); // cannot happen, written to memory
+				}
+				classFileInfos.put(className, classFileInfo);
+			});
+		}
+		
+		final ByteArrayOutputStream section = new ByteArrayOutputStream();
+		final DataOutputStream sectionOutput = new DataOutputStream(section);
+		sectionOutput.writeInt(content.manifestClassPath.size());
+		for (File manifestFile : content.manifestClassPath)
+		{
+			sectionOutput.writeUTF(manifestFile.getPath());
+		}
+		
+		final int[] classNameIndexes = new int[content.classNames.size()];
+		for (int i = 0; i < classNameIndexes.length; i++)
+		{
+			classNameIndexes[i] = indexOf(stringIndexes, content.classNames.get(i));
+		}
+		sectionOutput.writeInt(stringIndexes.size());
+		for (String string : stringIndexes.keySet())
+		{
+			sectionOutput.writeUTF(string);
+		}
+		sectionOutput.writeInt(classNameIndexes.length);
+		for (int classNameIndex : classNameIndexes)
+		{
+			sectionOutput.writeInt(classNameIndex);
+		}
+		final int infoPosition = sectionOutput.size();
+		sectionOutput.writeInt(infoCount[0]);
+		infos.writeTo(sectionOutput);
+		sectionOutput.flush();
+		
+		final String[] strings = stringIndexes.keySet().toArray(new String[stringIndexes.size()]);
+		return new Section(ByteBuffer.wrap(section.toByteArray()), strings, infoPosition, classFileInfos);
+	}
+	
+	private static String toClassName(String resourceName)
+	{
+		return resourceName.substring(0, resourceName.length() - CLASS_FILE_EXTENSION.length()).replace('/', '.');
+	}
+	
+	private static int indexOf(Map<String, Integer> stringIndexes, String string)
+	{
+		Integer index = stringIndexes.get(string);
+		if (index == null)
+		{
+			index = stringIndexes.size();
+			stringIndexes.put(string, index);
+		}
+		return index;
+	}
+	
+	/**
+	 * The fingerprint and the position of a stored root.
+	 */
+	private static final class Header
+	{
+		final long length;
+		final long lastModified;
+		final int sectionOffset;
+		final int sectionLength;
+		
+		Header(long length, long lastModified, int sectionOffset, int sectionLength)
+		{
+			this.length = length;
+			this.lastModified = lastModified;
+			this.sectionOffset = sectionOffset;
+			this.sectionLength = sectionLength;
+		}
+	}
+	
+	/**
+	 * The stored section of a root, kept by its {@link ScannedRoot}.<br>
+	 * The class file information is decoded for the whole root on the first query, the roots which are never queried keep only their encoded section. A freshly parsed section is decoded
+	 * from the start.
+	 */
+	static final class Section
+	{
+		private final ByteBuffer buffer;
+		private final String[] strings;
+		private final int infoPosition;
+		private volatile Map<String, ClassFileInfo> classFileInfos;
+		
+		Section(ByteBuffer buffer, String[] strings, int infoPosition)
+		{
+			this(buffer, strings, infoPosition, null);
+		}
+		
+		Section(ByteBuffer buffer, String[] strings, int infoPosition, Map<String, ClassFileInfo> classFileInfos)
+		{
+			this.buffer = buffer;
+			this.strings = strings;
+			this.infoPosition = infoPosition;
+			this.classFileInfos = classFileInfos;
+		}
+		
+		/**
+		 * Gets the parsed class file of a class of this section.
+		 * @param className the binary name of the class
+		 * @return the class file information, or {@code null} if the class file is malformed or the section is damaged
+		 */
+		ClassFileInfo getClassFileInfo(String className)
+		{
+			Map<String, ClassFileInfo> infos = classFileInfos;
+			if (infos == null)
+			{
+				synchronized (this)
+				{
+					infos = classFileInfos;
+					if (infos == null)
+					{
+						infos = decode();
+						classFileInfos = infos;
+					}
+				}
+			}
+			return infos.get(className);
+		}
+		
+		private Map<String, ClassFileInfo> decode()
+		{
+			try
+			{
+				final ByteBuffer infoBuffer = buffer.duplicate();
+				((Buffer) infoBuffer).position(infoPosition); // links the Java 8 method when compiled by a newer JDK
+				final DataInputStream input = new DataInputStream(new ByteBufferInputStream(infoBuffer));
+				final int infoCount = input.readInt();
+				final Map<String, ClassFileInfo> infos = new HashMap<>(infoCount * 2);
+				for (int i = 0; i < infoCount; i++)
+				{
+					final String className = strings[input.readInt()];
+					infos.put(className, ClassFileInfo.read(input, index -> strings[index]));
+				}
+				return infos;
+			}
+			catch (IOException | RuntimeException e)
+			{
+				return Collections.emptyMap(); // damaged section, the class files are read again
+			}
+		}
+		
+		void writeTo(OutputStream output) throws IOException
+		{
+			final ByteBuffer content = buffer.duplicate();
+			final byte[] bytes = new byte[content.remaining()];
+			content.get(bytes);
+			output.write(bytes);
+		}
+	}
+	
+	/**
+	 * A root to be written, along with the fingerprint it has been scanned with.
+	 */
+	static final class Root
+	{
+		final long length;
+		final long lastModified;
+		final ClassPathScanner.RootContent content;
+		
+		Root(long length, long lastModified, ClassPathScanner.RootContent content)
+		{
+			this.length = length;
+			this.lastModified = lastModified;
+			this.content = content;
+		}
+	}
+	
+	/**
+	 * Reads a byte buffer as a stream, so that {@link DataInputStream} can decode it in place.
+	 */
+	private static final class ByteBufferInputStream extends InputStream
+	{
+		private final ByteBuffer buffer;
+		
+		ByteBufferInputStream(ByteBuffer buffer)
+		{
+			this.buffer = buffer;
+		}
+		
+		@Override
+		public int read()
+		{
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+		
+		@Override
+		public int read(byte[] bytes, int offset, int length)
+		{
+			if (!buffer.hasRemaining())
+			{
+				return -1;
+			}
+			final int count = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, count);
+			return count;
+		}
+	}
+}
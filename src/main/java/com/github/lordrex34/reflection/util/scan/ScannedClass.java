@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.scan;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.github.lordrex34.reflection.util.classfile.ClassFileInfo;
+import com.github.lordrex34.reflection.util.classfile.ClassFileReader;
+
+/**
+ * A class found by the {@link ClassPathScanner}, not loaded yet.
+ * @author lord_rex
+ */
+public final class ScannedClass
+{
+	private final String name;
+	private final ScannedRoot root;
+	
+	ScannedClass(String name, ScannedRoot root)
+	{
+		this.name = name;
+		this.root = root;
+	}
+	
+	/**
+	 * Gets the binary name of the class.
+	 * @return the class name
+	 */
+	public String getName()
+	{
+		return name;
+	}
+	
+	/**
+	 * Gets the classpath root where the class has been found.
+	 * @return the root
+	 */
+	public ScannedRoot getRoot()
+	{
+		return root;
+	}
+	
+	/**
+	 * Gets the class loader which loads the class.
+	 * @return the class loader
+	 */
+	public ClassLoader getClassLoader()
+	{
+		return root.getClassLoader();
+	}
+	
+	/**
+	 * Gets the name of the class file resource, such as {@code java/util/Map$Entry.class}.
+	 * @return the resource name
+	 */
+	public String getResourceName()
+	{
+		return name.replace('.', '/') + ".class";
+	}
+	
+	/**
+	 * Opens the class file through the class loader of the class.
+	 * @return a new stream of the class file
+	 * @throws IOException if the class file cannot be found or opened
+	 */
+	public InputStream openStream() throws IOException
+	{
+		final ClassLoader classLoader = getClassLoader();
+		final InputStream inputStream = classLoader == null ? null : classLoader.getResourceAsStream(getResourceName());
+		if (inputStream == null)
+		{
+			throw new IOException("Class file not found: " + getResourceName());
+		}
+		return inputStream;
+	}
+	
+	/**
+	 * Reads the class file of the class, unless its root keeps the parsed class file already, see {@link ScannedRoot#getClassFileInfo(String)}.
+	 * @return the class file information
+	 * @throws IOException if the class file cannot be read or it is malformed
+	 */
+	public ClassFileInfo readClassFileInfo() throws IOException
+	{
+		final ClassFileInfo classFileInfo = root.getClassFileInfo(name);
+		if (classFileInfo != null)
+		{
+			return classFileInfo;
+		}
+		
+		try (InputStream inputStream = openStream())
+		{
+			return ClassFileReader.read(inputStream);
+		}
+	}
+	
+	/**
+	 * Loads the class through the class loader of the class.
+	 * @return the loaded class
+	 * @throws ClassNotFoundException if the class cannot be found or its class loader has been collected
+	 */
+	public Class<?> load() throws ClassNotFoundException
+	{
+		final ClassLoader classLoader = getClassLoader();
+		if (classLoader == null)
+		{
+			throw new ClassNotFoundException(name);
+		}
+		return classLoader.loadClass(name);
+	}
+	
+	@Override
+	public String toString()
+	{
+		return name;
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.scan;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * A named module of the boot layer, found by the {@link ModuleScanner}.<br>
+ * Its packages come from the module descriptor, so they are known without reading the module content.
+ * @author lord_rex
+ */
+public final class ScannedModule
+{
+	private final String name;
+	private final URI location;
+	private final ClassLoader classLoader;
+	private final Set<String> packages;
+	final Object reference;
+	
+	ScannedModule(String name, URI location, ClassLoader classLoader, Set<String> packages, Object reference)
+	{
+		this.name = name;
+		this.location = location;
+		this.classLoader = classLoader;
+		this.packages = Collections.unmodifiableSet(packages);
+		this.reference = reference;
+	}
+	
+	/**
+	 * Gets the name of the module.
+	 * @return the module name
+	 */
+	public String getName()
+	{
+		return name;
+	}
+	
+	/**
+	 * Gets the location of the module content, such as {@code jrt:/java.base} or the JAR file of a module path entry.
+	 * @return the location, or {@code null} if it is unknown
+	 */
+	public URI getLocation()
+	{
+		return location;
+	}
+	
+	/**
+	 * Gets the class loader the module is defined to. The class loaders of the boot layer are never collected, so they are strongly referenced.
+	 * @return the class loader, {@code null} for the bootstrap class loader
+	 */
+	public ClassLoader getClassLoader()
+	{
+		return classLoader;
+	}
+	
+	/**
+	 * Gets the packages of the module.
+	 * @return an unmodifiable set of package names
+	 */
+	public Set<String> getPackages()
+	{
+		return packages;
+	}
+	
+	/**
+	 * Checks whether the module belongs to the run-time image, the {@code jrt:/} file system.
+	 * @return {@code true} for the modules of the JDK
+	 */
+	public boolean isSystem()
+	{
+		return (location != null) && "jrt".equals(location.getScheme());
+	}
+	
+	/**
+	 * Checks whether a class of the package may start with the prefix.
+	 * @param packageName the package name
+	 * @param packagePrefix the class name prefix, such as a package or a parent package
+	 * @return {@code true} if the package may hold matching classes
+	 */
+	static boolean matches(String packageName, String packagePrefix)
+	{
+		return packageName.startsWith(packagePrefix) || packagePrefix.startsWith(packageName + ".");
+	}
+	
+	/**
+	 * Checks whether the module has a package which may hold classes starting with the prefix.
+	 * @param packagePrefix the class name prefix
+	 * @return {@code true} if the module may hold matching classes
+	 */
+	public boolean containsPackagePrefix(String packagePrefix)
+	{
+		for (String packageName : packages)
+		{
+			if (matches(packageName, packagePrefix))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Loads a class of this module, without initializing it.
+	 * @param className the binary name of the class
+	 * @return the class
+	 * @throws ClassNotFoundException if the class cannot be found
+	 */
+	public Class<?> loadClass(String className) throws ClassNotFoundException
+	{
+		return Class.forName(className, false, classLoader);
+	}
+	
+	@Override
+	public String toString()
+	{
+		return name;
+	}
+}
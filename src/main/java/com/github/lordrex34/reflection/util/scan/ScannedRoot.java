@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.scan;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.github.lordrex34.reflection.util.classfile.ClassFileInfo;
+import com.github.lordrex34.reflection.util.jar.JarLocation;
+
+/**
+ * The scanned content of a single classpath root.<br>
+ * Along with the class names, the root keeps a summary of its packages, so that package prefix queries can skip the whole root without looking at its classes.
+ * @author lord_rex
+ */
+public final class ScannedRoot
+{
+	private final File file;
+	private final String entryName;
+	private final WeakReference<ClassLoader> classLoader;
+	private final List<String> classNames;
+	private final String[] packageNames;
+	private volatile ScanSnapshot.Section section;
+	
+	ScannedRoot(File file, ClassLoader classLoader, List<String> classNames)
+	{
+		this(file, null, classLoader, classNames);
+	}
+	
+	ScannedRoot(File file, String entryName, ClassLoader classLoader, List<String> classNames)
+	{
+		this(file, entryName, classLoader, classNames, null);
+	}
+	
+	ScannedRoot(File file, String entryName, ClassLoader classLoader, List<String> classNames, ScanSnapshot.Section section)
+	{
+		this.file = file;
+		this.entryName = entryName;
+		this.classLoader = new WeakReference<>(classLoader);
+		this.classNames = Collections.unmodifiableList(classNames);
+		this.packageNames = summarize(classNames);
+		this.section = section;
+	}
+	
+	private static String[] summarize(List<String> classNames)
+	{
+		final Set<String> packageNames = new TreeSet<>();
+		String lastPackageName = null;
+		for (String className : classNames)
+		{
+			final int index = Math.max(className.lastIndexOf('.'), 0);
+			// the classes of a package are usually listed together, skip the substring for them
+			if ((lastPackageName == null) || (lastPackageName.length() != index) || !className.startsWith(lastPackageName))
+			{
+				lastPackageName = className.substring(0, index);
+				packageNames.add(lastPackageName);
+			}
+		}
+		return packageNames.toArray(new String[packageNames.size()]);
+	}
+	
+	/**
+	 * Gets the canonical directory or JAR file of this root, the outer JAR file of a nested JAR file.
+	 * @return the file
+	 */
+	public File getFile()
+	{
+		return file;
+	}
+	
+	/**
+	 * Gets the entry name of the nested JAR file of this root inside the file.
+	 * @return the entry name, or {@code null} if the root is not nested
+	 */
+	public String getEntryName()
+	{
+		return entryName;
+	}
+	
+	/**
+	 * Gets the location of this root.
+	 * @return the location
+	 */
+	public JarLocation getLocation()
+	{
+		return new JarLocation(file, entryName);
+	}
+	
+	/**
+	 * Gets the class loader which loads the classes of this root.<br>
+	 * It is weakly referenced, so that cached scans do not keep discarded class loaders alive. It is never {@code null} while the class loader of the scan is reachable.
+	 * @return the class loader, or {@code null} if it has been collected
+	 */
+	public ClassLoader getClassLoader()
+	{
+		return classLoader.get();
+	}
+	
+	/**
+	 * Gets the binary names of the classes found in this root, in scan order.
+	 * @return an unmodifiable list of class names
+	 */
+	public List<String> getClassNames()
+	{
+		return classNames;
+	}
+	
+	/**
+	 * Gets the parsed class file of a class of this root, as kept by a scan snapshot, see {@link ClassPathScanner#scan(ClassLoader, java.util.concurrent.Executor, File)}.<br>
+	 * The class files stored for the root are decoded on the first call.
+	 * @param className the binary name of the class
+	 * @return the class file information, or {@code null} if the root is not kept in a snapshot (or not parsed for it yet) or the class file is malformed
+	 */
+	public ClassFileInfo getClassFileInfo(String className)
+	{
+		return section == null ? null : section.getClassFileInfo(className);
+	}
+	
+	/**
+	 * Checks whether the class files of this root have been parsed by the scan, so that they do not need to be read again.
+	 * @return {@code true} if the root is kept in a scan snapshot, or has been parsed for it
+	 */
+	boolean hasClassFileInfos()
+	{
+		return section != null;
+	}
+	
+	/**
+	 * Sets the section parsed for the snapshot, once the scan of this root is done.
+	 * @param section the parsed section
+	 */
+	void setSection(ScanSnapshot.Section section)
+	{
+		this.section = section;
+	}
+	
+	/**
+	 * Gets the names of the packages holding the classes of this root, the default package being the empty name.
+	 * @return an unmodifiable sorted list of package names
+	 */
+	public List<String> getPackageNames()
+	{
+		return Collections.unmodifiableList(Arrays.asList(packageNames));
+	}
+	
+	/**
+	 * Checks the package summary of this root against a package prefix.<br>
+	 * A {@code false} answer is final, a {@code true} answer only means that a package of this root is inside the prefix, or the prefix continues inside one of its packages.
+	 * @param packagePrefix the package where you seek
+	 * @return {@code true} if a class of this root may start with the prefix
+	 */
+	public boolean mayContain(String packagePrefix)
+	{
+		if (packageNames.length == 0)
+		{
+			return false;
+		}
+		
+		// the default package sorts first, any class name may continue the prefix
+		if (packageNames[0].isEmpty())
+		{
+			return true;
+		}
+		
+		// a package enclosing the prefix, such as com.example for com.example.Foo
+		for (int index = packagePrefix.indexOf('.'); index >= 0; index = packagePrefix.indexOf('.', index + 1))
+		{
+			if (Arrays.binarySearch(packageNames, packagePrefix.substring(0, index)) >= 0)
+			{
+				return true;
+			}
+		}
+		
+		// a package inside the prefix, it sorts right after the prefix
+		final int position = Arrays.binarySearch(packageNames, packagePrefix);
+		final int insertionPoint = position >= 0 ? position : -position - 1;
+		return (insertionPoint < packageNames.length) && packageNames[insertionPoint].startsWith(packagePrefix);
+	}
+	
+	@Override
+	public String toString()
+	{
+		return entryName == null ? file.getPath() : getLocation().toString();
+	}
+}
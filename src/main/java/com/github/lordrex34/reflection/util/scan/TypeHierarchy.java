@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.scan;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.lordrex34.reflection.util.classfile.ClassFileInfo;
+import com.github.lordrex34.reflection.util.classfile.ClassFileReader;
+
+/**
+ * The superclass/interface graph of the scanned classes, built from their class file headers without loading them.<br>
+ * Supertypes outside the scanned roots, such as the JDK classes, are resolved through the class loaders as well. Supertypes which cannot be read at all are reported by
+ * {@link #getUnresolvedTypeNames()}, any of them may hide a subtype relation.
+ * @author lord_rex
+ */
+public final class TypeHierarchy
+{
+	private final Map<String, List<String>> directSubtypeNames;
+	private final Set<String> unresolvedTypeNames;
+	
+	private TypeHierarchy(Map<String, List<String>> directSubtypeNames, Set<String> unresolvedTypeNames)
+	{
+		this.directSubtypeNames = directSubtypeNames;
+		this.unresolvedTypeNames = Collections.unmodifiableSet(unresolvedTypeNames);
+	}
+	
+	/**
+	 * Collects the supertypes of the visited classes, then resolves the supertypes outside the scanned roots when built.
+	 */
+	static final class Builder implements ClassFileIndexer.Visitor
+	{
+		private final Map<String, List<String>> directSubtypeNames = new HashMap<>();
+		private final Set<String> knownTypeNames = new HashSet<>();
+		private final Set<String> unresolvedTypeNames = new LinkedHashSet<>();
+		private final Map<String, ClassLoader> referencedTypeNames = new HashMap<>();
+		
+		@Override
+		public void visit(ScannedRoot root, ClassFileInfo classFileInfo)
+		{
+			add(classFileInfo, root.getClassLoader());
+		}
+		
+		@Override
+		public void visitMalformed(String className)
+		{
+			unresolvedTypeNames.add(className);
+		}
+		
+		private void add(ClassFileInfo classFileInfo, ClassLoader classLoader)
+		{
+			knownTypeNames.add(classFileInfo.getName());
+			for (String supertypeName : getSupertypeNames(classFileInfo))
+			{
+				directSubtypeNames.computeIfAbsent(supertypeName, k -> new ArrayList<>(1)).add(classFileInfo.getName());
+				if (classLoader != null)
+				{
+					referencedTypeNames.putIfAbsent(supertypeName, classLoader);
+				}
+			}
+		}
+		
+		TypeHierarchy build()
+		{
+			// resolve the supertypes outside the scanned roots, such as the JDK classes
+			final Deque<String> pendingTypeNames = new ArrayDeque<>(referencedTypeNames.keySet());
+			while (!pendingTypeNames.isEmpty())
+			{
+				final String typeName = pendingTypeNames.poll();
+				if (knownTypeNames.contains(typeName) || unresolvedTypeNames.contains(typeName))
+				{
+					continue;
+				}
+				
+				final ClassLoader classLoader = referencedTypeNames.get(typeName);
+				final ClassFileInfo classFileInfo = readExternal(typeName, classLoader);
+				if (classFileInfo == null)
+				{
+					unresolvedTypeNames.add(typeName);
+					continue;
+				}
+				
+				add(classFileInfo, classLoader);
+				pendingTypeNames.addAll(getSupertypeNames(classFileInfo));
+			}
+			return new TypeHierarchy(directSubtypeNames, unresolvedTypeNames);
+		}
+	}
+	
+	private static List<String> getSupertypeNames(ClassFileInfo classFileInfo)
+	{
+		if (classFileInfo.getSuperName() == null)
+		{
+			return classFileInfo.getInterfaceNames();
+		}
+		
+		final List<String> supertypeNames = new ArrayList<>(classFileInfo.getInterfaceNames().size() + 1);
+		supertypeNames.add(classFileInfo.getSuperName());
+		supertypeNames.addAll(classFileInfo.getInterfaceNames());
+		return supertypeNames;
+	}
+	
+	private static ClassFileInfo readExternal(String typeName, ClassLoader classLoader)
+	{
+		if (classLoader == null)
+		{
+			return null;
+		}
+		
+		try (InputStream inputStream = classLoader.getResourceAsStream(typeName.replace('.', '/') + ".class"))
+		{
+			return inputStream == null ? null : ClassFileReader.read(inputStream);
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+	}
+	
+	/**
+	 * Gets the binary names of the classes directly extending or implementing the type.
+	 * @param typeName the binary name of the type
+	 * @return an unmodifiable list of class names
+	 */
+	public List<String> getDirectSubtypeNames(String typeName)
+	{
+		final List<String> subtypeNames = directSubtypeNames.get(typeName);
+		return subtypeNames == null ? Collections.emptyList() : Collections.unmodifiableList(subtypeNames);
+	}
+	
+	/**
+	 * Gets the binary names of all transitive subtypes of the type, the type itself excluded.
+	 * @param typeName the binary name of the type
+	 * @return a set of class names
+	 */
+	public Set<String> getSubtypeNames(String typeName)
+	{
+		final Set<String> subtypeNames = new LinkedHashSet<>();
+		final Deque<String> pendingTypeNames = new ArrayDeque<>();
+		pendingTypeNames.add(typeName);
+		while (!pendingTypeNames.isEmpty())
+		{
+			for (String subtypeName : getDirectSubtypeNames(pendingTypeNames.poll()))
+			{
+				if (subtypeNames.add(subtypeName))
+				{
+					pendingTypeNames.add(subtypeName);
+				}
+			}
+		}
+		return subtypeNames;
+	}
+	
+	/**
+	 * Gets the binary names of the supertypes whose class file could not be found or read.
+	 * @return an unmodifiable set of type names
+	 */
+	public Set<String> getUnresolvedTypeNames()
+	{
+		return unresolvedTypeNames;
+	}
+}
@@ -21,13 +21,41 @@
  */
 package com.github.lordrex34.reflection.util;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 import org.junit.jupiter.api.Test;
 
+import com.github.lordrex34.reflection.util.scan.ClassHandle;
+import com.github.lordrex34.reflection.util.scan.ClassPathChange;
+import com.github.lordrex34.reflection.util.scan.ClassPathWatcher;
+
 /**
  * @author UnAfraid
  * @author NB4L1
@@ -45,4 +73,224 @@ class ClassPathTest
 		assertTrue(classes2.size() > classes3.size());
 		assertTrue(classes3.size() > 0);
 	}
+	
+	@Test
+	void testAnnotatedDiscovery() throws IOException
+	{
+		final String packagePrefix = ClassPathTest.class.getName();
+		
+		assertEquals(new HashSet<>(Arrays.asList(AnnotatedTestSubject.class)), ClassPathUtil.getAllClassesAnnotatedWith(packagePrefix, TestAnnotation.class).toSet());
+		assertEquals(new HashSet<>(Arrays.asList(AnnotatedTestSubject.class, InheritedTestSubject.class)), ClassPathUtil.getAllClassesAnnotatedWith(packagePrefix, InheritedTestAnnotation.class).toSet());
+	}
+	
+	@Test
+	void testAnnotatedMethodDiscovery() throws IOException, NoSuchMethodException
+	{
+		final String packageName = ClassPathTest.class.getPackage().getName();
+		final List<Method> expected = ClassPathUtil.getAllMethods(packageName).filter(method -> method.isAnnotationPresent(TestAnnotation.class)).toList();
+		final List<Method> actual = ClassPathUtil.getAllMethodsAnnotatedWith(packageName, TestAnnotation.class).toList();
+		
+		assertEquals(Arrays.asList(AnnotatedTestSubject.class.getDeclaredMethod("handle")), actual);
+		assertEquals(expected, actual);
+		assertSame(actual.get(0), ClassPathUtil.getAllMethodsAnnotatedWith(packageName, TestAnnotation.class).first().get());
+	}
+	
+	@Test
+	void testClassHandles() throws IOException, ClassNotFoundException
+	{
+		final List<ClassHandle> handles = ClassPathUtil.getAllClassHandles(ClassPathTest.class.getPackage().getName()).filter(handle -> handle.isAnnotationPresent(TestAnnotation.class.getName())).toList();
+		assertEquals(1, handles.size());
+		
+		final ClassHandle handle = handles.get(0);
+		assertEquals(AnnotatedTestSubject.class.getName(), handle.getName());
+		assertEquals(ClassPathTest.class.getPackage().getName(), handle.getPackageName());
+		assertEquals(Object.class.getName(), handle.getSuperName());
+		assertTrue(handle.getInterfaceNames().isEmpty());
+		assertTrue(handle.getAnnotationNames().contains(InheritedTestAnnotation.class.getName()));
+		assertEquals(AnnotatedTestSubject.class, handle.load());
+	}
+	
+	@Test
+	void testInvalidate() throws IOException
+	{
+		final String packagePrefix = ClassPathTest.class.getPackage().getName();
+		ClassPathUtil.getAllClasses(packagePrefix);
+		final long missCount = ClassPathUtil.getCacheStats().missCount();
+		
+		ClassPathUtil.getAllClasses(packagePrefix);
+		assertEquals(missCount, ClassPathUtil.getCacheStats().missCount());
+		
+		ClassPathUtil.invalidate(ClassLoader.getSystemClassLoader());
+		ClassPathUtil.getAllClasses(packagePrefix);
+		assertTrue(ClassPathUtil.getCacheStats().missCount() > missCount);
+	}
+	
+	@Test
+	void testWarmUp() throws IOException
+	{
+		final String packagePrefix = ClassPathTest.class.getName();
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try (URLClassLoader classLoader = new URLClassLoader(new URL[0], ClassPathTest.class.getClassLoader()))
+		{
+			ClassPathUtil.warmUp(classLoader, executor, packagePrefix).join();
+			final long missCount = ClassPathUtil.getCacheStats().missCount();
+			
+			final List<Class<?>> classes = ClassPathUtil.getAllClassesAnnotatedWithAsync(classLoader, packagePrefix, TestAnnotation.class, executor).join();
+			assertEquals(Arrays.asList(AnnotatedTestSubject.class), classes);
+			assertEquals(ClassPathUtil.getAllMethodsAnnotatedWith(classLoader, packagePrefix, TestAnnotation.class).toList(), ClassPathUtil.getAllMethodsAnnotatedWithAsync(classLoader, packagePrefix, TestAnnotation.class, executor).join());
+			assertEquals(missCount, ClassPathUtil.getCacheStats().missCount());
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	void testParallelLoading() throws IOException
+	{
+		final String packagePrefix = "com.github.lordrex34.reflection";
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try
+		{
+			final LoadedClasses<Class<?>> classes = ClassPathUtil.getAllClassesParallel(ClassLoader.getSystemClassLoader(), packagePrefix, pool);
+			assertEquals(ClassPathUtil.getAllClasses(packagePrefix).toList(), classes.getClasses());
+			assertTrue(classes.getFailures().isEmpty());
+			assertEquals(ClassPathUtil.getAllClassesAnnotatedWith(packagePrefix, InheritedTestAnnotation.class).toList(), ClassPathUtil.getAllClassesAnnotatedWithParallel(ClassLoader.getSystemClassLoader(), packagePrefix, InheritedTestAnnotation.class, pool).getClasses());
+			
+			// a failing filter is recorded for its candidate, the other candidates are still loaded
+			final ClassLoader systemClassLoader = ClassLoader.getSystemClassLoader();
+			final List<ClassHandle> candidates = Arrays.asList(new ClassHandle(String.class.getName(), systemClassLoader), new ClassHandle(Integer.class.getName(), systemClassLoader));
+			final LoadedClasses<Class<?>> filteredClasses = LoadedClasses.load(candidates, clazz ->
+			{
+				if (clazz == String.class)
+				{
+					throw new TypeNotPresentException("missing", null);
+				}
+				return true;
+			}, pool);
+			assertEquals(Arrays.asList(Integer.class), filteredClasses.getClasses());
+			assertTrue(filteredClasses.getFailures().get(String.class.getName()) instanceof TypeNotPresentException);
+			
+			// the superclass of the only class of the root is missing
+			final Path root = Files.createTempDirectory("broken");
+			final Path classFile = root.resolve(InheritedTestSubject.class.getName().replace('.', File.separatorChar) + ".class");
+			Files.createDirectories(classFile.getParent());
+			try (InputStream inputStream = ClassPathTest.class.getResourceAsStream(classFile.getFileName().toString()))
+			{
+				Files.copy(inputStream, classFile);
+			}
+			try (URLClassLoader classLoader = new URLClassLoader(new URL[]
+			{
+				root.toUri().toURL()
+			}, null))
+			{
+				final LoadedClasses<Class<?>> brokenClasses = ClassPathUtil.getAllClassesParallel(classLoader, packagePrefix, pool);
+				assertTrue(brokenClasses.getClasses().isEmpty());
+				assertTrue(brokenClasses.getFailures().get(InheritedTestSubject.class.getName()) instanceof NoClassDefFoundError);
+			}
+			finally
+			{
+				TestFiles.deleteRecursively(root);
+			}
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+	
+	@Test
+	void testClassLoaderNotRetained() throws IOException, InterruptedException
+	{
+		URLClassLoader classLoader = new URLClassLoader(new URL[0], ClassPathTest.class.getClassLoader());
+		final WeakReference<ClassLoader> reference = new WeakReference<>(classLoader);
+		assertTrue(ClassPathUtil.getAllClasses(classLoader, ClassPathTest.class.getPackage().getName()).size() > 0);
+		
+		classLoader.close();
+		classLoader = null;
+		for (int i = 0; (i < 50) && (reference.get() != null); i++)
+		{
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(reference.get());
+	}
+	
+	@Test
+	void testWatch() throws IOException, InterruptedException
+	{
+		final String packageName = ClassPathTest.class.getPackage().getName();
+		final Path root = Files.createTempDirectory("watched");
+		try (URLClassLoader classLoader = new URLClassLoader(new URL[]
+		{
+			root.toUri().toURL()
+		}, null);
+			ClassPathWatcher watcher = ClassPathUtil.watch(classLoader))
+		{
+			assertTrue(ClassPathUtil.getAllClasses(classLoader, packageName).isEmpty());
+			
+			final BlockingQueue<ClassPathChange> changes = new LinkedBlockingQueue<>();
+			watcher.addListener(changes::add);
+			
+			final Path classFile = root.resolve(WatchedTestSubject.class.getName().replace('.', File.separatorChar) + ".class");
+			Files.createDirectories(classFile.getParent());
+			try (InputStream inputStream = ClassPathTest.class.getResourceAsStream(classFile.getFileName().toString()))
+			{
+				Files.copy(inputStream, classFile);
+			}
+			awaitChange(changes, change -> change.getAddedClassNames().contains(WatchedTestSubject.class.getName()));
+			assertEquals(WatchedTestSubject.class.getName(), ClassPathUtil.getAllClasses(classLoader, packageName).get(0).getName());
+			
+			Files.delete(classFile);
+			awaitChange(changes, change -> change.getRemovedClassNames().contains(WatchedTestSubject.class.getName()));
+			assertTrue(ClassPathUtil.getAllClasses(classLoader, packageName).isEmpty());
+		}
+		finally
+		{
+			TestFiles.deleteRecursively(root);
+		}
+	}
+	
+	private static void awaitChange(BlockingQueue<ClassPathChange> changes, Predicate<ClassPathChange> expected) throws InterruptedException
+	{
+		ClassPathChange change;
+		while ((change = changes.poll(30, TimeUnit.SECONDS)) != null)
+		{
+			if (expected.test(change))
+			{
+				return;
+			}
+		}
+		fail("The expected change has not been reported.");
+	}
+	
+	@Retention(RetentionPolicy.RUNTIME)
+	@interface TestAnnotation
+	{
+	}
+	
+	@Inherited
+	@Retention(RetentionPolicy.RUNTIME)
+	@interface InheritedTestAnnotation
+	{
+	}
+	
+	@TestAnnotation
+	@InheritedTestAnnotation
+	static class AnnotatedTestSubject
+	{
+		@TestAnnotation
+		void handle()
+		{
+		}
+	}
+	
+	static class InheritedTestSubject extends AnnotatedTestSubject
+	{
+	}
+	
+	static class WatchedTestSubject
+	{
+	}
 }
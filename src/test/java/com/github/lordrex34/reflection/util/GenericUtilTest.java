@@ -21,12 +21,20 @@
  */
 package com.github.lordrex34.reflection.util;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.lang.reflect.Field;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 import org.junit.jupiter.api.Test;
 
@@ -53,6 +61,44 @@ class GenericUtilTest
 		assertEquals(String.class, GenericUtil.parameterOf(InheritedTestSubject.class, 1));
 	}
 	
+	@Test
+	void testClassResolved()
+	{
+		assertEquals(Object.class, GenericUtil.parameterOf(Object.class, 0));
+		assertEquals(Object.class, GenericUtil.parameterOf(FieldTestSubject.class, 0));
+		assertEquals(Number.class, GenericUtil.parameterOf(BoundTestSubject.class, 0));
+		assertEquals(Long.class, GenericUtil.parameterOf(ResolvedTestSubject.class, 0));
+		assertEquals(String.class, GenericUtil.parameterOf(ResolvedTestSubject.class, 1));
+	}
+	
+	@Test
+	void testInterfaces()
+	{
+		assertArrayEquals(new Class<?>[]
+		{
+			Long.class,
+			List.class
+		}, GenericUtil.parametersOf(ResolvedTestSubject.class, Function.class));
+		assertArrayEquals(new Class<?>[]
+		{
+			Long.class,
+			String.class
+		}, GenericUtil.parametersOf(ResolvedTestSubject.class, Map.class));
+		assertArrayEquals(new Class<?>[]
+		{
+			String[].class
+		}, GenericUtil.parametersOf(ResolvedTestSubject.class, Comparator.class));
+		assertEquals(List.class, GenericUtil.parameterOf(ResolvedTestSubject.class, Function.class, 1));
+		
+		// the resolved parameters are cached, every caller gets its own copy of them
+		final Class<?>[] parameters = GenericUtil.parametersOf(ResolvedTestSubject.class, Function.class);
+		assertNotSame(parameters, GenericUtil.parametersOf(ResolvedTestSubject.class, Function.class));
+		assertSame(GenericUtil.resolveParameters(ResolvedTestSubject.class, Function.class), GenericUtil.resolveParameters(ResolvedTestSubject.class, Function.class));
+		parameters[1] = Object.class;
+		assertEquals(List.class, GenericUtil.parametersOf(ResolvedTestSubject.class, Function.class)[1]);
+		assertNull(GenericUtil.parametersOf(ResolvedTestSubject.class, Runnable.class));
+	}
+	
 	@Test
 	void testField()
 	{
@@ -74,6 +120,53 @@ class GenericUtilTest
 		private static final long serialVersionUID = 1L;
 	}
 	
+	@Test
+	void testFieldTable()
+	{
+		final GenericFieldTable table = GenericUtil.fieldTableOf(TableTestSubject.class);
+		assertSame(table, GenericUtil.fieldTableOf(TableTestSubject.class));
+		assertEquals(4, table.size());
+		
+		final int values = table.indexOf("values");
+		assertEquals(List.class, table.getRawType(values));
+		assertEquals(1, table.getArgumentCount(values));
+		assertEquals(Integer.class, table.getArgument(values, 0));
+		assertEquals(Integer.class, table.getRawType(table.indexOf("value")));
+		
+		final int map = table.indexOf("map");
+		assertEquals(Map.class, table.getRawType(map));
+		assertEquals(String.class, table.getArgument(map, 0));
+		assertEquals(Number.class, table.getArgument(map, 1));
+		assertThrows(IndexOutOfBoundsException.class, () -> table.getArgument(map, 2));
+		
+		final int nested = table.indexOf("nested");
+		assertEquals(List.class, table.getArgument(nested, 0));
+		assertEquals(List.class, GenericUtil.typeOf(table.getField(nested), 0));
+		assertEquals(-1, table.indexOf("missing"));
+	}
+	
+	abstract class BoundTestSubject<K extends Number, V> extends HashMap<K, V> implements Function<K, List<V>>, Comparator<V[]>
+	{
+		private static final long serialVersionUID = 1L;
+	}
+	
+	abstract class ResolvedTestSubject extends BoundTestSubject<Long, String>
+	{
+		private static final long serialVersionUID = 1L;
+	}
+	
+	static class TableParentTestSubject<T>
+	{
+		public List<T> values;
+		public T value;
+	}
+	
+	static class TableTestSubject extends TableParentTestSubject<Integer>
+	{
+		public Map<String, ? extends Number> map;
+		public List<List<String>> nested;
+	}
+	
 	class FieldTestSubject
 	{
 		public Map<String, Byte> testField;
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.IntBinaryOperator;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author lord_rex
+ */
+class InvokerUtilTest
+{
+	@Test
+	void testStatic() throws NoSuchMethodException
+	{
+		final IntBinaryOperator add = InvokerUtil.invokerOf(InvokerTestSubject.class.getDeclaredMethod("add", int.class, int.class), IntBinaryOperator.class);
+		assertEquals(5, add.applyAsInt(2, 3));
+		assertSame(add, InvokerUtil.invokerOf(InvokerTestSubject.class.getDeclaredMethod("add", int.class, int.class), IntBinaryOperator.class));
+		
+		final SecretSupplier secret = InvokerUtil.invokerOf(InvokerTestSubject.class.getDeclaredMethod("secret"), SecretSupplier.class);
+		assertEquals(Integer.valueOf(42), secret.get());
+		
+		// the erased Object get() of Supplier is a bridge to the covariant Integer get()
+		final Supplier<Integer> supplier = secret;
+		assertEquals(Integer.valueOf(42), supplier.get());
+	}
+	
+	@Test
+	void testInstance() throws NoSuchMethodException
+	{
+		final InvokerTestSubject subject = new InvokerTestSubject("test");
+		
+		final Greeting greet = InvokerUtil.invokerOf(InvokerTestSubject.class.getDeclaredMethod("greet", String.class), Greeting.class);
+		assertEquals("test greets you", greet.apply(subject, "you"));
+		
+		final Length length = InvokerUtil.invokerOf(InvokerTestSubject.class.getDeclaredMethod("length"), Length.class);
+		assertEquals(4, length.applyAsInt(subject));
+		
+		final Rename rename = InvokerUtil.boundInvokerOf(InvokerTestSubject.class.getDeclaredMethod("rename", String.class), subject, Rename.class);
+		rename.accept("renamed");
+		assertEquals("renamed greets you", greet.apply(subject, "you"));
+		
+		// the erased accept(Object) of Consumer is a bridge to accept(String)
+		final Consumer<String> consumer = rename;
+		consumer.accept("again");
+		assertEquals("again greets you", greet.apply(subject, "you"));
+	}
+	
+	@Test
+	void testMismatch() throws NoSuchMethodException
+	{
+		assertThrows(IllegalArgumentException.class, () -> InvokerUtil.invokerOf(InvokerTestSubject.class.getDeclaredMethod("add", int.class, int.class), Supplier.class));
+		assertThrows(IllegalArgumentException.class, () -> InvokerUtil.boundInvokerOf(InvokerTestSubject.class.getDeclaredMethod("secret"), new InvokerTestSubject(""), Supplier.class));
+		assertThrows(IllegalArgumentException.class, () -> InvokerUtil.invokerOf(InvokerTestSubject.class.getDeclaredMethod("secret"), Runnable.class.getClass()));
+		assertThrows(IllegalArgumentException.class, () -> InvokerUtil.invokerOf(InvokerTestSubject.class.getDeclaredMethod("secret"), Ambiguous.class));
+	}
+	
+	interface SecretSupplier extends Supplier<Integer>
+	{
+		@Override
+		Integer get();
+	}
+	
+	interface Greeting extends BiFunction<InvokerTestSubject, String, String>
+	{
+	}
+	
+	interface Length extends ToIntFunction<InvokerTestSubject>
+	{
+	}
+	
+	interface Rename extends Consumer<String>
+	{
+		@Override
+		void accept(String newName);
+	}
+	
+	interface Ambiguous extends Supplier<Object>
+	{
+		Object get(Object argument);
+	}
+	
+	static class InvokerTestSubject
+	{
+		private String name;
+		
+		InvokerTestSubject(String name)
+		{
+			this.name = name;
+		}
+		
+		static int add(int a, int b)
+		{
+			return a + b;
+		}
+		
+		private static int secret()
+		{
+			return 42;
+		}
+		
+		String greet(String other)
+		{
+			return name + " greets " + other;
+		}
+		
+		private int length()
+		{
+			return name.length();
+		}
+		
+		void rename(String newName)
+		{
+			name = newName;
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Cleans up the temporary files and directories of the tests, to be called from a {@code finally} block.
+ * @author lord_rex
+ */
+public final class TestFiles
+{
+	private TestFiles()
+	{
+		// utility class
+	}
+	
+	/**
+	 * Deletes the file, or the directory along with its content. Symbolic links are deleted, not followed.
+	 * @param path the file or directory, nothing happens if it does not exist
+	 * @throws IOException if a file cannot be deleted
+	 */
+	public static void deleteRecursively(Path path) throws IOException
+	{
+		if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS))
+		{
+			return;
+		}
+		
+		Files.walkFileTree(path, new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException
+			{
+				Files.deleteIfExists(file);
+				return FileVisitResult.CONTINUE;
+			}
+			
+			@Override
+			public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException
+			{
+				if (e != null)
+				{
+					throw e;
+				}
+				
+				Files.deleteIfExists(directory);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+	
+	/**
+	 * Deletes the file, or the directory along with its content, see {@link #deleteRecursively(Path)}.
+	 * @param file the file or directory
+	 * @throws IOException if a file cannot be deleted
+	 */
+	public static void deleteRecursively(File file) throws IOException
+	{
+		deleteRecursively(file.toPath());
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.classfile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author lord_rex
+ */
+class ClassFileReaderTest
+{
+	@Test
+	void testHeader() throws IOException
+	{
+		final ClassFileInfo info = read(AnnotatedTestSubject.class);
+		
+		assertEquals(AnnotatedTestSubject.class.getName(), info.getName());
+		assertEquals(Number.class.getName(), info.getSuperName());
+		assertEquals(Arrays.asList(Serializable.class.getName(), Comparable.class.getName()), info.getInterfaceNames());
+		assertFalse(info.isInterface());
+		assertTrue(read(RuntimeTestAnnotation.class).isAnnotation());
+		assertNull(read(Object.class).getSuperName());
+	}
+	
+	@Test
+	void testAnnotations() throws IOException
+	{
+		final ClassFileInfo info = read(AnnotatedTestSubject.class);
+		
+		assertTrue(info.isAnnotationPresent(RuntimeTestAnnotation.class.getName()));
+		assertFalse(info.isAnnotationPresent(ClassTestAnnotation.class.getName()));
+		assertFalse(info.isAnnotationPresent(Deprecated.class.getName()));
+	}
+	
+	@Test
+	void testMethodAnnotations() throws IOException
+	{
+		final ClassFileInfo info = read(AnnotatedTestSubject.class);
+		
+		assertEquals(1, info.getAnnotatedMethods().size());
+		final MethodInfo method = info.getAnnotatedMethods().get(0);
+		assertEquals("annotatedMethod", method.getName());
+		assertEquals("(Ljava/lang/String;)V", method.getDescriptor());
+		assertTrue(method.isAnnotationPresent(RuntimeTestAnnotation.class.getName()));
+		assertTrue(info.isMethodAnnotationPresent(RuntimeTestAnnotation.class.getName()));
+		assertFalse(info.isMethodAnnotationPresent(ClassTestAnnotation.class.getName()));
+	}
+	
+	@Test
+	void testMalformed()
+	{
+		assertThrows(IOException.class, () -> ClassFileReader.read(new byte[]
+		{
+			1,
+			2,
+			3
+		}));
+	}
+	
+	private static ClassFileInfo read(Class<?> clazz) throws IOException
+	{
+		try (InputStream inputStream = ClassLoader.getSystemResourceAsStream(clazz.getName().replace('.', '/') + ".class"))
+		{
+			return ClassFileReader.read(inputStream);
+		}
+	}
+	
+	@Retention(RetentionPolicy.RUNTIME)
+	@interface RuntimeTestAnnotation
+	{
+		String value();
+		
+		int[] numbers() default {};
+	}
+	
+	@Retention(RetentionPolicy.CLASS)
+	@interface ClassTestAnnotation
+	{
+	}
+	
+	@RuntimeTestAnnotation(value = "test", numbers =
+	{
+		1,
+		2
+	})
+	@ClassTestAnnotation
+	abstract static class AnnotatedTestSubject extends Number implements Serializable, Comparable<AnnotatedTestSubject>
+	{
+		private static final long serialVersionUID = 1L;
+		
+		@RuntimeTestAnnotation("method")
+		abstract void annotatedMethod(String value);
+		
+		@ClassTestAnnotation
+		abstract void otherMethod();
+	}
+}
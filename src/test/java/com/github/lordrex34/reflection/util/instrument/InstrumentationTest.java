@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.instrument;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.lordrex34.reflection.util.TestFiles;
+import com.github.lordrex34.reflection.util.jar.VersionInfo;
+import com.github.lordrex34.reflection.util.scan.ClassPathScan;
+import com.github.lordrex34.reflection.util.scan.ClassPathScanner;
+
+/**
+ * @author lord_rex
+ */
+class InstrumentationTest
+{
+	@Test
+	void testListener() throws IOException
+	{
+		final Path root = Files.createTempDirectory("instrumented");
+		Files.createDirectories(root.resolve("com/example"));
+		Files.write(root.resolve("com/example/Foo.class"), new byte[0]);
+		
+		final RecordingListener listener = new RecordingListener();
+		Instrumentation.addListener(listener);
+		try (URLClassLoader classLoader = new URLClassLoader(new URL[]
+		{
+			root.toUri().toURL()
+		}, null))
+		{
+			assertTrue(Instrumentation.isEnabled());
+			
+			final ClassPathScan scan = ClassPathScanner.scan(classLoader);
+			assertEquals(Integer.valueOf(1), listener.rootClassCounts.get(root.toFile().getCanonicalFile()));
+			assertEquals(scan.getClasses().size(), listener.classCount);
+			
+			final File jar = Files.createTempFile(root, "instrumented", ".jar").toFile();
+			try (JarOutputStream outputStream = new JarOutputStream(Files.newOutputStream(jar.toPath()), new Manifest()))
+			{
+				outputStream.finish(); // empty manifest
+			}
+			new VersionInfo(jar);
+			assertEquals(Integer.valueOf(0), listener.versionInfoAttributeCounts.get(jar.getAbsoluteFile()));
+		}
+		finally
+		{
+			Instrumentation.removeListener(listener);
+			TestFiles.deleteRecursively(root);
+		}
+		assertFalse(Instrumentation.isEnabled());
+		assertEquals(0, Instrumentation.start());
+	}
+	
+	private static final class RecordingListener implements ReflectionListener
+	{
+		final Map<File, Integer> rootClassCounts = new ConcurrentHashMap<>();
+		final Map<File, Integer> versionInfoAttributeCounts = new ConcurrentHashMap<>();
+		volatile int classCount = -1;
+		
+		@Override
+		public void rootScanned(File root, int count, long nanos)
+		{
+			assertTrue(nanos >= 0);
+			rootClassCounts.put(root, count);
+		}
+		
+		@Override
+		public void classPathScanned(ClassLoader classLoader, int rootCount, int count, long nanos)
+		{
+			classCount = count;
+		}
+		
+		@Override
+		public void versionInfoRead(File file, int attributeCount, long nanos)
+		{
+			versionInfoAttributeCounts.put(file, attributeCount);
+		}
+	}
+}
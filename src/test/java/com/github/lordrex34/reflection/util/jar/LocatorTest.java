@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.jar;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.lordrex34.reflection.util.TestFiles;
+import com.google.common.collect.Multimap;
+
+/**
+ * @author lord_rex
+ */
+class LocatorTest
+{
+	@Test
+	void testClassSource()
+	{
+		assertEquals(Locator.getResourceSource(Multimap.class.getClassLoader(), "com/google/common/collect/Multimap.class"), Locator.getClassSource(Multimap.class));
+		assertEquals(Locator.getResourceSource(LocatorTest.class.getClassLoader(), "com/github/lordrex34/reflection/util/jar/LocatorTest.class"), Locator.getClassSource(LocatorTest.class));
+		assertEquals(Locator.getClassSource(Multimap.class), Locator.getClassSource(Multimap.class));
+	}
+	
+	@Test
+	void testFromURI()
+	{
+		assertEquals(File.separator + "tmp" + File.separator + "été 中 100%", Locator.fromURI("file:/tmp/%C3%A9t%C3%A9%20%E4%B8%AD%20100%"));
+		assertEquals(File.separator + "tmp" + File.separator + "plain", Locator.fromURI("file:/tmp/plain"));
+	}
+	
+	@Test
+	void testWalkLocation() throws IOException
+	{
+		final Path location = Files.createTempDirectory("plugins");
+		try
+		{
+			for (String name : Arrays.asList("a.jar", "b.txt", "sub/c.jar", "sub/deeper/d.jar"))
+			{
+				final Path file = location.resolve(name);
+				Files.createDirectories(file.getParent());
+				Files.createFile(file);
+			}
+			
+			assertEquals(new TreeSet<>(Arrays.asList("a.jar")), walk(location, 1, "*.jar", false));
+			assertEquals(new TreeSet<>(Arrays.asList("a.jar", "c.jar")), walk(location, 2, "*.jar", false));
+			assertEquals(new TreeSet<>(Arrays.asList("a.jar", "c.jar", "d.jar")), walk(location, Integer.MAX_VALUE, "*.jar", true));
+			assertEquals(new TreeSet<>(Arrays.asList("c.jar")), walk(location, Integer.MAX_VALUE, "sub/*.jar", false));
+			assertEquals(new TreeSet<>(Arrays.asList("a.jar")), walk(location.resolve("a.jar"), Integer.MAX_VALUE, "*.jar", false));
+			assertEquals(0, walk(location.resolve("missing"), Integer.MAX_VALUE, "*.jar", false).size());
+			
+			try (Stream<?> urls = Locator.walkLocationURLs(location, Integer.MAX_VALUE, "*.jar", false))
+			{
+				assertEquals(3, urls.count());
+			}
+		}
+		finally
+		{
+			TestFiles.deleteRecursively(location);
+		}
+	}
+	
+	@Test
+	void testWalkUnreadableDirectory() throws IOException
+	{
+		final Path location = Files.createTempDirectory("plugins");
+		try
+		{
+			final Path locked = location.resolve("a/locked");
+			Files.createDirectories(locked);
+			Files.createFile(location.resolve("a/b.jar"));
+			Files.createFile(locked.resolve("c.jar"));
+			Files.createFile(location.resolve("d.jar"));
+			
+			assumeTrue(Files.getFileStore(location).supportsFileAttributeView(PosixFileAttributeView.class));
+			final Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(locked);
+			Files.setPosixFilePermissions(locked, Collections.emptySet());
+			try
+			{
+				assumeFalse(Files.isReadable(locked), "the user reads any directory");
+				assertEquals(new TreeSet<>(Arrays.asList("b.jar", "d.jar")), walk(location, Integer.MAX_VALUE, "*.jar", false));
+			}
+			finally
+			{
+				Files.setPosixFilePermissions(locked, permissions);
+			}
+		}
+		finally
+		{
+			TestFiles.deleteRecursively(location);
+		}
+	}
+	
+	@Test
+	void testWalkSymbolicLinks() throws IOException
+	{
+		final Path location = Files.createTempDirectory("plugins");
+		final Path target = Files.createTempDirectory("target");
+		try
+		{
+			Files.createFile(target.resolve("a.jar"));
+			try
+			{
+				Files.createSymbolicLink(location.resolve("linked.jar"), target.resolve("a.jar"));
+				Files.createSymbolicLink(location.resolve("linked"), target);
+			}
+			catch (UnsupportedOperationException | IOException e)
+			{
+				assumeTrue(false, "the file system does not support symbolic links");
+			}
+			
+			assertEquals(new TreeSet<>(Arrays.asList("linked.jar")), walk(location, Integer.MAX_VALUE, "*.jar", false));
+		}
+		finally
+		{
+			TestFiles.deleteRecursively(location);
+			TestFiles.deleteRecursively(target);
+		}
+	}
+	
+	private static Set<String> walk(Path location, int maxDepth, String glob, boolean parallel) throws IOException
+	{
+		try (Stream<Path> paths = Locator.walkLocation(location, maxDepth, glob, parallel))
+		{
+			return paths.map(path -> path.getFileName().toString()).collect(Collectors.toCollection(TreeSet::new));
+		}
+	}
+}
@@ -24,9 +24,25 @@ package com.github.lordrex34.reflection.util.jar;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
 import org.junit.jupiter.api.Test;
+import com.github.lordrex34.reflection.util.TestFiles;
 import com.github.lordrex34.reflection.util.jar.VersionInfo.VersionInfoManifest;
 import com.google.common.collect.Multimap;
 
@@ -45,4 +61,96 @@ class VersionInfoTest
 		assertTrue(versionInfo.hasManifest(VersionInfoManifest.BUILT_BY));
 		assertFalse(versionInfo.hasManifest("another_nonsense"));
 	}
+	
+	@Test
+	void testCache() throws IOException
+	{
+		final File jar = Files.createTempFile("versioned", ".jar").toFile();
+		try
+		{
+			writeJar(jar, "first");
+			assertEquals("first", new VersionInfo(jar).getManifest(VersionInfoManifest.BUILT_BY));
+			assertSame(new VersionInfo(jar).getManifestAttributes(), new VersionInfo(jar).getManifestAttributes());
+			
+			writeJar(jar, "second, rebuilt");
+			assertTrue(jar.setLastModified(jar.lastModified() + 2000));
+			assertEquals("second, rebuilt", new VersionInfo(jar).getManifest(VersionInfoManifest.BUILT_BY));
+		}
+		finally
+		{
+			TestFiles.deleteRecursively(jar);
+		}
+	}
+	
+	@Test
+	void testBatch() throws IOException
+	{
+		final File jar = Files.createTempFile("versioned", ".jar").toFile();
+		try
+		{
+			writeJar(jar, "batch");
+			
+			final File guavaJar = Locator.getClassSource(Multimap.class);
+			final Map<File, VersionInfo> versionInfos = VersionInfo.of(Arrays.asList(jar, guavaJar, jar, null), ForkJoinPool.commonPool());
+			assertEquals(Arrays.asList(jar, guavaJar, null), Arrays.asList(versionInfos.keySet().toArray()));
+			assertEquals("batch", versionInfos.get(jar).getManifest(VersionInfoManifest.BUILT_BY));
+			assertTrue(versionInfos.get(null).isIDE());
+			assertEquals(VersionInfo.of(Multimap.class, Multimap.class).get(1), versionInfos.get(guavaJar).getFormattedClassInfo());
+		}
+		finally
+		{
+			TestFiles.deleteRecursively(jar);
+		}
+	}
+	
+	@Test
+	void testNested() throws IOException
+	{
+		final File innerJar = Files.createTempFile("inner", ".jar").toFile();
+		writeJar(innerJar, "nested");
+		final byte[] innerContent = Files.readAllBytes(innerJar.toPath());
+		
+		final File fatJar = Files.createTempFile("fat", ".jar").toFile();
+		try
+		{
+			try (JarOutputStream outputStream = new JarOutputStream(Files.newOutputStream(fatJar.toPath())))
+			{
+				final CRC32 crc = new CRC32();
+				crc.update(innerContent);
+				final ZipEntry entry = new ZipEntry("BOOT-INF/lib/library-1.0.jar");
+				entry.setMethod(ZipEntry.STORED);
+				entry.setSize(innerContent.length);
+				entry.setCrc(crc.getValue());
+				outputStream.putNextEntry(entry);
+				outputStream.write(innerContent);
+				outputStream.closeEntry();
+			}
+			
+			final JarLocation location = JarLocation.fromURL(new URL("jar:" + fatJar.toURI() + "!/BOOT-INF/lib/library-1.0.jar!/com/example/Foo.class"));
+			assertEquals(new JarLocation(fatJar, "BOOT-INF/lib/library-1.0.jar"), location);
+			assertNull(JarLocation.fromURL(new URL("jar:" + fatJar.toURI() + "!/com/example/Foo.class")));
+			assertNull(JarLocation.fromURL(new URL("jar:" + fatJar.toURI() + "!/BOOT-INF/classes!/com/example/Foo.class")));
+			
+			final VersionInfo versionInfo = new VersionInfo(location);
+			assertFalse(versionInfo.isIDE());
+			assertEquals("nested", versionInfo.getManifest(VersionInfoManifest.BUILT_BY));
+			assertTrue(versionInfo.getFormattedClassInfo().startsWith("library-1.0: "));
+		}
+		finally
+		{
+			TestFiles.deleteRecursively(innerJar);
+			TestFiles.deleteRecursively(fatJar);
+		}
+	}
+	
+	private static void writeJar(File jar, String builtBy) throws IOException
+	{
+		final Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().putValue(VersionInfoManifest.BUILT_BY, builtBy);
+		try (JarOutputStream outputStream = new JarOutputStream(Files.newOutputStream(jar.toPath()), manifest))
+		{
+			outputStream.finish(); // manifest only
+		}
+	}
 }
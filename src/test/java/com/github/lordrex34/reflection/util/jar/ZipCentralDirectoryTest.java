@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.jar;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.lordrex34.reflection.util.TestFiles;
+import com.google.common.collect.Multimap;
+
+/**
+ * @author lord_rex
+ */
+class ZipCentralDirectoryTest
+{
+	private static final byte[] STORED_CONTENT = "stored content".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] DEFLATED_CONTENT = String.join("", Collections.nCopies(100, "deflated content ")).getBytes(StandardCharsets.UTF_8);
+	
+	@Test
+	void testSameNamesAsJarFile() throws IOException
+	{
+		final File file = Locator.getClassSource(Multimap.class);
+		final List<String> expected = new ArrayList<>();
+		try (JarFile jarFile = new JarFile(file))
+		{
+			Collections.list(jarFile.entries()).stream().map(JarEntry::getName).filter(name -> name.endsWith(".class")).forEach(expected::add);
+		}
+		
+		final List<String> actual = new ArrayList<>();
+		ZipCentralDirectory.open(file).forEachEntryName(".class", actual::add);
+		
+		assertFalse(actual.isEmpty());
+		assertEquals(expected, actual);
+	}
+	
+	@Test
+	void testRead() throws IOException
+	{
+		final File file = createJar();
+		try
+		{
+			final ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(file);
+			
+			assertEquals(4, centralDirectory.getEntryCount());
+			assertTrue(centralDirectory.contains("a/stored.txt"));
+			assertFalse(centralDirectory.contains("a/missing.txt"));
+			assertArrayEquals(STORED_CONTENT, centralDirectory.read("a/stored.txt"));
+			assertArrayEquals(DEFLATED_CONTENT, centralDirectory.read("a/été.txt"));
+			assertNull(centralDirectory.read("a/missing.txt"));
+			assertEquals("Test", centralDirectory.getManifest().getMainAttributes().getValue(Attributes.Name.IMPLEMENTATION_TITLE));
+			
+			final List<String> names = new ArrayList<>();
+			centralDirectory.forEachEntryName(".txt", names::add);
+			assertEquals(2, names.size());
+			assertEquals("a/été.txt", names.get(1));
+		}
+		finally
+		{
+			TestFiles.deleteRecursively(file);
+		}
+	}
+	
+	@Test
+	void testNested() throws IOException
+	{
+		final File innerFile = createJar();
+		final byte[] innerJar = Files.readAllBytes(innerFile.toPath());
+		final File file = File.createTempFile("fat", ".jar");
+		try
+		{
+			try (JarOutputStream outputStream = new JarOutputStream(new FileOutputStream(file)))
+			{
+				writeStored(outputStream, "BOOT-INF/lib/inner.jar", innerJar);
+				outputStream.putNextEntry(new ZipEntry("BOOT-INF/lib/deflated.jar"));
+				outputStream.write(innerJar);
+				outputStream.closeEntry();
+			}
+			
+			final ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(file);
+			final ZipCentralDirectory nestedCentralDirectory = centralDirectory.openNested("BOOT-INF/lib/inner.jar");
+			assertEquals(4, nestedCentralDirectory.getEntryCount());
+			assertArrayEquals(STORED_CONTENT, nestedCentralDirectory.read("a/stored.txt"));
+			assertArrayEquals(DEFLATED_CONTENT, nestedCentralDirectory.read("a/été.txt"));
+			assertEquals("Test", nestedCentralDirectory.getManifest().getMainAttributes().getValue(Attributes.Name.IMPLEMENTATION_TITLE));
+			
+			// the nested entries are read in place, from the byte range of the nested JAR file
+			final long innerPosition = centralDirectory.getDataPosition("BOOT-INF/lib/inner.jar");
+			final long storedPosition = nestedCentralDirectory.getDataPosition("a/stored.txt");
+			assertTrue((storedPosition > innerPosition) && (storedPosition < (innerPosition + innerJar.length)));
+			
+			assertNull(centralDirectory.openNested("BOOT-INF/lib/missing.jar"));
+			
+			// a compressed nested JAR file is inflated into memory
+			final ZipCentralDirectory deflatedCentralDirectory = centralDirectory.openNested("BOOT-INF/lib/deflated.jar");
+			assertEquals(4, deflatedCentralDirectory.getEntryCount());
+			assertArrayEquals(STORED_CONTENT, deflatedCentralDirectory.read("a/stored.txt"));
+			assertArrayEquals(DEFLATED_CONTENT, deflatedCentralDirectory.read("a/été.txt"));
+			assertEquals(file, deflatedCentralDirectory.getFile());
+		}
+		finally
+		{
+			TestFiles.deleteRecursively(innerFile);
+			TestFiles.deleteRecursively(file);
+		}
+	}
+	
+	@Test
+	void testPrefixed() throws IOException
+	{
+		// an executable JAR file starts with a launch script, the recorded offsets do not count it
+		final File file = createJar();
+		try
+		{
+			final byte[] script = "#!/bin/sh\nexec java -jar \"$0\" \"$@\"\n".getBytes(StandardCharsets.US_ASCII);
+			final byte[] content = Files.readAllBytes(file.toPath());
+			final byte[] prefixed = new byte[script.length + content.length];
+			System.arraycopy(script, 0, prefixed, 0, script.length);
+			System.arraycopy(content, 0, prefixed, script.length, content.length);
+			Files.write(file.toPath(), prefixed);
+			
+			final ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(file);
+			assertEquals(4, centralDirectory.getEntryCount());
+			assertArrayEquals(STORED_CONTENT, centralDirectory.read("a/stored.txt"));
+			assertArrayEquals(DEFLATED_CONTENT, centralDirectory.read("a/été.txt"));
+			assertEquals("Test", centralDirectory.getManifest().getMainAttributes().getValue(Attributes.Name.IMPLEMENTATION_TITLE));
+			assertEquals("Test", new VersionInfo(file).getManifest(Attributes.Name.IMPLEMENTATION_TITLE.toString(), null));
+		}
+		finally
+		{
+			TestFiles.deleteRecursively(file);
+		}
+	}
+	
+	@Test
+	void testCorrupt() throws IOException
+	{
+		final File file = createJar();
+		try
+		{
+			final byte[] content = Files.readAllBytes(file.toPath());
+			final ByteBuffer end = ByteBuffer.wrap(content, content.length - 22, 22).slice().order(ByteOrder.LITTLE_ENDIAN);
+			content[end.getInt(16)] ^= 0xFF; // the signature of the first central header
+			Files.write(file.toPath(), content);
+			assertThrows(IOException.class, () -> ZipCentralDirectory.open(file));
+		}
+		finally
+		{
+			TestFiles.deleteRecursively(file);
+		}
+	}
+	
+	@Test
+	void testNotZip() throws IOException
+	{
+		final File file = File.createTempFile("notzip", ".jar");
+		try
+		{
+			assertThrows(IOException.class, () -> ZipCentralDirectory.open(file));
+		}
+		finally
+		{
+			TestFiles.deleteRecursively(file);
+		}
+	}
+	
+	private static File createJar() throws IOException
+	{
+		final File file = File.createTempFile("test", ".jar");
+		
+		final Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().put(Attributes.Name.IMPLEMENTATION_TITLE, "Test");
+		try (JarOutputStream outputStream = new JarOutputStream(new FileOutputStream(file), manifest))
+		{
+			outputStream.putNextEntry(new ZipEntry("a/"));
+			outputStream.closeEntry();
+			
+			writeStored(outputStream, "a/stored.txt", STORED_CONTENT);
+			
+			outputStream.putNextEntry(new ZipEntry("a/été.txt"));
+			outputStream.write(DEFLATED_CONTENT);
+			outputStream.closeEntry();
+		}
+		return file;
+	}
+	
+	private static void writeStored(JarOutputStream outputStream, String name, byte[] content) throws IOException
+	{
+		final CRC32 crc = new CRC32();
+		crc.update(content);
+		final ZipEntry storedEntry = new ZipEntry(name);
+		storedEntry.setMethod(ZipEntry.STORED);
+		storedEntry.setSize(content.length);
+		storedEntry.setCrc(crc.getValue());
+		outputStream.putNextEntry(storedEntry);
+		outputStream.write(content);
+		outputStream.closeEntry();
+	}
+}
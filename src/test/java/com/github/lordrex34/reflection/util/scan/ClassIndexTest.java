@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.scan;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.processing.Processor;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.lordrex34.reflection.util.ClassPathUtil;
+import com.github.lordrex34.reflection.util.TestFiles;
+
+/**
+ * @author lord_rex
+ */
+class ClassIndexTest
+{
+	private static final String INDEX = String.join("\n", "# test index", "com.example:", " Base @com.example.Handler", " Derived +com.example.Base +java.lang.Runnable", " Derived$Inner", "com.example.other:", " Other @com.example.Marker", "");
+	
+	@Test
+	void testLoad() throws IOException
+	{
+		final Path indexedRoot = createIndexedRoot();
+		try (URLClassLoader classLoader = new URLClassLoader(new URL[]
+		{
+			indexedRoot.toUri().toURL()
+		}, null))
+		{
+			final ClassIndex classIndex = ClassIndex.load(classLoader);
+			assertNotNull(classIndex);
+			assertEquals(4, classIndex.getEntries().size());
+			assertEquals(3, classIndex.getEntries("com.example.D").size() + classIndex.getEntries("com.example.B").size());
+			
+			final ClassIndex.Entry derived = classIndex.getEntry("com.example.Derived");
+			assertEquals(classLoader, derived.getClassLoader());
+			assertTrue(derived.isSubtypeOf("com.example.Base"));
+			assertTrue(derived.isSubtypeOf("java.lang.Runnable"));
+			assertTrue(derived.isSubtypeOf("java.lang.Object"));
+			assertFalse(classIndex.getEntry("com.example.Derived$Inner").isSubtypeOf("com.example.Base"));
+			
+			assertFalse(classIndex.isAnnotationPresent(derived, "com.example.Handler", false));
+			assertTrue(classIndex.isAnnotationPresent(derived, "com.example.Handler", true));
+			assertTrue(classIndex.getEntry("com.example.other.Other").getAnnotationNames().contains("com.example.Marker"));
+		}
+		finally
+		{
+			TestFiles.deleteRecursively(indexedRoot);
+		}
+	}
+	
+	@Test
+	void testIncomplete() throws IOException
+	{
+		final Path indexedRoot = createIndexedRoot();
+		final Path plainRoot = Files.createTempDirectory("plain");
+		try (URLClassLoader classLoader = new URLClassLoader(new URL[]
+		{
+			indexedRoot.toUri().toURL(),
+			plainRoot.toUri().toURL()
+		}, null))
+		{
+			assertNull(ClassIndex.load(classLoader));
+		}
+		finally
+		{
+			TestFiles.deleteRecursively(indexedRoot);
+			TestFiles.deleteRecursively(plainRoot);
+		}
+	}
+	
+	@Test
+	void testProcessor() throws Exception
+	{
+		final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assumeTrue(compiler != null, "The tests do not run on a JDK.");
+		
+		final Path sourceRoot = Files.createTempDirectory("sources");
+		final Path classRoot = Files.createTempDirectory("classes");
+		try
+		{
+			final Path handler = writeSource(sourceRoot, "Handler", "@java.lang.annotation.Inherited @java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME) public @interface Handler {}");
+			final Path base = writeSource(sourceRoot, "Base", "@Handler public class Base {}");
+			final Path derived = writeSource(sourceRoot, "Derived", "public class Derived extends Base { Object anonymous = new Base() {}; Object local() { class Local extends Base {} return new Local(); } }");
+			compile(compiler, classRoot, handler, base, derived);
+			
+			final List<String> expectedNames = Arrays.asList("com.example.Base", "com.example.Derived", "com.example.Derived$1", "com.example.Derived$1Local");
+			try (URLClassLoader classLoader = new URLClassLoader(new URL[]
+			{
+				classRoot.toUri().toURL()
+			}, null))
+			{
+				final ClassIndex classIndex = ClassIndex.load(classLoader);
+				assertNotNull(classIndex);
+				assertNotNull(classIndex.getEntry("com.example.Derived"));
+				assertNull(classIndex.getEntry("com.example.Derived$1"));
+				assertEquals(expectedNames, ClassPathUtil.getAllClassesExtending(classLoader, "com.example", classLoader.loadClass("com.example.Base")).transform(Class::getName).toList());
+			}
+			
+			// an incremental compilation rewrites the index with the classes it has compiled only
+			compile(compiler, classRoot, writeSource(sourceRoot, "Other", "public class Other extends Base {}"));
+			try (URLClassLoader classLoader = new URLClassLoader(new URL[]
+			{
+				classRoot.toUri().toURL()
+			}, null))
+			{
+				final ClassIndex classIndex = ClassIndex.load(classLoader);
+				assertNotNull(classIndex);
+				assertNull(classIndex.getEntry("com.example.Derived"));
+				assertEquals(5, ClassPathUtil.getAllClassesExtending(classLoader, "com.example", classLoader.loadClass("com.example.Base")).size());
+				assertEquals(3, ClassPathUtil.getAllClassHandles(classLoader, "com.example.D").size());
+				// the inherited annotation sits on a superclass the index does not list anymore
+				assertEquals(Arrays.asList("com.example.Other"), ClassPathUtil.getAllClassesAnnotatedWith(classLoader, "com.example.O", classLoader.loadClass("com.example.Handler").asSubclass(Annotation.class)).transform(Class::getName).toList());
+			}
+		}
+		finally
+		{
+			TestFiles.deleteRecursively(sourceRoot);
+			TestFiles.deleteRecursively(classRoot);
+		}
+	}
+	
+	private static Path writeSource(Path sourceRoot, String simpleName, String body) throws IOException
+	{
+		final Path source = sourceRoot.resolve(simpleName + ".java");
+		Files.write(source, Collections.singletonList("package com.example; " + body), StandardCharsets.UTF_8);
+		return source;
+	}
+	
+	private static void compile(JavaCompiler compiler, Path classRoot, Path... sources) throws Exception
+	{
+		final Processor processor = (Processor) Class.forName("com.github.lordrex34.reflection.processor.ClassIndexProcessor").getConstructor().newInstance();
+		try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8))
+		{
+			final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, Arrays.asList("-d", classRoot.toString(), "-classpath", classRoot.toString()), null, fileManager.getJavaFileObjects(Arrays.stream(sources).map(Path::toFile).toArray(File[]::new)));
+			task.setProcessors(Collections.singletonList(processor));
+			assertTrue(task.call());
+		}
+	}
+	
+	private static Path createIndexedRoot() throws IOException
+	{
+		final Path root = Files.createTempDirectory("indexed");
+		final Path index = root.resolve(ClassIndex.INDEX_RESOURCE.replace('/', File.separatorChar));
+		Files.createDirectories(index.getParent());
+		Files.write(index, Arrays.asList(INDEX), StandardCharsets.UTF_8);
+		return root;
+	}
+}
@@ -0,0 +1,429 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.scan;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.lordrex34.reflection.util.TestFiles;
+import com.github.lordrex34.reflection.util.instrument.Instrumentation;
+import com.github.lordrex34.reflection.util.instrument.ReflectionListener;
+import com.google.common.reflect.ClassPath;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * @author lord_rex
+ */
+class ClassPathScannerTest
+{
+	@Test
+	void testSameAsGuava() throws IOException
+	{
+		final ClassLoader classLoader = ClassLoader.getSystemClassLoader();
+		final Set<String> expected = ClassPath.from(classLoader).getAllClasses().stream().map(classInfo -> classInfo.getName()).collect(Collectors.toSet());
+		final Set<String> actual = ClassPathScanner.scan(classLoader).getClasses().stream().map(ScannedClass::getName).collect(Collectors.toSet());
+		
+		assertFalse(actual.isEmpty());
+		assertEquals(expected, actual);
+	}
+	
+	@Test
+	void testParallel() throws IOException
+	{
+		final ClassLoader classLoader = ClassLoader.getSystemClassLoader();
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			final List<String> serial = ClassPathScanner.scan(classLoader).getClasses().stream().map(ScannedClass::getName).collect(Collectors.toList());
+			final List<String> parallel = ClassPathScanner.scan(classLoader, executor).getClasses().stream().map(ScannedClass::getName).collect(Collectors.toList());
+			
+			assertEquals(serial, parallel);
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	void testNestedJar() throws IOException
+	{
+		final ByteArrayOutputStream innerJar = new ByteArrayOutputStream();
+		try (JarOutputStream outputStream = new JarOutputStream(innerJar))
+		{
+			outputStream.putNextEntry(new ZipEntry("com/example/Nested.class"));
+			outputStream.closeEntry();
+		}
+		
+		final File fatJar = File.createTempFile("fat", ".jar");
+		try
+		{
+			try (JarOutputStream outputStream = new JarOutputStream(new FileOutputStream(fatJar)))
+			{
+				final CRC32 crc = new CRC32();
+				crc.update(innerJar.toByteArray());
+				final ZipEntry entry = new ZipEntry("BOOT-INF/lib/inner.jar");
+				entry.setMethod(ZipEntry.STORED);
+				entry.setSize(innerJar.size());
+				entry.setCrc(crc.getValue());
+				outputStream.putNextEntry(entry);
+				innerJar.writeTo(outputStream);
+				outputStream.closeEntry();
+				
+				// a compressed nested JAR file cannot be read in place, it is inflated into memory
+				outputStream.putNextEntry(new ZipEntry("BOOT-INF/lib/deflated.jar"));
+				innerJar.writeTo(outputStream);
+				outputStream.closeEntry();
+			}
+			
+			try (URLClassLoader classLoader = new URLClassLoader(new URL[]
+			{
+				new URL("jar:" + fatJar.toURI() + "!/BOOT-INF/lib/inner.jar!/"),
+				new URL("jar:" + fatJar.toURI() + "!/BOOT-INF/lib/deflated.jar!/")
+			}, null))
+			{
+				final ClassPathScan scan = ClassPathScanner.scan(classLoader);
+				assertEquals(2, scan.getRoots().size());
+				assertEquals("BOOT-INF/lib/inner.jar", scan.getRoots().get(0).getEntryName());
+				assertEquals(fatJar.getCanonicalFile(), scan.getRoots().get(0).getFile());
+				assertEquals(Arrays.asList("com.example.Nested"), scan.getRoots().get(0).getClassNames());
+				assertEquals("BOOT-INF/lib/deflated.jar", scan.getRoots().get(1).getEntryName());
+				assertEquals(Arrays.asList("com.example.Nested"), scan.getRoots().get(1).getClassNames());
+				assertNotNull(scan.getClass("com.example.Nested"));
+			}
+		}
+		finally
+		{
+			TestFiles.deleteRecursively(fatJar);
+		}
+	}
+	
+	@Test
+	void testDeletedClassFile() throws IOException
+	{
+		final Path directory = Files.createTempDirectory("classes");
+		try
+		{
+			final String resourceName = ClassIndexTest.class.getName().replace('.', '/') + ".class";
+			final Path classFile = directory.resolve(resourceName);
+			Files.createDirectories(classFile.getParent());
+			try (InputStream inputStream = ClassPathScannerTest.class.getClassLoader().getResourceAsStream(resourceName))
+			{
+				Files.copy(inputStream, classFile);
+			}
+			
+			try (URLClassLoader classLoader = new URLClassLoader(new URL[]
+			{
+				directory.toUri().toURL()
+			}, null))
+			{
+				final ClassPathScan scan = ClassPathScanner.scan(classLoader);
+				Files.delete(classFile);
+				assertEquals(Collections.singleton(ClassIndexTest.class.getName()), scan.getMethodAnnotationIndex().getMalformedClassNames());
+			}
+		}
+		finally
+		{
+			TestFiles.deleteRecursively(directory);
+		}
+	}
+	
+	@Test
+	void testCorruptJar() throws IOException
+	{
+		final File jar = File.createTempFile("corrupt", ".jar");
+		try
+		{
+			writeJar(jar, ClassIndexTest.class);
+			final byte[] content = Files.readAllBytes(jar.toPath());
+			final ByteBuffer end = ByteBuffer.wrap(content, content.length - 22, 22).slice().order(ByteOrder.LITTLE_ENDIAN);
+			content[end.getInt(16)] ^= 0xFF; // the signature of the first central header
+			Files.write(jar.toPath(), content);
+			
+			// like Guava's ClassPath, a JAR file which cannot be read is skipped
+			try (URLClassLoader classLoader = new URLClassLoader(new URL[]
+			{
+				jar.toURI().toURL()
+			}, null))
+			{
+				assertTrue(ClassPathScanner.scan(classLoader).getRoots().isEmpty());
+			}
+		}
+		finally
+		{
+			TestFiles.deleteRecursively(jar);
+		}
+	}
+	
+	@Test
+	void testJdkRoot()
+	{
+		final File javaHome = new File(System.getProperty("java.home"));
+		assertTrue(ClassPathRoots.isJdkRoot(new File(javaHome, "lib/ext/nashorn.jar")));
+		assertFalse(ClassPathRoots.isJdkRoot(new File(javaHome.getPath() + "-libs", "library.jar")));
+	}
+	
+	@Test
+	void testPrefixQuery() throws IOException
+	{
+		final ClassPathScan scan = ClassPathScanner.scan(ClassLoader.getSystemClassLoader());
+		for (String packagePrefix : new String[]
+		{
+			"",
+			"com",
+			"com.github.lordrex34.reflection.util.scan",
+			"com.google.common.collect.Immutable",
+			"no.such.package"
+		})
+		{
+			final List<String> expected = scan.getClasses().stream().map(ScannedClass::getName).filter(name -> name.startsWith(packagePrefix)).sorted().collect(Collectors.toList());
+			final List<String> actual = scan.getClasses(packagePrefix).stream().map(ScannedClass::getName).collect(Collectors.toList());
+			
+			assertEquals(expected, actual);
+		}
+	}
+	
+	@Test
+	void testTypeHierarchy() throws IOException, ClassNotFoundException
+	{
+		final ClassLoader classLoader = ClassLoader.getSystemClassLoader();
+		final ClassPathScan scan = ClassPathScanner.scan(classLoader);
+		final String packagePrefix = "com.google.common.collect";
+		
+		final Set<String> expected = new TreeSet<>();
+		for (ScannedClass scannedClass : scan.getClasses(packagePrefix))
+		{
+			if (Collection.class.isAssignableFrom(Class.forName(scannedClass.getName(), false, classLoader)))
+			{
+				expected.add(scannedClass.getName());
+			}
+		}
+		final Set<String> actual = scan.getTypeHierarchy().getSubtypeNames(Collection.class.getName()).stream().filter(name -> name.startsWith(packagePrefix)).collect(Collectors.toCollection(TreeSet::new));
+		
+		assertFalse(actual.isEmpty());
+		assertEquals(expected, actual);
+		
+		// the indexes of the most recently used prefixes are kept, a further prefix evicts the least recently used one
+		final ClassPathScan prefixScan = ClassPathScanner.scan(classLoader);
+		final Set<TypeHierarchy> prefixHierarchies = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (int i = 0; i < 8; i++)
+		{
+			prefixHierarchies.add(prefixScan.getTypeHierarchy("no.such.package" + i));
+		}
+		assertEquals(8, prefixHierarchies.size());
+		assertTrue(prefixHierarchies.contains(prefixScan.getTypeHierarchy("no.such.package0")));
+		final TypeHierarchy furtherHierarchy = prefixScan.getTypeHierarchy("no.such.package8");
+		assertFalse(prefixHierarchies.contains(furtherHierarchy));
+		assertSame(furtherHierarchy, prefixScan.getTypeHierarchy("no.such.package8"));
+		assertTrue(prefixHierarchies.contains(prefixScan.getTypeHierarchy("no.such.package0")));
+		assertFalse(prefixHierarchies.contains(prefixScan.getTypeHierarchy("no.such.package1")));
+		
+		// the complete index serves every prefix once it is built
+		assertSame(prefixScan.getTypeHierarchy(), prefixScan.getTypeHierarchy("no.such.package8"));
+	}
+	
+	@Test
+	void testPackageSummary() throws IOException, ClassNotFoundException
+	{
+		final ClassLoader classLoader = ClassLoader.getSystemClassLoader();
+		final ClassPathScan scan = ClassPathScanner.scan(classLoader);
+		final String packagePrefix = "com.google.common.collect";
+		
+		final List<ScannedRoot> roots = scan.getRoots(packagePrefix);
+		assertTrue(roots.size() < scan.getRoots().size());
+		for (ScannedClass scannedClass : scan.getClasses(packagePrefix))
+		{
+			assertTrue(roots.contains(scannedClass.getRoot()));
+		}
+		assertTrue(roots.get(0).mayContain("com.google.common.collect.Immutable"));
+		assertTrue(roots.get(0).mayContain("com.google."));
+		assertFalse(roots.get(0).mayContain("com.google.common.nonexistent"));
+		
+		final Set<String> expected = new TreeSet<>();
+		for (ScannedClass scannedClass : scan.getClasses(packagePrefix))
+		{
+			if (Collection.class.isAssignableFrom(Class.forName(scannedClass.getName(), false, classLoader)))
+			{
+				expected.add(scannedClass.getName());
+			}
+		}
+		final Set<String> actual = scan.getTypeHierarchy(packagePrefix).getSubtypeNames(Collection.class.getName()).stream().filter(name -> name.startsWith(packagePrefix)).collect(Collectors.toCollection(TreeSet::new));
+		
+		assertFalse(actual.isEmpty());
+		assertEquals(expected, actual);
+	}
+	
+	@Test
+	void testSnapshot() throws IOException
+	{
+		final File snapshotDirectory = Files.createTempDirectory("snapshots").toFile();
+		final File jar = File.createTempFile("snapshot", ".jar");
+		try
+		{
+			writeJar(jar, ClassPathScannerTest.class, ClassIndexTest.class);
+			
+			final AtomicInteger scannedRoots = new AtomicInteger();
+			final ReflectionListener listener = new ReflectionListener()
+			{
+				@Override
+				public void rootScanned(File root, int count, long nanos)
+				{
+					scannedRoots.incrementAndGet();
+				}
+			};
+			Instrumentation.addListener(listener);
+			try (URLClassLoader classLoader = new URLClassLoader(new URL[]
+			{
+				jar.toURI().toURL()
+			}, null))
+			{
+				final ClassPathScan scan = ClassPathScanner.scan(classLoader, MoreExecutors.directExecutor(), snapshotDirectory);
+				assertEquals(1, scannedRoots.getAndSet(0));
+				assertEquals(1, snapshotDirectory.listFiles().length);
+				// the class files parsed for the snapshot are used by the current scan as well
+				assertEquals(Object.class.getName(), scan.getRoots().get(0).getClassFileInfo(ClassIndexTest.class.getName()).getSuperName());
+				
+				final ClassPathScan snapshotScan = ClassPathScanner.scan(classLoader, MoreExecutors.directExecutor(), snapshotDirectory);
+				assertEquals(0, scannedRoots.getAndSet(0));
+				assertEquals(scan.getRoots().get(0).getClassNames(), snapshotScan.getRoots().get(0).getClassNames());
+				assertEquals(Object.class.getName(), snapshotScan.getRoots().get(0).getClassFileInfo(ClassIndexTest.class.getName()).getSuperName());
+				assertTrue(snapshotScan.getTypeHierarchy().getSubtypeNames(Object.class.getName()).contains(ClassPathScannerTest.class.getName()));
+				
+				writeJar(jar, ClassPathScannerTest.class);
+				assertTrue(jar.setLastModified(jar.lastModified() - 10_000));
+				final ClassPathScan changedScan = ClassPathScanner.scan(classLoader, MoreExecutors.directExecutor(), snapshotDirectory);
+				assertEquals(1, scannedRoots.get());
+				assertEquals(Arrays.asList(ClassPathScannerTest.class.getName()), changedScan.getRoots().get(0).getClassNames());
+			}
+			finally
+			{
+				Instrumentation.removeListener(listener);
+			}
+		}
+		finally
+		{
+			TestFiles.deleteRecursively(snapshotDirectory);
+			TestFiles.deleteRecursively(jar);
+		}
+	}
+	
+	@Test
+	void testSnapshotRewrite() throws IOException
+	{
+		final File snapshotDirectory = Files.createTempDirectory("snapshots").toFile();
+		final File stableJar = File.createTempFile("stable", ".jar");
+		final File changingJar = File.createTempFile("changing", ".jar");
+		try
+		{
+			writeJar(stableJar, ClassIndexTest.class);
+			writeJar(changingJar, ClassPathScannerTest.class);
+			
+			try (URLClassLoader classLoader = new URLClassLoader(new URL[]
+			{
+				stableJar.toURI().toURL(),
+				changingJar.toURI().toURL()
+			}, null))
+			{
+				ClassPathScanner.scan(classLoader, MoreExecutors.directExecutor(), snapshotDirectory);
+				final File snapshotFile = snapshotDirectory.listFiles()[0];
+				final ClassPathScan snapshotScan = ClassPathScanner.scan(classLoader, MoreExecutors.directExecutor(), snapshotDirectory);
+				final byte[] snapshot = Files.readAllBytes(snapshotFile.toPath());
+				
+				// the snapshot read by the previous scan is replaced while that scan is still in use
+				writeJar(changingJar, ClassPathScannerTest.class, ClassIndexTest.class);
+				assertTrue(changingJar.setLastModified(changingJar.lastModified() - 10_000));
+				final ClassPathScan changedScan = ClassPathScanner.scan(classLoader, MoreExecutors.directExecutor(), snapshotDirectory);
+				assertEquals(1, snapshotDirectory.listFiles().length);
+				assertFalse(Arrays.equals(snapshot, Files.readAllBytes(snapshotFile.toPath())));
+				
+				assertNotNull(snapshotScan.getRoots().get(0).getClassFileInfo(ClassIndexTest.class.getName()));
+				assertNotNull(snapshotScan.getRoots().get(1).getClassFileInfo(ClassPathScannerTest.class.getName()));
+				assertNotNull(changedScan.getRoots().get(0).getClassFileInfo(ClassIndexTest.class.getName()));
+				assertEquals(Object.class.getName(), changedScan.getRoots().get(1).getClassFileInfo(ClassIndexTest.class.getName()).getSuperName());
+				
+				final ClassPathScan rewrittenScan = ClassPathScanner.scan(classLoader, MoreExecutors.directExecutor(), snapshotDirectory);
+				assertEquals(changedScan.getClasses().size(), rewrittenScan.getClasses().size());
+				assertEquals(Object.class.getName(), rewrittenScan.getRoots().get(0).getClassFileInfo(ClassIndexTest.class.getName()).getSuperName());
+				assertEquals(Object.class.getName(), rewrittenScan.getRoots().get(1).getClassFileInfo(ClassIndexTest.class.getName()).getSuperName());
+			}
+		}
+		finally
+		{
+			TestFiles.deleteRecursively(snapshotDirectory);
+			TestFiles.deleteRecursively(stableJar);
+			TestFiles.deleteRecursively(changingJar);
+		}
+	}
+	
+	private static void writeJar(File jar, Class<?>... classes) throws IOException
+	{
+		try (JarOutputStream outputStream = new JarOutputStream(new FileOutputStream(jar)))
+		{
+			for (Class<?> clazz : classes)
+			{
+				final String resourceName = clazz.getName().replace('.', '/') + ".class";
+				outputStream.putNextEntry(new ZipEntry(resourceName));
+				try (InputStream inputStream = ClassPathScannerTest.class.getClassLoader().getResourceAsStream(resourceName))
+				{
+					final byte[] buffer = new byte[4096];
+					int count;
+					while ((count = inputStream.read(buffer)) > 0)
+					{
+						outputStream.write(buffer, 0, count);
+					}
+				}
+				outputStream.closeEntry();
+			}
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2018 Reginald Ravenhorst <lordrex34@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.lordrex34.reflection.util.scan;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.lordrex34.reflection.util.ClassPathUtil;
+import com.google.common.collect.ListMultimap;
+
+/**
+ * @author lord_rex
+ */
+class ModuleScannerTest
+{
+	@Test
+	void testPrefixQuery() throws IOException
+	{
+		assumeTrue(ModuleScanner.isSupported());
+		
+		final List<String> moduleNames = ModuleScanner.getModules("java.util.concurrent.atomic").stream().map(ScannedModule::getName).collect(Collectors.toList());
+		assertEquals("java.base", moduleNames.get(0));
+		assertFalse(moduleNames.contains("java.sql"));
+		
+		final ListMultimap<ScannedModule, String> classNames = ModuleScanner.getClassNames("java.util.concurrent.atomic.AtomicInt");
+		assertEquals(1, classNames.keySet().size());
+		assertTrue(classNames.values().contains("java.util.concurrent.atomic.AtomicInteger"));
+		assertTrue(classNames.values().contains("java.util.concurrent.atomic.AtomicIntegerArray"));
+		assertFalse(classNames.values().contains("java.util.concurrent.atomic.AtomicLong"));
+		
+		assertTrue(ClassPathUtil.getAllModuleClasses("java.sql.D").contains(java.sql.Date.class));
+	}
+	
+	@Test
+	void testUnsupported() throws IOException
+	{
+		assumeTrue(!ModuleScanner.isSupported());
+		
+		assertTrue(ModuleScanner.getBootModules().isEmpty());
+		assertTrue(ClassPathUtil.getAllModuleClasses("java.util").isEmpty());
+	}
+}